@@ -15,6 +15,7 @@ import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.util.Units;
 import frc.robot.utils.ArmPreset;
+import frc.robot.utils.CurrentSignatureDetector;
 import frc.robot.utils.ShooterPreset;
 import frc.robot.utils.controller.AsymmetricTrapezoidProfile.Constraints;
 
@@ -37,19 +38,41 @@ public final class Constants {
     public static final double kMaxSpeedMetersPerSecond = 5.2; //4.8
     public static final double kMaxAngularSpeed = 2 * Math.PI; // radians per second
 
-    public static final double kDirectionSlewRate = 1.2; // radians per second
-    public static final double kMagnitudeSlewRate = 1.8; // percent per second (1 = 100%)
-    public static final double kRotationalSlewRate = 2.0; // percent per second (1 = 100%)
+    // Setpoint generator limits, below what the modules can do so the wheels keep traction
+    public static final double kMaxSteerRate = 4 * Math.PI; // radians per second
+    public static final double kMaxModuleAcceleration = 7.0; // meters per second squared
+    public static final double kMaxSetpointDt = 0.1; // seconds, longer loops are treated as a pause
+
+    // Heading hold while the rotation stick is released in teleop
+    public static final double kHeadingHoldP = 4.0; //todo tune
+    public static final double kHeadingHoldD = 0.0;
+    public static final double kHeadingHoldMaxRate = Math.PI; // radians per second
+    public static final double kHeadingHoldMaxAcceleration = 4 * Math.PI; // radians per second squared
+    public static final double kHeadingHoldLatchRate = Units.degreesToRadians(15); // radians per second, the turn dies down below this before latching
 
     // Chassis configuration
     public static final double kTrackWidth = Units.inchesToMeters(21.5); // Distance between centers of right and left wheels on robot
     public static final double kWheelBase = Units.inchesToMeters(26.5); // Distance between front and back wheels on robot
     
-    public static final SwerveDriveKinematics kDriveKinematics = new SwerveDriveKinematics(
+    public static final Translation2d[] kModuleLocations = {
         new Translation2d(kWheelBase / 2, kTrackWidth / 2),
         new Translation2d(kWheelBase / 2, -kTrackWidth / 2),
         new Translation2d(-kWheelBase / 2, kTrackWidth / 2),
-        new Translation2d(-kWheelBase / 2, -kTrackWidth / 2));
+        new Translation2d(-kWheelBase / 2, -kTrackWidth / 2)};
+
+    public static final SwerveDriveKinematics kDriveKinematics = new SwerveDriveKinematics(kModuleLocations);
+
+    // Robot as driven, for offline path timing
+    public static final double kRobotMassKg = 62.0; //todo weigh with battery and bumpers
+    public static final double kWheelCoefficientOfFriction = 1.0; //todo measure on carpet
+
+    // Traction monitor
+    public static final double kSlipVelocityThreshold = 0.3; // meters per second a module may disagree with the others
+    public static final double kTractionAccelerationError = 4.0; // meters per second squared between wheels and IMU
+    public static final double kCollisionAcceleration = 12.0; // meters per second squared, more than traction can produce
+    public static final double kImuFilterTimeConstant = 0.04; // seconds
+    public static final double kTractionLossHoldSeconds = 0.25;
+    public static final double kSlipMaxModuleAcceleration = 3.5; // meters per second squared while traction is lost
 
     // Angular offsets of the modules relative to the chassis in radians
     public static final double kFrontLeftChassisAngularOffset = -Math.PI / 2;
@@ -140,6 +163,77 @@ public final class Constants {
     public static final double kThetaControllerD = 0.05;
     public static final PIDConstants kThetaControllerConstants = 
       new PIDConstants(AutoConstants.kThetaControllerP, 0.0, AutoConstants.kThetaControllerD);
+
+    // path following feedforward
+    public static final double kPathLatencySeconds = 0.04; // loop period and module response, the feedforward is sampled this far ahead
+    public static final double kPathAccelerationLeadSeconds = 0.05; // driving velocity loop response //todo tune from logs
+
+    // paths generated in teleop to a grid node
+    public static final double kOnTheFlyMaxSpeedMetersPerSecond = 3.0; // capped at DriveConstants.kMaxSpeedMetersPerSecond
+    public static final double kOnTheFlyMaxAccelerationMetersPerSecondSquared = 2.5;
+    public static final double kOnTheFlyMinDistanceMeters = 0.05; // closer than this there is nothing to drive
+    public static final double kOnTheFlyMovingSpeedMetersPerSecond = 0.25; // slower than this the path starts from rest
+
+    // longest an auto event waits for its dependencies before running anyway
+    public static final double kEventDependencyTimeoutSeconds = 1.5;
+  }
+
+  // Blue alliance side in field coordinates with the blue origin, the red side is mirrored in x
+  public static final class FieldConstants {
+    public static final double kFieldLengthMeters = 16.54175;
+    public static final double kFieldWidthMeters = 8.0137;
+
+    // grid nodes, numbered from the cable protector side
+    public static final double kFirstNodeYMeters = Units.inchesToMeters(20.19);
+    public static final double kNodeSeparationYMeters = Units.inchesToMeters(22.0);
+    public static final int kNodeCount = 9;
+    public static final int[] kCubeNodes = {1, 4, 7};
+    public static final double kGridOuterXMeters = Units.inchesToMeters(54.25);
+    // bumper to grid gap the arm scores from, and the robot faces away so it scores off the back
+    public static final double kScoringXMeters = kGridOuterXMeters + Units.inchesToMeters(16.5) + 0.1; //todo tune
+    public static final double kScoringHeadingRadians = 0;
+
+    // charge station, the only obstacle between the loading zone and the grid
+    public static final double kChargeStationMinXMeters = Units.inchesToMeters(117.125);
+    public static final double kChargeStationMaxXMeters = Units.inchesToMeters(193.25);
+    public static final double kChargeStationMinYMeters = Units.inchesToMeters(59.39);
+    public static final double kChargeStationMaxYMeters = Units.inchesToMeters(156.64);
+    // the platform's hinge, midway across the station in x
+    public static final double kChargeStationPivotXMeters = (kChargeStationMinXMeters + kChargeStationMaxXMeters) / 2;
+    public static final double kChargeStationMaxTiltDegrees = 15.0;
+    public static final double kChargeStationLevelDegrees = 2.5; // counts as balanced
+    // half the bumper diagonal, so a path this far from the station keeps every corner off it
+    public static final double kRobotClearanceMeters = Units.inchesToMeters(22);
+    public static final double kCableLaneYMeters = kChargeStationMinYMeters / 2;
+    public static final double kOpenLaneYMeters = Units.inchesToMeters(186.0);
+  }
+
+  public static final class BalanceConstants {
+    // tilt estimator
+    public static final double kPitchStdDevDegrees = 0.5;
+    public static final double kTiltAccelerationStdDevDegreesPerSecondSquared = 150;
+
+    // climb to the pivot, braking so the robot stops on it
+    public static final double kClimbSpeedMetersPerSecond = 0.8;
+    public static final double kCreepSpeedMetersPerSecond = 0.25; // past where odometry puts the pivot
+    public static final double kBrakingMetersPerSecondSquared = 1.5;
+    public static final double kPivotLeadMeters = 0.05; // stop short, the station tips before the robot reaches the hinge
+
+    // the station is tipping once it turns back towards level and its tilt a lookahead from now is below this
+    public static final double kLookaheadSeconds = 0.3; // drive and gyro lag
+    public static final double kTippingDegrees = 13.0;
+    public static final double kTippingRateDegreesPerSecond = 6.0; // above the estimate's noise
+
+    // backing off once the station tips, by the distance driven over the detection lag
+    public static final double kBackOffSeconds = 0.25;
+    public static final double kBackOffMarginMeters = 0.02;
+    public static final double kBackOffSpeedMetersPerSecond = 0.3;
+
+    // settling and correcting
+    public static final double kSettledRateDegreesPerSecond = 4.0; // above the estimate's noise at rest
+    public static final double kSettleSeconds = 0.2;
+    public static final double kCorrectSpeedMetersPerSecond = 0.15;
+    public static final double kRebalanceDegrees = 4.0; // tilt that restarts balancing once balanced
   }
 
   public static final class TuningConstants {
@@ -167,6 +261,9 @@ public final class Constants {
     public static final double kIntakeMotorSpeed = 1;
     public static final double kOuttakeMotorSpeed = -0.1;
     public static final double kShootMotorSpeed = -0.4;
+
+    public static final CurrentSignatureDetector.Config kConeDetectorConfig = 
+      new CurrentSignatureDetector.Config(5, 0.04, 20, 14, 150, 3, 0.3); //amps, amps/s, seconds
   }
 
   public static final class ShooterConstants {
@@ -178,6 +275,8 @@ public final class Constants {
     public static final double kKickerOuttakeMotorSpeed = -0.6;
     public static final double kKickerHoldMotorSpeed = 0.1;
     public static final double kKickSpeed = -0.4;
+    public static final CurrentSignatureDetector.Config kCubeDetectorConfig = 
+      new CurrentSignatureDetector.Config(5, 0.04, 25, 18, 200, 2, 0.1); //amps, amps/s, seconds
 
     //Pivot
     public static final int kPivotMotorCanId = 15;
@@ -188,13 +287,29 @@ public final class Constants {
     public static final int kPivotMotorCurrentLimit = 30;
     public static final double kPivotP = 3.0;
     public static final ArmFeedforward kPivotFeedforward = new ArmFeedforward(0, 0.49, 0.97, 0.01);
+    public static final double kPivotToleranceDegrees = 4.0;
+
+    //raising fights gravity while accelerating, lowering fights gravity while decelerating
+    public static final Constraints kPivotRaiseConstraints = new Constraints(6, 12, 20); //rad/s, rad/s^2
+    public static final Constraints kPivotLowerConstraints = new Constraints(6, 20, 12); //rad/s, rad/s^2
     
     //Flywheels
     public static final int kTopFlywheelMotorCanId = 16;
     public static final int kBottomFlywheelMotorCanId = 17;
-    public static final double kFlywheelVelocityConversionFactor = (2*Math.PI) * 1.0;
+    public static final double kFlywheelGearRatio = 1.0;
+    public static final double kFlywheelVelocityConversionFactor = (2*Math.PI) / 60.0 / kFlywheelGearRatio; //rpm to rad/s
     public static final int kTopFlywheelMotorCurrentLimit = 30;
     public static final int kBottomFlywheelMotorCurrentLimit = 30;
+    public static final double kFlywheelNominalVoltage = 12.0;
+
+    public static final double kFlywheelkS = 0.12; //volts
+    public static final double kFlywheelkV = 0.0202; //volts per rad/s
+    public static final double kFlywheelkA = 0.003; //volts per rad/s^2
+    public static final double kFlywheelLQRVelocityTolerance = 8.0; //rad/s
+    public static final double kFlywheelLQRVoltageTolerance = 12.0; //volts
+    public static final double kFlywheelModelStdDev = 3.0; //rad/s
+    public static final double kFlywheelMeasurementStdDev = 0.5; //rad/s
+    public static final double kFlywheelToleranceRadPerSec = 5.0;
 
     //Preset Angles
     public static final double kPivotHoldAngleDegrees = -40;
@@ -222,6 +337,19 @@ public final class Constants {
       new ShooterPreset(20, 40);
     public static final ShooterPreset kFarMiddleCubePreset = 
       new ShooterPreset(45, 0);
+
+    //Shoot on the move
+    public static final double kShooterYawOffsetRadians = Math.PI; //shooter fires out the back of the robot
+    public static final int kShotSolverMaxIterations = 4;
+    public static final double kShotSolverToleranceSeconds = 0.005;
+    public static final double kShotSolverBudgetMicros = 500; //per loop compute budget
+    public static final double kShotHeadingP = 2.0;
+
+    //Stationary shot table, sorted by distance from the goal
+    public static final double[] kShotDistancesMeters = {1.0, 1.5, 2.0, 3.0, 4.0};
+    public static final double[] kShotPivotDegrees = {15, 20, 30, 40, 45};
+    public static final double[] kShotFlywheelRPM = {70, 90, 120, 150, 170};
+    public static final double[] kShotTimeOfFlightSeconds = {0.25, 0.30, 0.38, 0.50, 0.60};
   }
 
   public static final class LEDConstants {
@@ -235,6 +363,10 @@ public final class Constants {
 
   public static final class NeoMotorConstants {
     public static final double kFreeSpeedRpm = 5676;
+    public static final double kStallTorqueNewtonMeters = 2.6;
+    public static final double kStallCurrentAmps = 105;
+    public static final double kFreeCurrentAmps = 1.8;
+    public static final double kNominalVoltage = 12.0;
   }
 
   public static final class LimelightConstants {
@@ -243,7 +375,54 @@ public final class Constants {
         new Translation3d(15.75, 9.14, 0.0), //inches
         new Rotation3d(0.0, 35.0, 0.0));//degrees
 
+    public static final double kBackLimelightYawRadians = Math.PI; //back limelight faces out the back of the robot
+
+    public static final String kBackLimelightName = "limelight-back";
+    public static final Translation2d kBackLimelightPosition = new Translation2d(Units.inchesToMeters(-15.75), 0);
+    public static final double kBackLimelightHeightInches = 9.14;
+    public static final double kBackLimelightMountingAngleDegrees = 35.0;
+
+    public static final String kFrontLimelightName = "limelight-front";
+    public static final Translation2d kFrontLimelightPosition = new Translation2d(); //todo measure front mount
+    public static final double kFrontLimelightHeightInches = 9.14; //todo measure front mount
+    public static final double kFrontLimelightMountingAngleDegrees = 35.0; //todo measure front mount
+    public static final double kFrontLimelightYawRadians = 0.0;
+    // the onboard solve needs the mount, so the front camera does not localize until it is measured
+    public static final boolean kFrontLimelightMountMeasured = false;
+
+    public static final int kRetroPipeline = 0;
+    public static final int kAprilTagPipeline = 1;
+    public static final int kAprilTagFarPipeline = 2;
+    // a command holding one pipeline lends the camera to localization for a slot every period
+    public static final double kPipelineSharePeriodSeconds = 1.0;
+    public static final double kPipelineShareSeconds = 0.15; // a switch plus a few frames
+
+    // frames older than this are not used for targeting or localization
+    public static final double kMaxFrameAgeSeconds = 0.3;
+    // pose estimate trust scales with apparent tag size, since area falls off with distance squared
+    public static final double kVisionXYStdDevMeters = 0.5; // at the reference area
+    public static final double kVisionReferenceTargetArea = 0.5; // percent of image
+    public static final double kVisionThetaStdDevRadians = 1e6; // heading comes from the gyro
+    // enabled, a pose further than this from the estimate is a misdetection, not drift
+    public static final double kVisionMaxPoseJumpMeters = 1.0;
+
+    // onboard multi-tag solve used to check the Limelight's own pose
+    public static final double kSolverBearingStdDevRadians = Units.degreesToRadians(1.0);
+    public static final double kSolverRangeStdDevFraction = 0.1;
+    public static final double kSolverHeadingStdDevRadians = Units.degreesToRadians(2.0);
+    public static final int kSolverMaxIterations = 10;
+    public static final double kSolverMaxRmsError = 3.0;
+    public static final double kPoseCrossCheckToleranceMeters = 0.5;
+
+    // target tracker for alignment
+    public static final double kTrackerRangeStdDevFraction = 0.05;
+    public static final double kTrackerBearingStdDevRadians = Units.degreesToRadians(1.0);
+    public static final double kTrackerProcessNoise = 0.01; // m^2/s, odometry drift while coasting
+    public static final double kTrackerCoastSeconds = 0.5;
+    public static final double kTrackerGateChiSquared = 9.21; // 99% for two degrees of freedom
+
     public static final double kMiddleRetroTapeHeight = 24.5; // inches
+    public static final double kGridAprilTagHeight = 18.22; // inches
     public static final double kCubeLowHeight = -18; // inches
     public static final double kCubeMiddleHeight = 5.5; // inches
     public static final double kCubeHighHeight = 17; // inches
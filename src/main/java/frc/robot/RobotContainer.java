@@ -16,6 +16,7 @@ import edu.wpi.first.wpilibj2.command.button.JoystickButton;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
 import frc.robot.Constants.OIConstants;
 import frc.robot.Constants.ShooterConstants;
+import frc.robot.commands.ShootOnTheMove;
 import frc.robot.commands.TurnToAngle;
 import frc.robot.commands.auto.NothingAuto;
 import frc.robot.commands.auto.PathTestAuto;
@@ -24,14 +25,13 @@ import frc.robot.commands.auto.Cable.TwoCargoCableAuto;
 import frc.robot.commands.auto.Center.OneConeBalanceCenterAuto;
 import frc.robot.commands.auto.Center.OneConeBalanceMobilityCenterAuto;
 import frc.robot.commands.auto.Center.TwoCargoBalanceCenterAuto;
-import frc.robot.commands.auto.Center.TwoCargoBalanceCenterMirrorAuto;
 import frc.robot.commands.auto.Open.ThreeCargoOpenAuto;
 import frc.robot.commands.auto.Open.TwoCargoBalanceOpenAuto;
 import frc.robot.commands.auto.Open.TwoCargoOpenAuto;
 import frc.robot.subsystems.Infrastructure;
 import frc.robot.subsystems.LED;
-import frc.robot.subsystems.Limelight;
 import frc.robot.subsystems.Superstructure;
+import frc.robot.subsystems.Vision;
 import frc.robot.subsystems.Arm.Arm;
 import frc.robot.subsystems.Arm.Claw;
 import frc.robot.subsystems.Drive.DriveSubsystem;
@@ -39,7 +39,11 @@ import frc.robot.subsystems.Shooter.Shooter;
 import frc.robot.subsystems.Superstructure.BUTTON;
 import frc.robot.subsystems.Superstructure.CargoType;
 import frc.robot.subsystems.Superstructure.DPAD;
+import frc.robot.subsystems.Superstructure.MechanismEvent;
 import frc.robot.subsystems.Superstructure.ScoreMode;
+import frc.robot.utils.EventBus;
+import frc.robot.utils.SparkMaxConfigurator;
+import frc.robot.utils.SparkMaxStatusFrames;
 
 /*
  * This class is where the bulk of the robot should be declared.  Since Command-based is a
@@ -49,16 +53,19 @@ import frc.robot.subsystems.Superstructure.ScoreMode;
  */
 
 public class RobotContainer {
+	// Mechanism state transitions are published here
+	private final EventBus<MechanismEvent> m_eventBus = new EventBus<>(MechanismEvent.class);
+
 	// The robot's subsystems
 	private final Infrastructure m_infrastructure = new Infrastructure();
 	private final DriveSubsystem m_drivetrain = new DriveSubsystem();
-	private final Limelight m_limelight = new Limelight();
-	private final Arm m_arm = new Arm();
-	private final Claw m_claw = new Claw();
+	private final Vision m_vision = new Vision(m_drivetrain);
+	private final Arm m_arm = new Arm(m_eventBus);
+	private final Claw m_claw = new Claw(m_eventBus);
 	private final LED m_led = new LED();
-	private final Shooter m_shooter = new Shooter();
+	private final Shooter m_shooter = new Shooter(m_eventBus);
 	
-	private final Superstructure m_superstructure = new Superstructure(m_drivetrain, m_arm, m_claw, m_shooter, m_limelight, m_led);
+	private final Superstructure m_superstructure = new Superstructure(m_drivetrain, m_arm, m_claw, m_shooter, m_vision, m_led, m_eventBus);
 
 	// The driver's controller
 	CommandXboxController m_driverController = new CommandXboxController(OIConstants.kDriverControllerPort);
@@ -69,19 +76,23 @@ public class RobotContainer {
 	 */
 
 	public RobotContainer() {
+		// Configure every SPARK MAX the subsystems registered, all at once
+		SparkMaxConfigurator.configureAll();
+
 		// Configure the button bindings
 		configureButtonBindings();
 
 		// Configure default commands
 		m_drivetrain.setDefaultCommand(
 			// The left stick controls translation of the robot.
-			// Turning is controlled by the X axis of the right stick.
+			// Turning is controlled by the X axis of the right stick, and the heading is held
+			// while it is released.
 			new RunCommand(
 				() -> m_drivetrain.drive(
 					-MathUtil.applyDeadband(m_driverController.getLeftY(), OIConstants.kDriveDeadband),
 					-MathUtil.applyDeadband(m_driverController.getLeftX(), OIConstants.kDriveDeadband),
 					-0.8*MathUtil.applyDeadband(m_driverController.getRightX(), OIConstants.kDriveDeadband),
-					true, false),
+					true, true, true),
 				m_drivetrain));
 
 		m_infrastructure.enableCompressor();
@@ -92,7 +103,7 @@ public class RobotContainer {
 		new SequentialCommandGroup(
 			m_superstructure.setCargoTypeCommand(CargoType.CONE),
 			m_superstructure.setSubsystemState(DPAD.DOWN),
-			m_limelight.setLEDCommand(false),
+			m_vision.setLEDCommand(false),
 			new InstantCommand(() -> m_claw.setClawClose()),
 			new InstantCommand(() -> m_drivetrain.resetModules())
 		).schedule();
@@ -100,11 +111,12 @@ public class RobotContainer {
 
 	public void setAutoDefaultStates() {
 		Commands.runOnce(m_drivetrain::zeroHeading, m_drivetrain).schedule();
-		m_limelight.setLEDCommand(false).schedule();
+		m_vision.setLEDCommand(false).schedule();
 	}
 
 	public void updateTelemetry() {
 		m_superstructure.periodic();
+		SparkMaxStatusFrames.updateTelemetry();
 	}
 
 	/**
@@ -126,6 +138,10 @@ public class RobotContainer {
 		m_driverController.rightBumper()
 			.whileTrue(m_superstructure.getAlign());
 		
+		//drive to the nearest node and align on a while held
+		m_driverController.a()
+			.whileTrue(m_superstructure.getDriveToNodeAndAlign());
+
 		//press to score on left bumper
 		m_driverController.leftBumper()
 			.onTrue(m_superstructure.ScoreCommand())
@@ -164,6 +180,14 @@ public class RobotContainer {
 		m_driverController.povDown() 
 			.whileTrue(new TurnToAngle(m_drivetrain, 180));
 
+		//shoot on the move on b while held
+		m_driverController.b()
+			.whileTrue(new ShootOnTheMove(
+				m_drivetrain, m_shooter, m_vision,
+				() -> -MathUtil.applyDeadband(m_driverController.getLeftY(), OIConstants.kDriveDeadband),
+				() -> -MathUtil.applyDeadband(m_driverController.getLeftX(), OIConstants.kDriveDeadband))
+				.unless(() -> m_superstructure.getScoreMode() != ScoreMode.SHOOTER));
+
 		/////////////////////////////OPERATOR CONTROLS/////////////////////////////////////////////////////////////
 
 		//set arm mode on start
@@ -226,11 +250,11 @@ public class RobotContainer {
 	}
 
 	public Command getTwoCargoBalanceCenterAuto() {
-		return new TwoCargoBalanceCenterAuto(m_drivetrain, m_superstructure, m_shooter);
+		return new TwoCargoBalanceCenterAuto(m_drivetrain, m_superstructure, m_shooter, TwoCargoBalanceCenterAuto.kPathName);
 	}
 
 	public Command getTwoCargoBalanceCenterMirrorAuto() {
-		return new TwoCargoBalanceCenterMirrorAuto(m_drivetrain, m_superstructure, m_shooter);
+		return new TwoCargoBalanceCenterAuto(m_drivetrain, m_superstructure, m_shooter, TwoCargoBalanceCenterAuto.kMirrorPathName);
 	}
 
 	public Command getTwoCargoOpenAuto() {
@@ -4,57 +4,89 @@
 
 package frc.robot.commands;
 
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.Constants.BalanceConstants;
+import frc.robot.Constants.DriveConstants;
+import frc.robot.Constants.FieldConstants;
 import frc.robot.subsystems.Drive.DriveSubsystem;
-import frc.robot.utils.controller.AsymmetricProfiledPIDCommand;
-import frc.robot.utils.controller.AsymmetricProfiledPIDController;
-import frc.robot.utils.controller.AsymmetricTrapezoidProfile.Constraints;
-import frc.robot.utils.controller.AsymmetricTrapezoidProfile.State;
-
-// NOTE:  Consider using this command inline, rather than writing a subclass.  For more
-// information, see:
-// https://docs.wpilib.org/en/stable/docs/software/commandbased/convenience-features.html
-public class AutoBalance extends AsymmetricProfiledPIDCommand {
+import frc.robot.utils.BalanceController;
+import frc.robot.utils.ChargeStationEstimator;
+
+/**
+ * Balances on the charge station from its estimated tilt and the robot's place on it, and ends once
+ * the station has settled level. See {@link BalanceController}.
+ *
+ * <p>The tilt, the offset from the hinge, the measured speed and the drive command are all along the
+ * robot's heading, so the robot can balance facing either way. The station's x is the same in the
+ * blue frame and PathPlanner's red frame, so the offset needs no mirroring.
+ */
+public class AutoBalance extends CommandBase {
+  private final DriveSubsystem m_drivetrain;
+
+  private final ChargeStationEstimator m_estimator = new ChargeStationEstimator(
+    BalanceConstants.kPitchStdDevDegrees,
+    BalanceConstants.kTiltAccelerationStdDevDegreesPerSecondSquared,
+    FieldConstants.kChargeStationMaxTiltDegrees);
+  private final BalanceController m_controller = new BalanceController();
+
   /** Creates a new AutoBalance. */
-  private DriveSubsystem m_drivetrain;
-  public AutoBalance(DriveSubsystem m_drivetrain, boolean isReversed) {
-    super(
-        // The ProfiledPIDController used by the command
-        new AsymmetricProfiledPIDController(
-            // The PID gains
-            0.006,
-            0,
-            0.001,
-            // The motion profile constraints
-            new Constraints(1, 1, 1)), //deg/s, deg/s^2
-        // This should return the measurement
-        m_drivetrain::getPitchDegrees, //gyro X angle
-        // This should return the goal (can also be a constant)
-        new State(0, 0),
-        // This uses the output
-        (output, setpoint) -> {
-          // Use the output (and setpoint, if desired) here
-          m_drivetrain.drive( isReversed ? -output : output
-            , 0, 0, true, false);
-        });
-    // Use addRequirements() here to declare subsystem dependencies.
-    // Configure additional PID options by calling `getController` here.
-    addRequirements(m_drivetrain);
+  public AutoBalance(DriveSubsystem m_drivetrain) {
     this.m_drivetrain = m_drivetrain;
-    getController().setTolerance(2);
-
+    addRequirements(m_drivetrain);
   }
-  
+
+  @Override
   public void initialize() {
+    m_estimator.reset(getTiltDegrees(), Timer.getFPGATimestamp());
+    m_controller.reset(m_estimator);
   }
 
-  // Returns true when the command should end.
   @Override
-  public boolean isFinished() {
-    return getController().atSetpoint();
+  public void execute() {
+    double timestamp = Timer.getFPGATimestamp();
+    m_estimator.update(
+      getTiltDegrees(),
+      getOffsetMeters(m_drivetrain.getPose()),
+      m_drivetrain.getRobotRelativeSpeeds().vxMetersPerSecond,
+      timestamp);
+    double speed = m_controller.calculate(m_estimator, timestamp);
+
+    if (m_controller.isHolding()) {
+      m_drivetrain.setX();
+    } else {
+      m_drivetrain.drive(speed / DriveConstants.kMaxSpeedMetersPerSecond, 0, 0, false, false);
+    }
+
+    SmartDashboard.putString("Balance Phase", m_controller.getPhase().toString());
+    SmartDashboard.putNumber("Balance Tilt", m_estimator.getTiltDegrees());
+    SmartDashboard.putNumber("Balance Tilt Rate", m_estimator.getTiltRateDegreesPerSecond());
+  }
+
+  // positive when the robot's front is up
+  private double getTiltDegrees() {
+    return -m_drivetrain.getPitchDegrees();
   }
 
-  public void end() {
-    m_drivetrain.drive(0, 0, 0, true, false);
+  // hinge to robot along the robot's heading, NaN off the station where odometry says nothing about
+  // the hinge
+  private double getOffsetMeters(Pose2d pose) {
+    if (pose.getX() < FieldConstants.kChargeStationMinXMeters || pose.getX() > FieldConstants.kChargeStationMaxXMeters) {
+      return Double.NaN;
+    }
+    return (pose.getX() - FieldConstants.kChargeStationPivotXMeters) * pose.getRotation().getCos();
+  }
+
+  @Override
+  public void end(boolean interrupted) {
     m_drivetrain.setX();
   }
-}
\ No newline at end of file
+
+  // Returns true when the command should end.
+  @Override
+  public boolean isFinished() {
+    return m_controller.isBalanced();
+  }
+}
@@ -0,0 +1,118 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands;
+
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.Constants.LimelightConstants;
+import frc.robot.Constants.ShooterConstants;
+import frc.robot.subsystems.Limelight;
+import frc.robot.subsystems.Vision;
+import frc.robot.subsystems.Vision.VisionTask;
+import frc.robot.subsystems.Drive.DriveSubsystem;
+import frc.robot.subsystems.Shooter.Shooter;
+import frc.robot.subsystems.Shooter.ShotSolver;
+import frc.robot.utils.LimelightClient.Snapshot;
+import frc.robot.utils.PipelineScheduler.Priority;
+
+public class ShootOnTheMove extends CommandBase {
+  private DriveSubsystem m_drivetrain;
+  private Shooter m_shooter;
+  private Vision m_vision;
+
+  private DoubleSupplier xSpeedSupplier;
+  private DoubleSupplier ySpeedSupplier;
+
+  private ShotSolver shotSolver = new ShotSolver();
+  private PIDController headingController = new PIDController(ShooterConstants.kShotHeadingP, 0, 0);
+
+  private Limelight[] shootCameras;
+  // each camera's goal height before the command, restored when it ends
+  private double[] previousGoalHeights;
+
+  /** Creates a new ShootOnTheMove. The driver keeps translation control while heading is held on the shot. */
+  public ShootOnTheMove(DriveSubsystem m_drivetrain, Shooter m_shooter, Vision m_vision,
+      DoubleSupplier xSpeedSupplier, DoubleSupplier ySpeedSupplier) {
+    this.m_drivetrain = m_drivetrain;
+    this.m_shooter = m_shooter;
+    this.m_vision = m_vision;
+    this.xSpeedSupplier = xSpeedSupplier;
+    this.ySpeedSupplier = ySpeedSupplier;
+
+    shootCameras = m_vision.getCameras(VisionTask.SHOOT);
+    previousGoalHeights = new double[shootCameras.length];
+
+    headingController.enableContinuousInput(-Math.PI, Math.PI);
+
+    // Use addRequirements() here to declare subsystem dependencies.
+    addRequirements(m_drivetrain, m_shooter);
+  }
+
+  // Called when the command is initially scheduled.
+  @Override
+  public void initialize() {
+    for (int i = 0; i < shootCameras.length; i++) {
+      Limelight limelight = shootCameras[i];
+      previousGoalHeights[i] = limelight.getGoalHeight();
+      limelight.requestPipeline(this, LimelightConstants.kAprilTagPipeline, Priority.ALIGN);
+      limelight.setGoalHeight(LimelightConstants.kGridAprilTagHeight);
+      limelight.setLED(true);
+    }
+    headingController.reset();
+  }
+
+  // Called every time the scheduler runs while the command is scheduled.
+  @Override
+  public void execute() {
+    double rotation = 0;
+
+    Limelight limelight = m_vision.getBestCamera(VisionTask.SHOOT);
+    Snapshot frame = limelight.getSnapshot();
+    if (frame.hasTarget && limelight.isFrameFrom(frame, LimelightConstants.kAprilTagPipeline)) {
+      ChassisSpeeds fieldRelativeSpeeds = m_drivetrain.getFieldRelativeSpeeds();
+      shotSolver.solve(
+        limelight.getDistanceToGoalMeters(frame),
+        limelight.getXOffsetRadians(frame),
+        limelight.getYawRadians(),
+        m_drivetrain.getHeadingRadians(),
+        fieldRelativeSpeeds.vxMetersPerSecond,
+        fieldRelativeSpeeds.vyMetersPerSecond);
+
+      m_shooter.setTargetPivot(shotSolver.getPivotDegrees());
+      m_shooter.setTargetVelocity(shotSolver.getFlywheelRPM());
+      rotation = MathUtil.clamp(
+        headingController.calculate(m_drivetrain.getHeadingRadians(), shotSolver.getHeadingRadians()), -1, 1);
+    }
+
+    m_drivetrain.drive(xSpeedSupplier.getAsDouble(), ySpeedSupplier.getAsDouble(), rotation, true, false);
+
+    SmartDashboard.putBoolean("Shot In Range", shotSolver.isInRange());
+    SmartDashboard.putNumber("Shot Virtual Distance", shotSolver.getVirtualDistanceMeters());
+    SmartDashboard.putNumber("Shot Solve Time us", shotSolver.getSolveTimeMicros());
+  }
+
+  // Called once the command ends or is interrupted.
+  @Override
+  public void end(boolean interrupted) {
+    for (int i = 0; i < shootCameras.length; i++) {
+      Limelight limelight = shootCameras[i];
+      limelight.setGoalHeight(previousGoalHeights[i]);
+      limelight.setLED(false);
+      limelight.releasePipeline(this);
+    }
+    m_drivetrain.drive(0, 0, 0, true, false);
+  }
+
+  // Returns true when the command should end.
+  @Override
+  public boolean isFinished() {
+    return false;
+  }
+}
@@ -7,14 +7,31 @@ package frc.robot.commands.align;
 import edu.wpi.first.math.controller.ProfiledPIDController;
 import edu.wpi.first.math.trajectory.TrapezoidProfile.Constraints;
 import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.Constants.LimelightConstants;
 import frc.robot.subsystems.Limelight;
+import frc.robot.subsystems.Vision;
+import frc.robot.subsystems.Vision.VisionTask;
 import frc.robot.subsystems.Drive.DriveSubsystem;
+import frc.robot.utils.TargetTracker;
+import frc.robot.utils.PipelineScheduler.Priority;
+import frc.robot.utils.LimelightClient.Snapshot;
 
 public class AlignToCone extends CommandBase {
   private DriveSubsystem m_drivetrain;
+  private Vision m_vision;
   private Limelight m_limelight;
 
+  // predicts the target between frames from drivetrain motion
+  private TargetTracker m_tracker = new TargetTracker(
+    LimelightConstants.kTrackerRangeStdDevFraction,
+    LimelightConstants.kTrackerBearingStdDevRadians,
+    LimelightConstants.kTrackerProcessNoise,
+    LimelightConstants.kTrackerCoastSeconds,
+    LimelightConstants.kTrackerGateChiSquared);
+  private long lastFrameSequence = -1;
+
   private ProfiledPIDController xController;
   private ProfiledPIDController yController;
   private ProfiledPIDController thetaController;
@@ -29,9 +46,9 @@ public class AlignToCone extends CommandBase {
   //private double thetaControllerkP
 
   /** Creates a new SmoothAlign. */
-  public AlignToCone(DriveSubsystem m_drivetrain, Limelight m_limelight) {
+  public AlignToCone(DriveSubsystem m_drivetrain, Vision m_vision) {
     this.m_drivetrain = m_drivetrain;
-    this.m_limelight = m_limelight;
+    this.m_vision = m_vision;
 
     // Use addRequirements() here to declare subsystem dependencies.
     xController = new ProfiledPIDController(kPXControllerCone, 0, 0, new Constraints(0.7, 0.2));
@@ -54,20 +71,41 @@ public class AlignToCone extends CommandBase {
   // Called when the command is initially scheduled.
   @Override
   public void initialize() {
-    m_limelight.setRetroPipeline();
+    m_limelight = m_vision.getBestCamera(VisionTask.CONE_ALIGN);
+    m_limelight.setGoalHeight(LimelightConstants.kMiddleRetroTapeHeight);
+    m_limelight.requestPipeline(this, LimelightConstants.kRetroPipeline, Priority.ALIGN);
     m_limelight.setLED(true);
+    m_tracker.reset();
+    // the frame before the pipeline switch may be of the wrong target
+    lastFrameSequence = m_limelight.getSnapshot().sequence;
   }
 
   // Called every time the scheduler runs while the command is scheduled.
   @Override
   public void execute() {
-    if(m_limelight.isTargetVisible()) {
+    m_tracker.predict(m_drivetrain.getRobotRelativeSpeeds(), m_drivetrain.getHeadingRadians(), Timer.getFPGATimestamp());
+
+    Snapshot frame = m_limelight.getSnapshot();
+    if (frame.sequence != lastFrameSequence) {
+      lastFrameSequence = frame.sequence;
+      if (frame.hasTarget && m_limelight.isFrameFrom(frame, LimelightConstants.kRetroPipeline)) {
+        m_tracker.addObservation(
+          m_limelight.getDistanceToGoalMeters(frame),
+          m_limelight.getXOffsetRadians(frame),
+          m_limelight.getYawRadians(),
+          frame.timestampSeconds);
+      }
+    }
+
+    if(m_tracker.hasTarget()) {
       m_drivetrain.drive(
-        xController.calculate(m_limelight.getDistanceToGoalMeters()), 
-        yController.calculate(m_limelight.getXOffsetRadians()), 
+        xController.calculate(m_tracker.getDistanceMeters()), 
+        yController.calculate(m_tracker.getBearingRadians(m_limelight.getYawRadians())), 
         thetaController.calculate(m_drivetrain.getHeadingRadians()), 
         true,
         false);
+    } else {
+      m_drivetrain.drive(0, 0, 0, true, false);
     }
   }
 
@@ -75,6 +113,7 @@ public class AlignToCone extends CommandBase {
   @Override
   public void end(boolean interrupted) {
     m_limelight.setLED(false);
+    m_limelight.releasePipeline(this);
     m_drivetrain.drive(0, 0, 0, true, false);
   }
 
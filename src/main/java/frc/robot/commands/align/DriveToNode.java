@@ -0,0 +1,181 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands.align;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.pathplanner.lib.PathConstraints;
+import com.pathplanner.lib.PathPlanner;
+import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPoint;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.InstantCommand;
+import edu.wpi.first.wpilibj2.command.ProxyCommand;
+import frc.robot.Constants.AutoConstants;
+import frc.robot.Constants.DriveConstants;
+import frc.robot.Constants.FieldConstants;
+import frc.robot.commands.auto.AutoBase;
+import frc.robot.subsystems.Drive.DriveSubsystem;
+import frc.robot.subsystems.Superstructure.CargoType;
+
+/**
+ * Drives from wherever the robot is to the scoring pose of the nearest grid node for the cargo.
+ *
+ * <p>The path is generated when the command starts, from the estimated pose and the measured
+ * velocity, and followed with the same controller as the autos. If the straight line to the node
+ * crosses the charge station, the path goes around it through the nearer lane. Planning is done on
+ * the blue side and mirrored for red the way PathPlanner mirrors red alliance paths, flipping y,
+ * since that is the frame odometry and vision use on red once an auto has reset odometry.
+ */
+public class DriveToNode extends AutoBase {
+  private DriveSubsystem m_drivetrain;
+  private Supplier<CargoType> cargoTypeSupplier;
+
+  /** Creates a new DriveToNode. */
+  public DriveToNode(DriveSubsystem m_drivetrain, Supplier<CargoType> cargoTypeSupplier) {
+    super(m_drivetrain);
+    this.m_drivetrain = m_drivetrain;
+    this.cargoTypeSupplier = cargoTypeSupplier;
+
+    // the proxy builds the path when it is scheduled rather than when the binding is made
+    addCommands(new ProxyCommand(this::getPathCommand));
+  }
+
+  private Command getPathCommand() {
+    long startTime = WPIUtilJNI.now();
+    PathPlannerTrajectory trajectory = generateTrajectory(m_drivetrain.getPose(), m_drivetrain.getFieldRelativeSpeeds());
+    SmartDashboard.putNumber("Drive To Node Generate ms", (WPIUtilJNI.now() - startTime) / 1000.0);
+
+    if (trajectory == null) return new InstantCommand();
+    m_drivetrain.getField().getObject("Drive To Node").setTrajectory(trajectory);
+    return getPathControllerCommand(trajectory);
+  }
+
+  private PathPlannerTrajectory generateTrajectory(Pose2d pose, ChassisSpeeds fieldRelativeSpeeds) {
+    boolean red = DriverStation.getAlliance() == Alliance.Red;
+
+    // work on the blue side
+    Translation2d start = mirror(pose.getTranslation(), red);
+    Translation2d velocity = new Translation2d(
+      fieldRelativeSpeeds.vxMetersPerSecond,
+      red ? -fieldRelativeSpeeds.vyMetersPerSecond : fieldRelativeSpeeds.vyMetersPerSecond);
+    Translation2d goal = new Translation2d(FieldConstants.kScoringXMeters, getNodeY(start.getY()));
+    if (start.getDistance(goal) < AutoConstants.kOnTheFlyMinDistanceMeters) return null;
+
+    List<Translation2d> waypoints = new ArrayList<>();
+    waypoints.add(start);
+    if (crossesChargeStation(start, goal)) {
+      // pick the lane nearer to where the robot is and where it is going
+      double laneY = Math.abs(start.getY() + goal.getY() - 2 * FieldConstants.kCableLaneYMeters)
+        < Math.abs(start.getY() + goal.getY() - 2 * FieldConstants.kOpenLaneYMeters)
+        ? FieldConstants.kCableLaneYMeters
+        : FieldConstants.kOpenLaneYMeters;
+      double clearance = FieldConstants.kRobotClearanceMeters;
+      if (start.getX() > FieldConstants.kChargeStationMaxXMeters + clearance) {
+        waypoints.add(new Translation2d(FieldConstants.kChargeStationMaxXMeters + clearance, laneY));
+      }
+      waypoints.add(new Translation2d(FieldConstants.kChargeStationMinXMeters - clearance, laneY));
+    }
+    waypoints.add(goal);
+
+    Rotation2d scoringRotation = mirror(new Rotation2d(FieldConstants.kScoringHeadingRadians), red);
+    // towards the grid, so the robot arrives square to it
+    Rotation2d approachHeading = mirror(Rotation2d.fromDegrees(180), red);
+
+    List<PathPoint> points = new ArrayList<>();
+    double speed = velocity.getNorm();
+    Translation2d firstLeg = waypoints.get(1).minus(start);
+    if (speed > AutoConstants.kOnTheFlyMovingSpeedMetersPerSecond) {
+      // keep going the way the robot already is, so the path starts from its real state
+      points.add(new PathPoint(
+        pose.getTranslation(),
+        mirror(new Rotation2d(velocity.getX(), velocity.getY()), red),
+        pose.getRotation(),
+        speed));
+    } else {
+      points.add(new PathPoint(
+        pose.getTranslation(),
+        mirror(new Rotation2d(firstLeg.getX(), firstLeg.getY()), red),
+        pose.getRotation()));
+    }
+    for (int i = 1; i < waypoints.size() - 1; i++) {
+      points.add(new PathPoint(mirror(waypoints.get(i), red), approachHeading, scoringRotation));
+    }
+    points.add(new PathPoint(mirror(goal, red), approachHeading, scoringRotation));
+
+    return PathPlanner.generatePath(
+      new PathConstraints(
+        Math.min(AutoConstants.kOnTheFlyMaxSpeedMetersPerSecond, DriveConstants.kMaxSpeedMetersPerSecond),
+        AutoConstants.kOnTheFlyMaxAccelerationMetersPerSecondSquared),
+      points);
+  }
+
+  // nearest node that takes the cargo, by distance along the grid
+  private double getNodeY(double y) {
+    boolean cube = cargoTypeSupplier.get() == CargoType.CUBE;
+    double bestY = 0;
+    double bestDistance = Double.POSITIVE_INFINITY;
+    for (int node = 0; node < FieldConstants.kNodeCount; node++) {
+      if (isCubeNode(node) != cube) continue;
+      double nodeY = FieldConstants.kFirstNodeYMeters + node * FieldConstants.kNodeSeparationYMeters;
+      if (Math.abs(nodeY - y) < bestDistance) {
+        bestDistance = Math.abs(nodeY - y);
+        bestY = nodeY;
+      }
+    }
+    return bestY;
+  }
+
+  private static boolean isCubeNode(int node) {
+    for (int cubeNode : FieldConstants.kCubeNodes) {
+      if (cubeNode == node) return true;
+    }
+    return false;
+  }
+
+  // clips the segment against the station grown by the robot clearance
+  private static boolean crossesChargeStation(Translation2d from, Translation2d to) {
+    double clearance = FieldConstants.kRobotClearanceMeters;
+    double[] min = {FieldConstants.kChargeStationMinXMeters - clearance, FieldConstants.kChargeStationMinYMeters - clearance};
+    double[] max = {FieldConstants.kChargeStationMaxXMeters + clearance, FieldConstants.kChargeStationMaxYMeters + clearance};
+    double[] origin = {from.getX(), from.getY()};
+    double[] delta = {to.getX() - from.getX(), to.getY() - from.getY()};
+
+    double enter = 0;
+    double exit = 1;
+    for (int axis = 0; axis < 2; axis++) {
+      if (Math.abs(delta[axis]) < 1e-9) {
+        if (origin[axis] < min[axis] || origin[axis] > max[axis]) return false;
+        continue;
+      }
+      double t1 = (min[axis] - origin[axis]) / delta[axis];
+      double t2 = (max[axis] - origin[axis]) / delta[axis];
+      enter = Math.max(enter, Math.min(t1, t2));
+      exit = Math.min(exit, Math.max(t1, t2));
+      if (enter > exit) return false;
+    }
+    return true;
+  }
+
+  // PathPlanner's red alliance transform, so it also takes red poses back to the blue side
+  private static Translation2d mirror(Translation2d translation, boolean red) {
+    return red ? new Translation2d(translation.getX(), FieldConstants.kFieldWidthMeters - translation.getY()) : translation;
+  }
+
+  private static Rotation2d mirror(Rotation2d rotation, boolean red) {
+    return red ? new Rotation2d(rotation.getCos(), -rotation.getSin()) : rotation;
+  }
+}
@@ -4,18 +4,30 @@
 
 package frc.robot.commands.auto;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.function.BooleanSupplier;
 
 import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPlannerTrajectory.StopEvent;
 import com.pathplanner.lib.auto.SwerveAutoBuilder;
-import com.pathplanner.lib.commands.PPSwerveControllerCommand;
 
-import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import edu.wpi.first.wpilibj2.command.ConditionalCommand;
+import edu.wpi.first.wpilibj2.command.InstantCommand;
+import edu.wpi.first.wpilibj2.command.ScheduleCommand;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
+import edu.wpi.first.wpilibj2.command.WaitUntilCommand;
 import frc.robot.Constants.AutoConstants;
 import frc.robot.Constants.DriveConstants;
 import frc.robot.subsystems.Drive.DriveSubsystem;
+import frc.robot.utils.AlliancePaths;
+import frc.robot.utils.AutoTimeline;
+import frc.robot.utils.AutoTimeline.Kind;
 
 // NOTE:  Consider using this command inline, rather than writing a subclass.  For more
 // information, see:
@@ -23,14 +35,96 @@ import frc.robot.subsystems.Drive.DriveSubsystem;
 public class AutoBase extends SequentialCommandGroup {
   private DriveSubsystem m_drivetrain;
 
+  // step, path and event timing for this auto, reported when it ends
+  private final AutoTimeline m_timeline = new AutoTimeline(getClass().getSimpleName());
+  // detached mechanism commands, cancelled with the auto so none outlive it
+  private final List<Command> m_backgroundCommands = new ArrayList<>();
+
+  /** A condition an event has to wait for, such as a cube being in the kicker. */
+  public static final class Dependency {
+    private final String m_name;
+    private final BooleanSupplier m_condition;
+
+    public Dependency(String name, BooleanSupplier condition) {
+      m_name = name;
+      m_condition = condition;
+    }
+  }
+
   /** Creates a new AutoBase. */
   public AutoBase(DriveSubsystem m_drivetrain) {
     this.m_drivetrain = m_drivetrain;
     // Add your commands in the addCommands() call, e.g.
     // addCommands(new FooCommand(), new BarCommand());
-    addCommands();
+    addCommands(new InstantCommand(m_timeline::start));
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    super.end(interrupted);
+    for (Command command : m_backgroundCommands) command.cancel();
+    m_timeline.report();
+  }
+
+  /**
+   * Wraps a command in the auto's sequence so it shows up in the timeline.
+   *
+   * @param name The step's name, for the timeline.
+   * @param command The command.
+   * @return The timed command.
+   */
+  protected Command step(String name, Command command) {
+    return timed(name, Kind.STEP, command);
+  }
+
+  /**
+   * Wraps a mechanism command for the event map so it runs alongside the path. The path moves on
+   * as soon as the command is started instead of holding at the marker or stop until it finishes.
+   * The command must not require the drivetrain, and is cancelled if it is still running when the
+   * auto ends.
+   *
+   * @param name The event's name, for the timeline.
+   * @param command The mechanism command.
+   * @return The event command.
+   */
+  protected Command inBackground(String name, Command command) {
+    Command background = timed(name, Kind.BACKGROUND, command);
+    m_backgroundCommands.add(background);
+    return new ScheduleCommand(background);
+  }
+
+  /**
+   * Wraps a command for the event map so it waits for its dependencies first, holding the path only
+   * while they are not met, and runs anyway once they have not been met for
+   * {@link AutoConstants#kEventDependencyTimeoutSeconds}.
+   *
+   * @param name The event's name, for the timeline.
+   * @param command The command.
+   * @param dependencies What has to be true before it runs.
+   * @return The event command.
+   */
+  protected Command after(String name, Command command, Dependency... dependencies) {
+    StringBuilder waitName = new StringBuilder(name + " waiting on");
+    for (Dependency dependency : dependencies) waitName.append(" [").append(dependency.m_name).append("]");
+
+    Command wait = new WaitUntilCommand(() -> {
+      for (Dependency dependency : dependencies) {
+        if (!dependency.m_condition.getAsBoolean()) return false;
+      }
+      return true;
+    }).withTimeout(AutoConstants.kEventDependencyTimeoutSeconds);
+    return timed(waitName.toString(), Kind.BLOCKED, wait).andThen(command);
+  }
+
+  private CommandBase timed(String name, Kind kind, Command command) {
+    int[] entry = new int[1];
+    return command
+      .beforeStarting(() -> entry[0] = m_timeline.begin(name, kind))
+      .finallyDo(interrupted -> m_timeline.finish(entry[0]));
   }
 
+  // times each path and each stop between them, in the order fullAuto builds them, and follows the
+  // red variant AlliancePaths loaded with each path when the auto starts on the red alliance
   public SwerveAutoBuilder getSwerveAutoBuilder(HashMap<String, Command> AutoEventMap) {
     return new SwerveAutoBuilder(
       m_drivetrain::getPose, // pose2d supplier
@@ -40,32 +134,54 @@ public class AutoBase extends SequentialCommandGroup {
       AutoConstants.kThetaControllerConstants, // theta controller
       m_drivetrain::setModuleStates,
       AutoEventMap,
-      true,
-      m_drivetrain);
+      false, // paths are mirrored at load time by AlliancePaths
+      m_drivetrain) {
+      private int pathCount = 0;
+      private int stopCount = 0;
+
+      @Override
+      public CommandBase followPath(PathPlannerTrajectory trajectory) {
+        return new ConditionalCommand(
+          getPathControllerCommand(AlliancePaths.forAlliance(trajectory, Alliance.Red)),
+          getPathControllerCommand(trajectory),
+          AutoBase::isRedAlliance);
+      }
+
+      @Override
+      public CommandBase resetPose(PathPlannerTrajectory trajectory) {
+        return new ConditionalCommand(
+          super.resetPose(AlliancePaths.forAlliance(trajectory, Alliance.Red)),
+          super.resetPose(trajectory),
+          AutoBase::isRedAlliance);
+      }
+
+      @Override
+      public CommandBase followPathWithEvents(PathPlannerTrajectory trajectory) {
+        return timed("path " + ++pathCount, Kind.PATH, super.followPathWithEvents(trajectory));
+      }
+
+      @Override
+      public CommandBase stopEventGroup(StopEvent stopEvent) {
+        stopCount++;
+        if (stopEvent.names.isEmpty() && stopEvent.waitTime <= 0) return super.stopEventGroup(stopEvent);
+        return timed(getStopName(stopCount, stopEvent.names), Kind.STOP, super.stopEventGroup(stopEvent));
+      }
+    };
+  }
+
+  private static boolean isRedAlliance() {
+    return DriverStation.getAlliance() == Alliance.Red;
+  }
+
+  private static String getStopName(int stop, List<String> names) {
+    return "stop " + stop + (names.isEmpty() ? "" : ": " + String.join(", ", names));
   }
 
   public SwerveAutoBuilder getSwerveAutoBuilder() {
-    return new SwerveAutoBuilder(
-      m_drivetrain::getPose, // pose2d supplier
-      m_drivetrain::resetOdometry, // reset odometry at the beginning of auto
-      DriveConstants.kDriveKinematics, // swerve kinematics
-      AutoConstants.kTranslationControllerConstants, // x y controller
-      AutoConstants.kThetaControllerConstants, // theta controller
-      m_drivetrain::setModuleStates,
-      new HashMap<>(),
-      true,
-      m_drivetrain);
+    return getSwerveAutoBuilder(new HashMap<>());
   }
 
-  public PPSwerveControllerCommand getPathControllerCommand(PathPlannerTrajectory trajectory) {
-    return new PPSwerveControllerCommand(
-      trajectory, 
-      m_drivetrain::getPose, 
-      DriveConstants.kDriveKinematics, 
-      new PIDController(AutoConstants.kTranslationControllerP, 0, AutoConstants.kTranslationControllerD), 
-      new PIDController(AutoConstants.kTranslationControllerP, 0, AutoConstants.kTranslationControllerD), 
-      new PIDController(AutoConstants.kThetaControllerP, 0, AutoConstants.kThetaControllerD), 
-      m_drivetrain::setModuleStates, 
-      m_drivetrain);
+  public CommandBase getPathControllerCommand(PathPlannerTrajectory trajectory) {
+    return new FollowPath(trajectory, m_drivetrain);
   }
 }
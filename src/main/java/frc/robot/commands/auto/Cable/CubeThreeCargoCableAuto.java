@@ -8,7 +8,6 @@ import java.util.HashMap;
 import java.util.List;
 
 import com.pathplanner.lib.PathConstraints;
-import com.pathplanner.lib.PathPlanner;
 import com.pathplanner.lib.PathPlannerTrajectory;
 import com.pathplanner.lib.auto.SwerveAutoBuilder;
 
@@ -24,49 +23,59 @@ import frc.robot.subsystems.Superstructure.ScoreMode;
 import frc.robot.utils.ShooterPreset;
 import frc.robot.subsystems.Drive.DriveSubsystem;
 import frc.robot.subsystems.Superstructure;
+import frc.robot.utils.AlliancePaths;
 
 // NOTE:  Consider using this command inline, rather than writing a subclass.  For more
 // information, see:
 // https://docs.wpilib.org/en/stable/docs/software/commandbased/convenience-features.html
 
 public class CubeThreeCargoCableAuto extends AutoBase {
-	List<PathPlannerTrajectory> autoPathGroup =
-		PathPlanner.loadPathGroup(
-			"Cube3CargoCABLE",
-			new PathConstraints(1.31, 3.5));
+	public static final String kPathName = "Cube3CargoCABLE";
+	public static final PathConstraints[] kPathConstraints = {new PathConstraints(1.31, 3.5)};
+
+	List<PathPlannerTrajectory> autoPathGroup = AlliancePaths.loadPathGroup(kPathName, kPathConstraints);
 
 	public final HashMap<String, Command> AutoEventMap = new HashMap<>();
 
 	public CubeThreeCargoCableAuto(DriveSubsystem m_drivetrain, Superstructure m_superstructure, Shooter m_shooter) {
 		super(m_drivetrain);
 
-		AutoEventMap.put("intake cube", 
-			new SequentialCommandGroup(
-				m_superstructure.setScoreLevelCommand(BUTTON.X),
-				m_superstructure.setSubsystemState(DPAD.LEFT)));
-        AutoEventMap.put("hold cube", m_superstructure.setSubsystemState(DPAD.UP));
-		AutoEventMap.put("set shooter custom", 
-			m_shooter.setPreset(new ShooterPreset(90, 100)));
-		AutoEventMap.put("shoot cube", 
-			new SequentialCommandGroup(
-				m_shooter.setKickerOuttakeCommand(ShooterConstants.kKickSpeed),
-				new WaitCommand(0.2),
-				m_shooter.stopCommand()));
+		Dependency shooterReady = new Dependency("shooter ready", m_superstructure::isShooterReady);
+		Dependency cubeInKicker = new Dependency("cube in kicker", m_superstructure::hasCube);
+
+		AutoEventMap.put("intake cube",
+			inBackground("intake cube",
+				new SequentialCommandGroup(
+					m_superstructure.setScoreLevelCommand(BUTTON.X),
+					m_superstructure.setSubsystemState(DPAD.LEFT))));
+        AutoEventMap.put("hold cube",
+			inBackground("hold cube",
+				m_superstructure.setSubsystemState(DPAD.UP)));
+		AutoEventMap.put("set shooter custom",
+			inBackground("set shooter custom",
+				m_shooter.setPreset(new ShooterPreset(90, 100))));
+		AutoEventMap.put("shoot cube",
+			after("shoot cube",
+				new SequentialCommandGroup(
+					m_shooter.setKickerOuttakeCommand(ShooterConstants.kKickSpeed),
+					new WaitCommand(0.2),
+					m_shooter.stopCommand()),
+				shooterReady, cubeInKicker));
 
 		SwerveAutoBuilder autoBuilder = getSwerveAutoBuilder(AutoEventMap);
 
 		addCommands(
       		m_superstructure.setScoreModeCommand(ScoreMode.SHOOTER),
 
-			new WaitCommand(0.7).raceWith(m_shooter.setPreset(new ShooterPreset(45, 150))),
+			step("aim preload", new WaitCommand(0.7).raceWith(m_shooter.setPreset(new ShooterPreset(45, 150)))),
 			m_shooter.setKickerOuttakeCommand(ShooterConstants.kKickSpeed),
-			new WaitCommand(0.2),
+			step("shoot preload", new WaitCommand(0.2)),
 			m_shooter.stopCommand(),
 
 			//Follow Path
-			autoBuilder.fullAuto(autoPathGroup),
+			step("follow path", autoBuilder.fullAuto(autoPathGroup)),
 
-			m_shooter.setPreset(new ShooterPreset(90, 100)),
+			step("aim last cube", m_shooter.setPreset(new ShooterPreset(90, 100))),
 			m_shooter.setKickerOuttakeCommand(ShooterConstants.kKickSpeed)
 		);
 	}
@@ -8,7 +8,6 @@ import java.util.HashMap;
 import java.util.List;
 
 import com.pathplanner.lib.PathConstraints;
-import com.pathplanner.lib.PathPlanner;
 import com.pathplanner.lib.PathPlannerTrajectory;
 import com.pathplanner.lib.auto.SwerveAutoBuilder;
 
@@ -23,46 +22,56 @@ import frc.robot.subsystems.Superstructure.DPAD;
 import frc.robot.subsystems.Superstructure.ScoreMode;
 import frc.robot.subsystems.Drive.DriveSubsystem;
 import frc.robot.subsystems.Superstructure;
+import frc.robot.utils.AlliancePaths;
 
 // NOTE:  Consider using this command inline, rather than writing a subclass.  For more
 // information, see:
 // https://docs.wpilib.org/en/stable/docs/software/commandbased/convenience-features.html
 
 public class TwoCargoCableAuto extends AutoBase {
-	List<PathPlannerTrajectory> autoPathGroup =
-		PathPlanner.loadPathGroup(
-			"2CargoCABLE",
-			new PathConstraints(1.7, 2.4));
+	public static final String kPathName = "2CargoCABLE";
+	public static final PathConstraints[] kPathConstraints = {new PathConstraints(1.7, 2.4)};
+
+	List<PathPlannerTrajectory> autoPathGroup = AlliancePaths.loadPathGroup(kPathName, kPathConstraints);
 
 	public final HashMap<String, Command> AutoEventMap = new HashMap<>();
 
 	public TwoCargoCableAuto(DriveSubsystem m_drivetrain, Superstructure m_superstructure, Shooter m_shooter) {
 		super(m_drivetrain);
 
-		AutoEventMap.put("intake cube", 
-			new SequentialCommandGroup(
-				m_superstructure.setScoreLevelCommand(BUTTON.X),
-				m_superstructure.setSubsystemState(DPAD.LEFT)));
-        AutoEventMap.put("hold cube", m_superstructure.setSubsystemState(DPAD.UP));
-		AutoEventMap.put("set shooter high", 
-			new SequentialCommandGroup(
-				m_superstructure.setScoreLevelCommand(BUTTON.Y),
-				m_superstructure.setSubsystemState(DPAD.RIGHT)));
-		AutoEventMap.put("shoot cube", 
-			new SequentialCommandGroup(
-				m_shooter.setKickerOuttakeCommand(ShooterConstants.kKickSpeed),
-				new WaitCommand(0.2),
-				m_shooter.stopCommand()));
+		Dependency shooterReady = new Dependency("shooter ready", m_superstructure::isShooterReady);
+		Dependency cubeInKicker = new Dependency("cube in kicker", m_superstructure::hasCube);
+
+		AutoEventMap.put("intake cube",
+			inBackground("intake cube",
+				new SequentialCommandGroup(
+					m_superstructure.setScoreLevelCommand(BUTTON.X),
+					m_superstructure.setSubsystemState(DPAD.LEFT))));
+        AutoEventMap.put("hold cube",
+			inBackground("hold cube",
+				m_superstructure.setSubsystemState(DPAD.UP)));
+		AutoEventMap.put("set shooter high",
+			inBackground("set shooter high",
+				new SequentialCommandGroup(
+					m_superstructure.setScoreLevelCommand(BUTTON.Y),
+					m_superstructure.setSubsystemState(DPAD.RIGHT))));
+		AutoEventMap.put("shoot cube",
+			after("shoot cube",
+				new SequentialCommandGroup(
+					m_shooter.setKickerOuttakeCommand(ShooterConstants.kKickSpeed),
+					new WaitCommand(0.2),
+					m_shooter.stopCommand()),
+				shooterReady, cubeInKicker));
 
 		SwerveAutoBuilder autoBuilder = getSwerveAutoBuilder(AutoEventMap);
 
 		addCommands(
-			m_superstructure.scorePreloadedCone(3.4), //Score First Cone
+			step("score preload", m_superstructure.scorePreloadedCone(3.4)), //Score First Cone
 
       		m_superstructure.setScoreModeCommand(ScoreMode.SHOOTER),
 
 			//Follow Path
-			autoBuilder.fullAuto(autoPathGroup)
+			step("follow path", autoBuilder.fullAuto(autoPathGroup))
 		);
 	}
 }
\ No newline at end of file
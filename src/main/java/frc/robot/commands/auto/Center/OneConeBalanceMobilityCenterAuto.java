@@ -7,7 +7,6 @@ package frc.robot.commands.auto.Center;
 import java.util.List;
 
 import com.pathplanner.lib.PathConstraints;
-import com.pathplanner.lib.PathPlanner;
 import com.pathplanner.lib.PathPlannerTrajectory;
 import com.pathplanner.lib.auto.SwerveAutoBuilder;
 
@@ -18,16 +17,17 @@ import frc.robot.commands.auto.AutoBase;
 import frc.robot.subsystems.Superstructure.DPAD;
 import frc.robot.subsystems.Drive.DriveSubsystem;
 import frc.robot.subsystems.Superstructure;
+import frc.robot.utils.AlliancePaths;
 
 // NOTE:  Consider using this command inline, rather than writing a subclass.  For more
 // information, see:
 // https://docs.wpilib.org/en/stable/docs/software/commandbased/convenience-features.html
 
 public class OneConeBalanceMobilityCenterAuto extends AutoBase {
-	List<PathPlannerTrajectory> autoPathGroup =
-		PathPlanner.loadPathGroup(
-			"1ConeBalanceMobilityCENTER",
-			new PathConstraints(1.2, 1.7));
+	public static final String kPathName = "1ConeBalanceMobilityCENTER";
+	public static final PathConstraints[] kPathConstraints = {new PathConstraints(1.2, 1.7)};
+
+	List<PathPlannerTrajectory> autoPathGroup = AlliancePaths.loadPathGroup(kPathName, kPathConstraints);
 
 	public OneConeBalanceMobilityCenterAuto(DriveSubsystem m_drivetrain, Superstructure m_superstructure) {
 		super(m_drivetrain);
@@ -35,18 +35,18 @@ public class OneConeBalanceMobilityCenterAuto extends AutoBase {
 		SwerveAutoBuilder autoBuilder = getSwerveAutoBuilder();
 
 		addCommands(
-			m_superstructure.scorePreloadedCone(3.5),
+			step("score preload", m_superstructure.scorePreloadedCone(3.5)),
 
       		m_superstructure.setSubsystemState(DPAD.DOWN),
-			new WaitCommand(0.5),
+			step("retract arm", new WaitCommand(0.5)),
 
 			//Follow Path
-			autoBuilder.fullAuto(autoPathGroup),
+			step("follow path", autoBuilder.fullAuto(autoPathGroup)),
 
 			//Autobalance
-			new AutoBalance(m_drivetrain, false),
-			new WaitCommand(5)
-				.alongWith(new RunCommand(() -> m_drivetrain.setX(), m_drivetrain))
+			step("balance", new AutoBalance(m_drivetrain)),
+			step("hold balance", new WaitCommand(5)
+				.alongWith(new RunCommand(() -> m_drivetrain.setX(), m_drivetrain)))
 		);
 
 	}
@@ -8,7 +8,6 @@ import java.util.HashMap;
 import java.util.List;
 
 import com.pathplanner.lib.PathConstraints;
-import com.pathplanner.lib.PathPlanner;
 import com.pathplanner.lib.PathPlannerTrajectory;
 import com.pathplanner.lib.auto.SwerveAutoBuilder;
 
@@ -26,51 +25,58 @@ import frc.robot.subsystems.Superstructure.ScoreMode;
 import frc.robot.subsystems.Drive.DriveSubsystem;
 import frc.robot.subsystems.Shooter.Shooter;
 import frc.robot.utils.ShooterPreset;
+import frc.robot.utils.AlliancePaths;
 
 // NOTE:  Consider using this command inline, rather than writing a subclass.  For more
 // information, see:
 // https://docs.wpilib.org/en/stable/docs/software/commandbased/convenience-features.html
 
 public class TwoCargoBalanceCenterAuto extends AutoBase {
-	List<PathPlannerTrajectory> autoPathGroup =
-		PathPlanner.loadPathGroup(
-			"2CargoBalanceCENTER",
-			new PathConstraints(1.2, 2.5),
-			new PathConstraints(1.2, 2.5),
-			new PathConstraints(2.1, 2.5),
-			new PathConstraints(2.1, 2.5),
-			new PathConstraints(1.2, 2.5)
-			);
+	public static final String kPathName = "2CargoBalanceCENTER";
+	// the same route on the other side of the charge station
+	public static final String kMirrorPathName = "2CargoBalanceCENTERmirror";
+	// both routes are loaded with the same constraints
+	public static final PathConstraints[] kPathConstraints = {
+		new PathConstraints(1.2, 2.5),
+		new PathConstraints(1.2, 2.5),
+		new PathConstraints(2.1, 2.5),
+		new PathConstraints(2.1, 2.5),
+		new PathConstraints(1.2, 2.5)
+	};
 
 	private final HashMap<String, Command> AutoEventMap = new HashMap<>();
 
-	public TwoCargoBalanceCenterAuto(DriveSubsystem m_drivetrain, Superstructure m_superstructure, Shooter m_shooter) {
+	public TwoCargoBalanceCenterAuto(DriveSubsystem m_drivetrain, Superstructure m_superstructure, Shooter m_shooter, String pathName) {
 		super(m_drivetrain);
 
-		AutoEventMap.put("intake cube", 
-			new SequentialCommandGroup(
-				m_superstructure.setScoreLevelCommand(BUTTON.X),
-				m_superstructure.setSubsystemState(DPAD.LEFT)));
+		List<PathPlannerTrajectory> autoPathGroup = AlliancePaths.loadPathGroup(pathName, kPathConstraints);
+
+		AutoEventMap.put("intake cube",
+			inBackground("intake cube",
+				new SequentialCommandGroup(
+					m_superstructure.setScoreLevelCommand(BUTTON.X),
+					m_superstructure.setSubsystemState(DPAD.LEFT))));
 		AutoEventMap.put("set shooter custom",
-			new SequentialCommandGroup(
-				m_shooter.setPreset(new ShooterPreset(40, 150))));
+			inBackground("set shooter custom",
+				new SequentialCommandGroup(
+					m_shooter.setPreset(new ShooterPreset(40, 150)))));
 
 		SwerveAutoBuilder autoBuilder = getSwerveAutoBuilder(AutoEventMap);
 
 		addCommands(
-			m_superstructure.scorePreloadedCone(3.1),
+			step("score preload", m_superstructure.scorePreloadedCone(3.1)),
 
             m_superstructure.setScoreModeCommand(ScoreMode.SHOOTER),
 
 			//Follow Path
-			autoBuilder.fullAuto(autoPathGroup),
+			step("follow path", autoBuilder.fullAuto(autoPathGroup)),
 
 			//Autobalance
-			new AutoBalance(m_drivetrain, true),
+			step("balance", new AutoBalance(m_drivetrain)),
 			m_shooter.setKickerOuttakeCommand(ShooterConstants.kKickSpeed),
-			new AutoBalance(m_drivetrain, true),
-			new WaitCommand(5)
-				.alongWith(new RunCommand(() -> m_drivetrain.setX(), m_drivetrain))
+			step("rebalance", new AutoBalance(m_drivetrain)),
+			step("hold balance", new WaitCommand(5)
+				.alongWith(new RunCommand(() -> m_drivetrain.setX(), m_drivetrain)))
 		);
 
 	}
@@ -0,0 +1,123 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands.auto;
+
+import com.pathplanner.lib.PathPlannerTrajectory;
+
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.Constants.AutoConstants;
+import frc.robot.subsystems.Drive.DriveSubsystem;
+import frc.robot.utils.controller.HolonomicPathController;
+
+/**
+ * Follows a PathPlanner path with {@link HolonomicPathController} and publishes how well it tracks.
+ *
+ * <p>Every loop publishes the along-track, cross-track and heading error against the path, and
+ * each module's speed error: the speed it measures now along the direction it was sent last loop,
+ * against the speed it was sent. The reference pose is drawn on the field. When the path ends the
+ * largest and RMS errors are published, to tell whether faster constraints still track.
+ */
+public class FollowPath extends CommandBase {
+  private static final String[] kModuleNames = {"Front Left", "Front Right", "Rear Left", "Rear Right"};
+
+  private final DriveSubsystem m_drivetrain;
+  private final PathPlannerTrajectory m_trajectory;
+  private final HolonomicPathController m_controller = new HolonomicPathController(
+    new PIDController(AutoConstants.kTranslationControllerP, 0, AutoConstants.kTranslationControllerD),
+    new PIDController(AutoConstants.kTranslationControllerP, 0, AutoConstants.kTranslationControllerD),
+    new PIDController(AutoConstants.kThetaControllerP, 0, AutoConstants.kThetaControllerD),
+    AutoConstants.kPathLatencySeconds,
+    AutoConstants.kPathAccelerationLeadSeconds);
+  private final Timer m_timer = new Timer();
+
+  private SwerveModuleState[] m_sentModuleStates;
+  private int m_samples;
+  private double m_maxTranslationError;
+  private double m_sumSquaredTranslationError;
+  private double m_maxHeadingError;
+  private double m_maxModuleSpeedError;
+
+  /** Creates a new FollowPath. */
+  public FollowPath(PathPlannerTrajectory trajectory, DriveSubsystem m_drivetrain) {
+    this.m_drivetrain = m_drivetrain;
+    m_trajectory = trajectory;
+    addRequirements(m_drivetrain);
+  }
+
+  @Override
+  public void initialize() {
+    m_controller.reset();
+    m_sentModuleStates = null;
+    m_samples = 0;
+    m_maxTranslationError = 0;
+    m_sumSquaredTranslationError = 0;
+    m_maxHeadingError = 0;
+    m_maxModuleSpeedError = 0;
+    m_drivetrain.getField().getObject("Path").setTrajectory(m_trajectory);
+    m_timer.restart();
+  }
+
+  @Override
+  public void execute() {
+    ChassisSpeeds speeds = m_controller.calculate(m_drivetrain.getPose(), m_trajectory, m_timer.get());
+    publishTracking();
+    m_drivetrain.setChassisSpeeds(speeds, true);
+    m_sentModuleStates = m_drivetrain.getDesiredModuleStates();
+  }
+
+  private void publishTracking() {
+    double alongTrack = m_controller.getAlongTrackErrorMeters();
+    double crossTrack = m_controller.getCrossTrackErrorMeters();
+    double heading = Math.toDegrees(m_controller.getHeadingErrorRadians());
+    SmartDashboard.putNumber("Path Along Track Error", alongTrack);
+    SmartDashboard.putNumber("Path Cross Track Error", crossTrack);
+    SmartDashboard.putNumber("Path Heading Error", heading);
+    Pose2d reference = m_controller.getReferencePose();
+    if (reference != null) m_drivetrain.getField().getObject("Path Reference").setPose(reference);
+
+    double translationError = Math.hypot(alongTrack, crossTrack);
+    m_samples++;
+    m_maxTranslationError = Math.max(m_maxTranslationError, translationError);
+    m_sumSquaredTranslationError += translationError * translationError;
+    m_maxHeadingError = Math.max(m_maxHeadingError, Math.abs(heading));
+
+    if (m_sentModuleStates == null) return;
+    SwerveModuleState[] measured = m_drivetrain.getModuleStates();
+    for (int i = 0; i < measured.length; i++) {
+      // measured speed along the direction the module was sent
+      double speedError = measured[i].speedMetersPerSecond * measured[i].angle.minus(m_sentModuleStates[i].angle).getCos()
+        - m_sentModuleStates[i].speedMetersPerSecond;
+      SmartDashboard.putNumber("Path " + kModuleNames[i] + " Speed Error", speedError);
+      m_maxModuleSpeedError = Math.max(m_maxModuleSpeedError, Math.abs(speedError));
+    }
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    m_timer.stop();
+    // a path that ends moving hands over to the next one without stopping
+    if (interrupted || Math.abs(m_trajectory.getEndState().velocityMetersPerSecond) < 0.1) {
+      m_drivetrain.setChassisSpeeds(new ChassisSpeeds(), true);
+    }
+    if (m_samples == 0) return;
+
+    double rmsTranslationError = Math.sqrt(m_sumSquaredTranslationError / m_samples);
+    SmartDashboard.putNumber("Path Max Translation Error", m_maxTranslationError);
+    SmartDashboard.putNumber("Path RMS Translation Error", rmsTranslationError);
+    SmartDashboard.putNumber("Path Max Heading Error", m_maxHeadingError);
+    SmartDashboard.putNumber("Path Max Module Speed Error", m_maxModuleSpeedError);
+  }
+
+  @Override
+  public boolean isFinished() {
+    return m_timer.hasElapsed(m_trajectory.getTotalTimeSeconds());
+  }
+}
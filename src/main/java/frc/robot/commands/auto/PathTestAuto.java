@@ -7,11 +7,11 @@ package frc.robot.commands.auto;
 import java.util.List;
 
 import com.pathplanner.lib.PathConstraints;
-import com.pathplanner.lib.PathPlanner;
 import com.pathplanner.lib.PathPlannerTrajectory;
 import com.pathplanner.lib.auto.SwerveAutoBuilder;
 
 import frc.robot.subsystems.Drive.DriveSubsystem;
+import frc.robot.utils.AlliancePaths;
 
 // NOTE:  Consider using this command inline, rather than writing a subclass.  For more
 // information, see:
@@ -20,10 +20,10 @@ import frc.robot.subsystems.Drive.DriveSubsystem;
 public class PathTestAuto extends AutoBase {
 	DriveSubsystem m_drivetrain;
 
-	List<PathPlannerTrajectory> autoPathGroup =
-		PathPlanner.loadPathGroup(
-			"StarTuner",
-			new PathConstraints(3.0,3.0));
+	public static final String kPathName = "StarTuner";
+	public static final PathConstraints[] kPathConstraints = {new PathConstraints(3.0, 3.0)};
+
+	List<PathPlannerTrajectory> autoPathGroup = AlliancePaths.loadPathGroup(kPathName, kPathConstraints);
 
 	public PathTestAuto(DriveSubsystem m_drivetrain) {
 		super(m_drivetrain);
@@ -31,7 +31,7 @@ public class PathTestAuto extends AutoBase {
 		SwerveAutoBuilder autoBuilder = getSwerveAutoBuilder(); 
 
 		addCommands(
-			autoBuilder.fullAuto(autoPathGroup)
+			step("follow path", autoBuilder.fullAuto(autoPathGroup))
 		);
 
 	}
@@ -15,7 +15,9 @@ import edu.wpi.first.wpilibj2.command.WaitUntilCommand;
 import frc.robot.Constants.ArmConstants;
 import frc.robot.Constants.ElbowConstants;
 import frc.robot.Constants.ShoulderConstants;
+import frc.robot.subsystems.Superstructure.MechanismEvent;
 import frc.robot.utils.ArmPreset;
+import frc.robot.utils.EventBus;
 
 public class Arm {
   private Shoulder m_shoulder = new Shoulder();
@@ -28,12 +30,18 @@ public class Arm {
 
   private Translation2d estimatedPosition = new Translation2d();
 
+  private EventBus<MechanismEvent> m_eventBus;
+  private boolean isGoalPending = false;
+
   /** Creates a new Arm. */
-  public Arm() {}
+  public Arm(EventBus<MechanismEvent> m_eventBus) {
+    this.m_eventBus = m_eventBus;
+  }
 
   private void setPreset(ArmPreset armPreset) {
     m_shoulder.setTargetKinematicAngleRadians(armPreset.ShoulderAngleRadians);
     m_elbow.setTargetKinematicAngleRadians(armPreset.ElbowAngleRadians);
+    isGoalPending = true;
   }
 
   public InstantCommand setPresetCommand(ArmPreset armPreset) {
@@ -70,6 +78,14 @@ public class Arm {
     SmartDashboard.putNumber("Arm Estimated Y", Units.metersToInches(estimatedPosition.getY()));
   }
 
+  public double getShoulderAngleRadians() {
+    return m_shoulder.getKinematicAngle();
+  }
+
+  public double getElbowAngleRadians() {
+    return m_elbow.getKinematicAngle();
+  }
+
   public boolean isShoulderAtGoal() {
     return m_shoulder.atGoal();
   }
@@ -173,8 +189,17 @@ public class Arm {
       new WaitUntilCommand(() -> m_shoulder.nearGoal()).deadlineWith(setPresetCommand(frontScoreLevelPosition)));
   }
 
+  // published once per preset, even if the shoulder was already at it
+  private void publishEvents() {
+    if (isGoalPending && isShoulderAtGoal()) {
+      isGoalPending = false;
+      m_eventBus.publish(MechanismEvent.ARM_AT_GOAL);
+    }
+  }
+
   public void updateTelemetry() {
     // This method will be called once per scheduler run
+    publishEvents();
     calculateForwardKinematics(new ArmPreset(m_shoulder.getKinematicAngle(), m_elbow.getKinematicAngle()));
   }
 }
@@ -5,6 +5,7 @@
 package frc.robot.subsystems.Arm;
 
 import java.util.Map;
+import java.util.function.BooleanSupplier;
 
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
@@ -13,6 +14,8 @@ import edu.wpi.first.wpilibj2.command.InstantCommand;
 import frc.robot.Constants.ArmConstants;
 import frc.robot.subsystems.Superstructure.CargoType;
 import frc.robot.utils.ArmPreset;
+import frc.robot.utils.CommandCache;
+import frc.robot.utils.HierarchicalStateMachine;
 
 public class ArmStateMachine {
   private Arm m_arm;
@@ -25,9 +28,14 @@ public class ArmStateMachine {
     HIGH, MIDDLE, LOW, INTAKE
   }
 
-  private ArmState currentArmState = ArmState.BACK; //will default to TRANSFER 
-  private ArmState targetArmState = ArmState.BACK; // default to TRANSFER 
   private ArmScoreLevel armScoreLevel = ArmScoreLevel.INTAKE;
+  private CargoType cargoType = CargoType.CONE;
+
+  private final HierarchicalStateMachine<ArmState> armStateMachine = 
+    new HierarchicalStateMachine<>("Arm", ArmState.class, ArmState.BACK, this::getMeasuredArmState); //will default to TRANSFER
+
+  private final CommandCache armCommandCache = new CommandCache("Arm",
+    ArmState.values().length * ArmState.values().length * CargoType.values().length * ArmScoreLevel.values().length);
 
   Map<ArmScoreLevel, ArmPreset> BackConeMap = Map.ofEntries(
       Map.entry(ArmScoreLevel.HIGH, ArmConstants.kBackConeHighPosition),
@@ -57,14 +65,54 @@ public class ArmStateMachine {
       Map.entry(ArmScoreLevel.INTAKE, ArmConstants.kFrontIntakePosition)
   );
 
-  /** Creates a new StateMachine. */
-  public ArmStateMachine(Arm m_arm) {
+  /**
+   * Creates a new StateMachine.
+   *
+   * @param m_arm The arm.
+   * @param isShooterClear Whether the shooter is retracted, so the arm may swing out of the frame.
+   */
+  public ArmStateMachine(Arm m_arm, BooleanSupplier isShooterClear) {
     this.m_arm = m_arm;
+
+    // every transition is built once here and rescheduled on each press
+    for (ArmState currentArmState : ArmState.values()) {
+      for (ArmState targetArmState : ArmState.values()) {
+        for (CargoType cargoType : CargoType.values()) {
+          for (ArmScoreLevel armScoreLevel : ArmScoreLevel.values()) {
+            armCommandCache.put(
+              getCacheIndex(currentArmState, targetArmState, armScoreLevel, cargoType),
+              buildArmCommand(currentArmState, targetArmState, armScoreLevel, cargoType)
+                .withInterruptBehavior(InterruptionBehavior.kCancelSelf));
+          }
+        }
+      }
+    }
+    armCommandCache.seal();
+
+    // stow to stow is left out so pressing stow again does nothing
+    for (ArmState fromArmState : ArmState.values()) {
+      for (ArmState toArmState : ArmState.values()) {
+        if (fromArmState == ArmState.STOW && toArmState == ArmState.STOW) continue;
+        armStateMachine.addTransition(fromArmState, toArmState, () -> getArmCommand(fromArmState, toArmState),
+          isOutsideFrame(toArmState) ? isShooterClear : null);
+      }
+    }
+
+    // the dashboard shows the state the arm last arrived in, only updated when it arrives
+    for (ArmState armState : ArmState.values()) {
+      armStateMachine.setEntryAction(armState, () -> SmartDashboard.putString("Current Arm State", armState.toString()));
+    }
+    SmartDashboard.putString("Current Arm State", armStateMachine.getState().toString());
+    SmartDashboard.putString("Arm State Graph", armStateMachine.toDot("Arm"));
   }
 
   //Score level
   public InstantCommand setArmScoreLevelCommand(ArmScoreLevel targetScoreLevel) {
-    return new InstantCommand(() -> this.armScoreLevel = targetScoreLevel);
+    return new InstantCommand(() -> setArmScoreLevel(targetScoreLevel));
+  }
+
+  public void setArmScoreLevel(ArmScoreLevel targetScoreLevel) {
+    this.armScoreLevel = targetScoreLevel;
   }
 
   public ArmScoreLevel getArmScoreLevel() {
@@ -72,30 +120,88 @@ public class ArmStateMachine {
   }
 
   public Command setTargetArmStateCommand(ArmState targetArmState, CargoType cargoType) {
-    return new InstantCommand(() -> {
-      if (this.targetArmState != targetArmState || targetArmState != ArmState.STOW) {
-        currentArmState = this.targetArmState;
-        this.targetArmState = targetArmState;
-        getArmCommand(armScoreLevel, cargoType).withInterruptBehavior(InterruptionBehavior.kCancelSelf).schedule();
-      }
-    });
+    return new InstantCommand(() -> setTargetArmState(targetArmState, cargoType));
+  }
+
+  public void setTargetArmState(ArmState targetArmState, CargoType cargoType) {
+    armCommandCache.beginPress();
+    this.cargoType = cargoType;
+    armStateMachine.request(targetArmState);
+    armCommandCache.endPress();
+  }
+
+  /** The state the arm last finished moving to. */
+  public ArmState getCurrentArmState() {
+    return armStateMachine.getState();
+  }
+
+  public ArmState getTargetArmState() {
+    return armStateMachine.getTargetState();
+  }
+
+  public boolean isTransitioning() {
+    return armStateMachine.isTransitioning();
+  }
+
+  private static boolean isOutsideFrame(ArmState armState) {
+    return armState == ArmState.BACK || armState == ArmState.FRONT;
   }
 
   private ArmPreset getBackScoreLevelPosition(ArmScoreLevel armScoreLevel, CargoType cargoType) {
-    return Map.ofEntries(
-      Map.entry(CargoType.CONE, BackConeMap.get(armScoreLevel)),
-      Map.entry(CargoType.CUBE, BackCubeMap.get(armScoreLevel))
-    ).get(cargoType);
+    return cargoType == CargoType.CONE ? BackConeMap.get(armScoreLevel) : BackCubeMap.get(armScoreLevel);
   }
 
   private ArmPreset getFrontScoreLevelPosition(ArmScoreLevel armScoreLevel, CargoType cargoType) {
-    return Map.ofEntries(
-      Map.entry(CargoType.CONE, FrontConeMap.get(armScoreLevel)),
-      Map.entry(CargoType.CUBE, FrontCubeMap.get(armScoreLevel))
-    ).get(cargoType);
+    return cargoType == CargoType.CONE ? FrontConeMap.get(armScoreLevel) : FrontCubeMap.get(armScoreLevel);
+  }
+
+  // the state whose preset for the current score level is closest to the measured joint angles
+  private ArmState getMeasuredArmState() {
+    ArmState closestArmState = ArmState.STOW;
+    double closestDistance = Double.POSITIVE_INFINITY;
+    for (ArmState armState : ArmState.values()) {
+      double distance = getPresetDistance(getArmStatePosition(armState));
+      if (distance < closestDistance) {
+        closestArmState = armState;
+        closestDistance = distance;
+      }
+    }
+    return closestArmState;
+  }
+
+  private ArmPreset getArmStatePosition(ArmState armState) {
+    switch (armState) {
+      case BACK: return getBackScoreLevelPosition(armScoreLevel, cargoType);
+      case FRONT: return getFrontScoreLevelPosition(armScoreLevel, cargoType);
+      case TRANSFER: return ArmConstants.kTransferPosition;
+      default: return ArmConstants.kStowPosition;
+    }
+  }
+
+  private double getPresetDistance(ArmPreset armPreset) {
+    return Math.hypot(
+      armPreset.ShoulderAngleRadians - m_arm.getShoulderAngleRadians(),
+      armPreset.ElbowAngleRadians - m_arm.getElbowAngleRadians());
+  }
+
+  private static int getCacheIndex(ArmState currentArmState, ArmState targetArmState, ArmScoreLevel armScoreLevel, CargoType cargoType) {
+    return ((currentArmState.ordinal() * ArmState.values().length + targetArmState.ordinal())
+      * CargoType.values().length + cargoType.ordinal())
+      * ArmScoreLevel.values().length + armScoreLevel.ordinal();
+  }
+
+  private Command getArmCommand(ArmState currentArmState, ArmState targetArmState) {
+    int index = getCacheIndex(currentArmState, targetArmState, armScoreLevel, cargoType);
+    Command armCommand = armCommandCache.get(index);
+    if (armCommand == null) {
+      armCommand = buildArmCommand(currentArmState, targetArmState, armScoreLevel, cargoType)
+        .withInterruptBehavior(InterruptionBehavior.kCancelSelf);
+      armCommandCache.put(index, armCommand);
+    }
+    return armCommand;
   }
 
-  public Command getArmCommand(ArmScoreLevel armScoreLevel, CargoType cargoType) {
+  private Command buildArmCommand(ArmState currentArmState, ArmState targetArmState, ArmScoreLevel armScoreLevel, CargoType cargoType) {
     switch (currentArmState) {
       case BACK: switch (targetArmState) {
         case BACK: switch (cargoType) { 
@@ -145,7 +251,8 @@ public class ArmStateMachine {
   
   public void updateTelemetry() {
     //This method will be called once per scheduler run
-    SmartDashboard.putString("Target Arm State", targetArmState.toString());
-    SmartDashboard.putString("Current Arm State", currentArmState.toString());
+    SmartDashboard.putString("Target Arm State", armStateMachine.getTargetState().toString());
+    armStateMachine.updateTelemetry();
+    armCommandCache.updateTelemetry();
   }
 }
@@ -9,13 +9,19 @@ import com.revrobotics.CANSparkMaxLowLevel;
 
 import edu.wpi.first.wpilibj.DoubleSolenoid;
 import edu.wpi.first.wpilibj.PneumaticsModuleType;
-import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants.ClawConstants;
+import frc.robot.subsystems.Superstructure.MechanismEvent;
+import frc.robot.utils.CurrentSignatureDetector;
+import frc.robot.utils.EventBus;
+import frc.robot.utils.SparkMaxConfig;
+import frc.robot.utils.SparkMaxConfigurator;
+import frc.robot.utils.SparkMaxStatusFrames;
+import frc.robot.utils.SparkMaxStatusFrames.StatusProfile;
 
 public class Claw extends SubsystemBase {
   private CANSparkMax clawMotor;
@@ -27,15 +33,21 @@ public class Claw extends SubsystemBase {
   }
 
   private static ClawState clawState = ClawState.STOPPED;
-  private Timer clawRunningTimer = new Timer();
+  private ClawState previousClawState = ClawState.STOPPED;
+  private EventBus<MechanismEvent> m_eventBus;
+  private CurrentSignatureDetector coneDetector = new CurrentSignatureDetector(ClawConstants.kConeDetectorConfig, 0.02);
 
   /** Creates a new Claw. */
-  public Claw() {
+  public Claw(EventBus<MechanismEvent> m_eventBus) {
+    this.m_eventBus = m_eventBus;
     clawMotor = new CANSparkMax(ClawConstants.kClawMotorCanId, CANSparkMaxLowLevel.MotorType.kBrushless);
-    clawMotor.setSmartCurrentLimit(ClawConstants.kClawMotorCurrentLimit);
-    clawMotor.setInverted(true);
-    clawMotor.enableVoltageCompensation(ClawConstants.kNominalVoltage);
-    clawMotor.burnFlash();
+    SparkMaxConfigurator.register(new SparkMaxConfig(clawMotor, "Claw")
+      .smartCurrentLimit(ClawConstants.kClawMotorCurrentLimit)
+      .inverted(true)
+      .voltageCompensation(ClawConstants.kNominalVoltage)
+      .burnFlash());
+
+    SparkMaxStatusFrames.configure(clawMotor, "Claw", StatusProfile.CURRENT);
 
     clawSolenoid = new DoubleSolenoid(
       PneumaticsModuleType.REVPH, 
@@ -46,8 +58,7 @@ public class Claw extends SubsystemBase {
   public void setClawIntake() {
     clawMotor.set(ClawConstants.kIntakeMotorSpeed * ClawConstants.kNominalVoltage);
     if (clawState != ClawState.INTAKING) {
-      clawRunningTimer.reset();
-      clawRunningTimer.start();
+      coneDetector.reset();
     }
     clawState = ClawState.INTAKING;
   }
@@ -75,9 +86,15 @@ public class Claw extends SubsystemBase {
   }
 
   public boolean isCurrentSpikeDetected() {
-    return (clawRunningTimer.get() > 0.5) && //excludes current spike when motor first starts
-      (clawMotor.getOutputCurrent() > 20) && //cone intake current threshold
-      (clawState == ClawState.INTAKING);
+    return coneDetector.isDetected() && (clawState == ClawState.INTAKING);
+  }
+
+  public boolean isConeAcquiredEvent() {
+    return coneDetector.isAcquiredEvent() && (clawState == ClawState.INTAKING);
+  }
+
+  public double getConeDetectionConfidence() {
+    return coneDetector.getConfidence();
   }
 
   public Command intakeCube() {
@@ -111,7 +128,14 @@ public class Claw extends SubsystemBase {
   @Override
   public void periodic() {
     // This method will be called once per scheduler run
+    double current = clawMotor.getOutputCurrent();
+    coneDetector.update(current, clawState == ClawState.INTAKING);
+
+    if (isConeAcquiredEvent()) m_eventBus.publish(MechanismEvent.CONE_ACQUIRED);
+    if (clawState != previousClawState && clawState == ClawState.OUTTAKING) m_eventBus.publish(MechanismEvent.CLAW_OUTTAKING);
+    previousClawState = clawState;
 
-    SmartDashboard.putNumber("claw current", clawMotor.getOutputCurrent());
+    SmartDashboard.putNumber("claw current", current);
+    SmartDashboard.putNumber("claw cone confidence", coneDetector.getConfidence());
   }
 }
\ No newline at end of file
@@ -14,6 +14,10 @@ import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants.ElbowConstants;
+import frc.robot.utils.SparkMaxConfig;
+import frc.robot.utils.SparkMaxConfigurator;
+import frc.robot.utils.SparkMaxStatusFrames;
+import frc.robot.utils.SparkMaxStatusFrames.StatusProfile;
 import frc.robot.utils.controller.AsymmetricProfiledPIDController;
 import frc.robot.utils.controller.AsymmetricTrapezoidProfile.Constraints;
 import frc.robot.utils.controller.AsymmetricTrapezoidProfile.State;
@@ -28,17 +32,19 @@ public class Elbow extends SubsystemBase {
   /** Creates a new Elbow. */
   public Elbow() {
     ElbowMotor = new CANSparkMax(ElbowConstants.kRightElbowMotorCanId, CANSparkMaxLowLevel.MotorType.kBrushless);
-    ElbowMotor.setInverted(ElbowConstants.kElbowMotorInverted);
-    ElbowMotor.setIdleMode(IdleMode.kBrake);
-    ElbowMotor.setSmartCurrentLimit(ElbowConstants.kElbowMotorCurrentLimit);
-    
     ElbowEncoder = ElbowMotor.getAbsoluteEncoder(Type.kDutyCycle);
-    ElbowEncoder.setPositionConversionFactor(ElbowConstants.kElbowPositionConversionFactor);
-    ElbowEncoder.setInverted(ElbowConstants.kElbowEncoderInverted);
-    ElbowEncoder.setZeroOffset(ElbowConstants.kElbowEncoderZeroOffset);
-    //todo set velocity conversion factor
 
-    ElbowMotor.burnFlash();
+    SparkMaxConfigurator.register(new SparkMaxConfig(ElbowMotor, "Elbow")
+      .inverted(ElbowConstants.kElbowMotorInverted)
+      .idleMode(IdleMode.kBrake)
+      .smartCurrentLimit(ElbowConstants.kElbowMotorCurrentLimit)
+      .positionConversionFactor(ElbowEncoder, ElbowConstants.kElbowPositionConversionFactor)
+      .inverted(ElbowEncoder, ElbowConstants.kElbowEncoderInverted)
+      .zeroOffset(ElbowEncoder, ElbowConstants.kElbowEncoderZeroOffset)
+      //todo set velocity conversion factor
+      .burnFlash());
+
+    SparkMaxStatusFrames.configure(ElbowMotor, "Elbow", StatusProfile.ABSOLUTE_POSITION);
 
     ElbowController.disableContinuousInput();
   }
@@ -14,6 +14,10 @@ import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants.ShoulderConstants;
+import frc.robot.utils.SparkMaxConfig;
+import frc.robot.utils.SparkMaxConfigurator;
+import frc.robot.utils.SparkMaxStatusFrames;
+import frc.robot.utils.SparkMaxStatusFrames.StatusProfile;
 import frc.robot.utils.controller.AsymmetricProfiledPIDController;
 import frc.robot.utils.controller.AsymmetricTrapezoidProfile.Constraints;
 import frc.robot.utils.controller.AsymmetricTrapezoidProfile.State;
@@ -31,21 +35,25 @@ public class Shoulder extends SubsystemBase {
   public Shoulder() {
     LeftShoulderMotor = new CANSparkMax(ShoulderConstants.kLeftShoulderMotorCanId, CANSparkMaxLowLevel.MotorType.kBrushless);
     RightShoulderMotor = new CANSparkMax(ShoulderConstants.kRightShoulderMotorCanId, CANSparkMaxLowLevel.MotorType.kBrushless);
-    LeftShoulderMotor.follow(RightShoulderMotor, true);
-    RightShoulderMotor.setInverted(ShoulderConstants.kShoulderEncoderInverted); //must be inverted
-    RightShoulderMotor.setIdleMode(IdleMode.kBrake);
-    LeftShoulderMotor.setIdleMode(IdleMode.kBrake);
-    RightShoulderMotor.setSmartCurrentLimit(ShoulderConstants.kShoulderMotorCurrentLimit);
-    LeftShoulderMotor.setSmartCurrentLimit(ShoulderConstants.kShoulderMotorCurrentLimit);
-
     ShoulderEncoder = RightShoulderMotor.getAbsoluteEncoder(Type.kDutyCycle);
-    ShoulderEncoder.setPositionConversionFactor(ShoulderConstants.kShoulderPositionConversionFactor);
-    ShoulderEncoder.setInverted(ShoulderConstants.kShoulderEncoderInverted); //must be inverted
-    ShoulderEncoder.setZeroOffset(ShoulderConstants.kShoulderEncoderZeroOffset);
-    //todo set velocity conversion factor
 
-    RightShoulderMotor.burnFlash();
-    LeftShoulderMotor.burnFlash();
+    SparkMaxConfigurator.register(new SparkMaxConfig(RightShoulderMotor, "Right Shoulder")
+      .inverted(ShoulderConstants.kShoulderEncoderInverted) //must be inverted
+      .idleMode(IdleMode.kBrake)
+      .smartCurrentLimit(ShoulderConstants.kShoulderMotorCurrentLimit)
+      .positionConversionFactor(ShoulderEncoder, ShoulderConstants.kShoulderPositionConversionFactor)
+      .inverted(ShoulderEncoder, ShoulderConstants.kShoulderEncoderInverted) //must be inverted
+      .zeroOffset(ShoulderEncoder, ShoulderConstants.kShoulderEncoderZeroOffset)
+      //todo set velocity conversion factor
+      .burnFlash());
+    SparkMaxConfigurator.register(new SparkMaxConfig(LeftShoulderMotor, "Left Shoulder")
+      .follow(RightShoulderMotor, true)
+      .idleMode(IdleMode.kBrake)
+      .smartCurrentLimit(ShoulderConstants.kShoulderMotorCurrentLimit)
+      .burnFlash());
+
+    SparkMaxStatusFrames.configure(RightShoulderMotor, "Right Shoulder", StatusProfile.ABSOLUTE_POSITION, true);
+    SparkMaxStatusFrames.configure(LeftShoulderMotor, "Left Shoulder", StatusProfile.FOLLOWER);
 
     ShoulderController.disableContinuousInput();
   }
@@ -4,21 +4,29 @@
 
 package frc.robot.subsystems.Drive;
 
-import edu.wpi.first.math.filter.SlewRateLimiter;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
-import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.util.WPIUtilJNI;
 import edu.wpi.first.wpilibj.ADIS16470_IMU;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.smartdashboard.Field2d;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import frc.robot.Constants.DriveConstants;
+import frc.robot.utils.SparkMaxConfigurator;
+import frc.robot.utils.SwerveSetpointGenerator;
 import frc.robot.utils.SwerveUtils;
+import frc.robot.utils.controller.HeadingController;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
@@ -45,51 +53,105 @@ public class DriveSubsystem extends SubsystemBase {
       DriveConstants.kRearRightTurningCanId,
       DriveConstants.kBackRightChassisAngularOffset);
 
+  private final MAXSwerveModule[] m_modules = {m_frontLeft, m_frontRight, m_rearLeft, m_rearRight};
+
   // The gyro sensor
   private final ADIS16470_IMU m_gyro = new ADIS16470_IMU();
 
-  // Slew rate filter variables for controlling lateral acceleration
-  private double m_currentRotation = 0.0;
-  private double m_currentTranslationDir = 0.0;
-  private double m_currentTranslationMag = 0.0;
+  // Flags slipping modules and collisions, and keeps slipping modules out of odometry
+  private final TractionMonitor m_tractionMonitor = new TractionMonitor(DriveConstants.kModuleLocations);
+  private final double[] m_lastModuleDistances = new double[4];
+  private final double[] m_odometryDistances = new double[4];
+  private double m_prevPeriodicTime = WPIUtilJNI.now() * 1e-6;
 
-  private SlewRateLimiter m_magLimiter = new SlewRateLimiter(DriveConstants.kMagnitudeSlewRate);
-  private SlewRateLimiter m_rotLimiter = new SlewRateLimiter(DriveConstants.kRotationalSlewRate);
+  // Keeps module setpoints within the steering and acceleration limits of the modules
+  private final SwerveSetpointGenerator m_setpointGenerator = new SwerveSetpointGenerator(
+      DriveConstants.kDriveKinematics,
+      DriveConstants.kMaxSpeedMetersPerSecond,
+      DriveConstants.kMaxSteerRate,
+      DriveConstants.kMaxModuleAcceleration);
   private double m_prevTime = WPIUtilJNI.now() * 1e-6;
-
-  // Odometry class for tracking robot pose
-  SwerveDriveOdometry m_odometry = new SwerveDriveOdometry(
+  // Holds the heading the robot settled at once the driver stops rotating
+  private final HeadingController m_headingController = new HeadingController(
+      DriveConstants.kHeadingHoldP,
+      DriveConstants.kHeadingHoldD,
+      DriveConstants.kHeadingHoldMaxRate,
+      DriveConstants.kHeadingHoldMaxAcceleration);
+  private boolean m_headingLatched = false;
+  private double m_headingGoal = 0;
+  private double m_prevHeadingHoldTime = 0;
+
+  private SwerveModuleState[] m_desiredModuleStates = new SwerveModuleState[] {
+      new SwerveModuleState(), new SwerveModuleState(), new SwerveModuleState(), new SwerveModuleState()
+  };
+
+  // Odometry class for tracking robot pose, corrected by vision when a camera sees a tag. The
+  // module positions are reset once the SPARKS MAX are configured.
+  SwerveDrivePoseEstimator m_odometry = new SwerveDrivePoseEstimator(
       DriveConstants.kDriveKinematics,
       Rotation2d.fromDegrees(m_gyro.getAngle()),
       new SwerveModulePosition[] {
-          m_frontLeft.getPosition(),
-          m_frontRight.getPosition(),
-          m_rearLeft.getPosition(),
-          m_rearRight.getPosition()
-      });
+          new SwerveModulePosition(),
+          new SwerveModulePosition(),
+          new SwerveModulePosition(),
+          new SwerveModulePosition()
+      },
+      new Pose2d());
   
   private Field2d m_field = new Field2d();
 
   /** Creates a new DriveSubsystem. */
   public DriveSubsystem() {
     SmartDashboard.putData("Field Position", m_field);
+
+    // registered after the modules, so their encoders are already zeroed
+    SparkMaxConfigurator.whenConfigured(this::resetModulePositions);
+  }
+
+  private void resetModulePositions() {
+    for (int i = 0; i < m_modules.length; i++) {
+      m_lastModuleDistances[i] = m_modules[i].getPosition().distanceMeters;
+      m_odometryDistances[i] = m_lastModuleDistances[i];
+    }
+    resetOdometry(getPose());
   }
 
   @Override
   public void periodic() {
     SmartDashboard.putNumber("Robot Heading", getHeading());
     SmartDashboard.putString("DIRECTION TO ZERO", getDirectionToZero());
+    double currentTime = WPIUtilJNI.now() * 1e-6;
+    double elapsedTime = currentTime - m_prevPeriodicTime;
+    m_prevPeriodicTime = currentTime;
+
+    m_tractionMonitor.update(
+        getModuleStates(),
+        m_gyro.getAccelX(),
+        m_gyro.getAccelY(),
+        Units.degreesToRadians(getTurnRate()),
+        elapsedTime);
+
     // Update the odometry in the periodic block
     m_odometry.update(
         Rotation2d.fromDegrees(m_gyro.getAngle()),
-        new SwerveModulePosition[] {
-            m_frontLeft.getPosition(),
-            m_frontRight.getPosition(),
-            m_rearLeft.getPosition(),
-            m_rearRight.getPosition()
-        });
+        updateOdometryModulePositions(elapsedTime));
     
-    m_field.setRobotPose(m_odometry.getPoseMeters());
+    m_field.setRobotPose(m_odometry.getEstimatedPosition());
+
+    m_setpointGenerator.setMaxAcceleration(m_tractionMonitor.shouldLimitAcceleration()
+        ? DriveConstants.kSlipMaxModuleAcceleration
+        : DriveConstants.kMaxModuleAcceleration);
+    SmartDashboard.putBoolean("Module Slipping", m_tractionMonitor.isAnySlipping());
+    SmartDashboard.putBoolean("Traction Loss", m_tractionMonitor.isTractionLoss());
+    SmartDashboard.putBoolean("Collision", m_tractionMonitor.isCollision());
+    SmartDashboard.putNumber("Collision Count", m_tractionMonitor.getCollisionCount());
+
+    // Follow the measured states while disabled so the first enabled setpoint starts from reality
+    if (DriverStation.isDisabled()) {
+      m_setpointGenerator.reset(getModuleStates());
+      m_headingLatched = false;
+    }
+    SmartDashboard.putNumber("Setpoint Limit Scale", m_setpointGenerator.getLastScale());
   }
 
   /**
@@ -98,7 +160,23 @@ public class DriveSubsystem extends SubsystemBase {
    * @return The pose.
    */
   public Pose2d getPose() {
-    return m_odometry.getPoseMeters();
+    return m_odometry.getEstimatedPosition();
+  }
+
+  /** The field shown on the dashboard, for drawing paths next to the robot. */
+  public Field2d getField() {
+    return m_field;
+  }
+
+  /**
+   * Corrects the pose estimate with a pose measured by vision.
+   *
+   * @param visionPose The measured robot pose.
+   * @param timestampSeconds FPGA time the image was captured.
+   * @param stdDevs Standard deviations of the measured x, y and heading.
+   */
+  public void addVisionMeasurement(Pose2d visionPose, double timestampSeconds, Matrix<N3, N1> stdDevs) {
+    m_odometry.addVisionMeasurement(visionPose, timestampSeconds, stdDevs);
   }
 
   /**
@@ -107,15 +185,35 @@ public class DriveSubsystem extends SubsystemBase {
    * @param pose The pose to which to set the odometry.
    */
   public void resetOdometry(Pose2d pose) {
-    m_odometry.resetPosition(
-        Rotation2d.fromDegrees(m_gyro.getAngle()),
-        new SwerveModulePosition[] {
-            m_frontLeft.getPosition(),
-            m_frontRight.getPosition(),
-            m_rearLeft.getPosition(),
-            m_rearRight.getPosition()
-        },
-        pose);
+    SwerveModulePosition[] modulePositions = new SwerveModulePosition[m_modules.length];
+    for (int i = 0; i < m_modules.length; i++) {
+      modulePositions[i] = new SwerveModulePosition(m_odometryDistances[i], m_modules[i].getPosition().angle);
+    }
+    m_odometry.resetPosition(Rotation2d.fromDegrees(m_gyro.getAngle()), modulePositions, pose);
+  }
+
+  /**
+   * Advances the module distances fed to odometry. A slipping module's measured travel is blended
+   * towards the travel the other modules say it should have had, by its traction weight.
+   *
+   * @param dt Seconds since the last update.
+   * @return The module positions for odometry.
+   */
+  private SwerveModulePosition[] updateOdometryModulePositions(double dt) {
+    SwerveModulePosition[] modulePositions = new SwerveModulePosition[m_modules.length];
+    for (int i = 0; i < m_modules.length; i++) {
+      SwerveModulePosition measured = m_modules[i].getPosition();
+      double measuredDelta = measured.distanceMeters - m_lastModuleDistances[i];
+      m_lastModuleDistances[i] = measured.distanceMeters;
+
+      double weight = m_tractionMonitor.getWeight(i);
+      double expectedDelta = dt * (m_tractionMonitor.getExpectedModuleVx(i) * measured.angle.getCos()
+          + m_tractionMonitor.getExpectedModuleVy(i) * measured.angle.getSin());
+      m_odometryDistances[i] += weight * measuredDelta + (1 - weight) * expectedDelta;
+
+      modulePositions[i] = new SwerveModulePosition(m_odometryDistances[i], measured.angle);
+    }
+    return modulePositions;
   }
 
   /**
@@ -129,73 +227,96 @@ public class DriveSubsystem extends SubsystemBase {
    * @param rateLimit     Whether to enable rate limiting for smoother control.
    */
   public void drive(double xSpeed, double ySpeed, double rot, boolean fieldRelative, boolean rateLimit) {
-    
-    double xSpeedCommanded;
-    double ySpeedCommanded;
-
-    if (rateLimit) {
-      // Convert XY to polar for rate limiting
-      double inputTranslationDir = Math.atan2(ySpeed, xSpeed);
-      double inputTranslationMag = Math.sqrt(Math.pow(xSpeed, 2) + Math.pow(ySpeed, 2));
-
-      // Calculate the direction slew rate based on an estimate of the lateral acceleration
-      double directionSlewRate;
-      if (m_currentTranslationMag != 0.0) {
-        directionSlewRate = Math.abs(DriveConstants.kDirectionSlewRate / m_currentTranslationMag);
-      } else {
-        directionSlewRate = 500.0; //some high number that means the slew rate is effectively instantaneous
-      }
-      
-
-      double currentTime = WPIUtilJNI.now() * 1e-6;
-      double elapsedTime = currentTime - m_prevTime;
-      double angleDif = SwerveUtils.AngleDifference(inputTranslationDir, m_currentTranslationDir);
-      if (angleDif < 0.45*Math.PI) {
-        m_currentTranslationDir = SwerveUtils.StepTowardsCircular(m_currentTranslationDir, inputTranslationDir, directionSlewRate * elapsedTime);
-        m_currentTranslationMag = m_magLimiter.calculate(inputTranslationMag);
-      }
-      else if (angleDif > 0.85*Math.PI) {
-        if (m_currentTranslationMag > 1e-4) { //some small number to avoid floating-point errors with equality checking
-          // keep currentTranslationDir unchanged
-          m_currentTranslationMag = m_magLimiter.calculate(0.0);
-        }
-        else {
-          m_currentTranslationDir = SwerveUtils.WrapAngle(m_currentTranslationDir + Math.PI);
-          m_currentTranslationMag = m_magLimiter.calculate(inputTranslationMag);
-        }
-      }
-      else {
-        m_currentTranslationDir = SwerveUtils.StepTowardsCircular(m_currentTranslationDir, inputTranslationDir, directionSlewRate * elapsedTime);
-        m_currentTranslationMag = m_magLimiter.calculate(0.0);
-      }
-      m_prevTime = currentTime;
-      
-      xSpeedCommanded = m_currentTranslationMag * Math.cos(m_currentTranslationDir);
-      ySpeedCommanded = m_currentTranslationMag * Math.sin(m_currentTranslationDir);
-      m_currentRotation = m_rotLimiter.calculate(rot);
-
+    drive(xSpeed, ySpeed, rot, fieldRelative, rateLimit, false);
+  }
 
+  /**
+   * Method to drive the robot using joystick info, holding the heading while the rotation input is
+   * zero.
+   *
+   * <p>Once rot is zero and the robot has stopped turning, the heading is latched and held with a
+   * profiled controller, so collisions and uneven modules do not turn the robot. Any rotation input
+   * releases it.
+   *
+   * @param xSpeed        Speed of the robot in the x direction (forward).
+   * @param ySpeed        Speed of the robot in the y direction (sideways).
+   * @param rot           Angular rate of the robot.
+   * @param fieldRelative Whether the provided x and y speeds are relative to the
+   *                      field.
+   * @param rateLimit     Whether to enable rate limiting for smoother control.
+   * @param holdHeading   Whether to hold the heading while rot is zero.
+   */
+  public void drive(double xSpeed, double ySpeed, double rot, boolean fieldRelative, boolean rateLimit, boolean holdHeading) {
+    // Convert the commanded speeds into the correct units for the drivetrain
+    double xSpeedDelivered = xSpeed * DriveConstants.kMaxSpeedMetersPerSecond;
+    double ySpeedDelivered = ySpeed * DriveConstants.kMaxSpeedMetersPerSecond;
+    double rotDelivered = rot * DriveConstants.kMaxAngularSpeed;
+    if (holdHeading && rot == 0) {
+      rotDelivered = getHeadingHoldRate();
     } else {
-      xSpeedCommanded = xSpeed;
-      ySpeedCommanded = ySpeed;
-      m_currentRotation = rot;
+      m_headingLatched = false;
     }
 
-    // Convert the commanded speeds into the correct units for the drivetrain
-    double xSpeedDelivered = xSpeedCommanded * DriveConstants.kMaxSpeedMetersPerSecond;
-    double ySpeedDelivered = ySpeedCommanded * DriveConstants.kMaxSpeedMetersPerSecond;
-    double rotDelivered = m_currentRotation * DriveConstants.kMaxAngularSpeed;
-
-    var swerveModuleStates = DriveConstants.kDriveKinematics.toSwerveModuleStates(
+    setChassisSpeeds(
         fieldRelative
             ? ChassisSpeeds.fromFieldRelativeSpeeds(xSpeedDelivered, ySpeedDelivered, rotDelivered, Rotation2d.fromDegrees(m_gyro.getAngle()))
-            : new ChassisSpeeds(xSpeedDelivered, ySpeedDelivered, rotDelivered));
-    SwerveDriveKinematics.desaturateWheelSpeeds(
-        swerveModuleStates, DriveConstants.kMaxSpeedMetersPerSecond);
+            : new ChassisSpeeds(xSpeedDelivered, ySpeedDelivered, rotDelivered),
+        rateLimit);
+  }
+
+  // turn rate that holds the latched heading, latching once the robot's own turn has died down
+  private double getHeadingHoldRate() {
+    double currentTime = WPIUtilJNI.now() * 1e-6;
+    double elapsedTime = currentTime - m_prevHeadingHoldTime;
+    m_prevHeadingHoldTime = currentTime;
+    // After a pause the latched heading is stale
+    if (elapsedTime > DriveConstants.kMaxSetpointDt) m_headingLatched = false;
+
+    double heading = MathUtil.angleModulus(Units.degreesToRadians(m_gyro.getAngle()));
+    double rate = Units.degreesToRadians(getTurnRate());
+    if (!m_headingLatched) {
+      if (Math.abs(rate) > DriveConstants.kHeadingHoldLatchRate) return 0;
+      m_headingGoal = heading;
+      m_headingController.reset(heading, rate);
+      m_headingLatched = true;
+      return 0;
+    }
+    return MathUtil.clamp(
+        m_headingController.calculate(heading, m_headingGoal, elapsedTime),
+        -DriveConstants.kMaxAngularSpeed,
+        DriveConstants.kMaxAngularSpeed);
+  }
+
+  /**
+   * Drives the robot at the given robot-relative chassis speeds.
+   *
+   * @param speeds    The desired robot-relative chassis speeds.
+   * @param rateLimit Whether to limit the setpoint to what the modules can follow.
+   */
+  public void setChassisSpeeds(ChassisSpeeds speeds, boolean rateLimit) {
+    double currentTime = WPIUtilJNI.now() * 1e-6;
+    double elapsedTime = currentTime - m_prevTime;
+    m_prevTime = currentTime;
+    // After a pause there is no previous loop to measure, so assume a nominal one
+    if (elapsedTime > DriveConstants.kMaxSetpointDt) elapsedTime = TimedRobot.kDefaultPeriod;
+
+    // Correct for the robot rotating while the modules hold this setpoint until the next loop
+    speeds = SwerveUtils.Discretize(speeds, elapsedTime);
+
+    SwerveModuleState[] swerveModuleStates;
+    if (rateLimit) {
+      swerveModuleStates = m_setpointGenerator.generate(speeds, elapsedTime);
+    } else {
+      swerveModuleStates = DriveConstants.kDriveKinematics.toSwerveModuleStates(speeds);
+      SwerveDriveKinematics.desaturateWheelSpeeds(
+          swerveModuleStates, DriveConstants.kMaxSpeedMetersPerSecond);
+      m_setpointGenerator.reset(swerveModuleStates);
+    }
     m_frontLeft.setDesiredState(swerveModuleStates[0]);
     m_frontRight.setDesiredState(swerveModuleStates[1]);
     m_rearLeft.setDesiredState(swerveModuleStates[2]);
     m_rearRight.setDesiredState(swerveModuleStates[3]);
+    m_desiredModuleStates = swerveModuleStates;
   }
 
   /**
@@ -206,6 +327,7 @@ public class DriveSubsystem extends SubsystemBase {
     m_frontRight.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(-45)));
     m_rearLeft.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(-45)));
     m_rearRight.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(45)));
+    m_setpointGenerator.reset(getModuleStates());
   }
 
   //realigns all modules
@@ -214,20 +336,41 @@ public class DriveSubsystem extends SubsystemBase {
     m_frontRight.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(0)));
     m_rearLeft.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(0)));
     m_rearRight.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(0)));
+    m_setpointGenerator.reset(getModuleStates());
   }
 
   /**
-   * Sets the swerve ModuleStates.
+   * Sets the swerve ModuleStates. The states are passed through the setpoint generator.
    *
    * @param desiredStates The desired SwerveModule states.
    */
   public void setModuleStates(SwerveModuleState[] desiredStates) {
     SwerveDriveKinematics.desaturateWheelSpeeds(
         desiredStates, DriveConstants.kMaxSpeedMetersPerSecond);
-    m_frontLeft.setDesiredState(desiredStates[0]);
-    m_frontRight.setDesiredState(desiredStates[1]);
-    m_rearLeft.setDesiredState(desiredStates[2]);
-    m_rearRight.setDesiredState(desiredStates[3]);
+    setChassisSpeeds(DriveConstants.kDriveKinematics.toChassisSpeeds(desiredStates), true);
+  }
+
+  /**
+   * Returns the measured states of the modules.
+   *
+   * @return The module states.
+   */
+  public SwerveModuleState[] getModuleStates() {
+    return new SwerveModuleState[] {
+        m_frontLeft.getState(),
+        m_frontRight.getState(),
+        m_rearLeft.getState(),
+        m_rearRight.getState()
+    };
+  }
+
+  /**
+   * Returns the module states last requested through {@link #setChassisSpeeds}, after rate limiting.
+   *
+   * @return The desired module states.
+   */
+  public SwerveModuleState[] getDesiredModuleStates() {
+    return m_desiredModuleStates;
   }
 
   /** Resets the drive encoders to currently read a position of 0. */
@@ -236,11 +379,15 @@ public class DriveSubsystem extends SubsystemBase {
     m_rearLeft.resetEncoders();
     m_frontRight.resetEncoders();
     m_rearRight.resetEncoders();
+    for (int i = 0; i < m_modules.length; i++) {
+      m_lastModuleDistances[i] = m_modules[i].getPosition().distanceMeters;
+    }
   }
 
   /** Zeroes the heading of the robot. */
   public void zeroHeading() {
     m_gyro.reset();
+    m_headingLatched = false;
   }
 
   /**
@@ -268,6 +415,35 @@ public class DriveSubsystem extends SubsystemBase {
     return m_gyro.getYComplementaryAngle();
   }
 
+  /**
+   * Returns the measured chassis speeds of the robot relative to the robot.
+   *
+   * @return The robot-relative chassis speeds.
+   */
+  public ChassisSpeeds getRobotRelativeSpeeds() {
+    return DriveConstants.kDriveKinematics.toChassisSpeeds(
+        m_frontLeft.getState(),
+        m_frontRight.getState(),
+        m_rearLeft.getState(),
+        m_rearRight.getState());
+  }
+
+  /**
+   * Returns the measured chassis speeds of the robot relative to the field.
+   *
+   * @return The field-relative chassis speeds.
+   */
+  public ChassisSpeeds getFieldRelativeSpeeds() {
+    ChassisSpeeds robotRelativeSpeeds = getRobotRelativeSpeeds();
+    double heading = getHeadingRadians();
+    double cos = Math.cos(heading);
+    double sin = Math.sin(heading);
+    return new ChassisSpeeds(
+        robotRelativeSpeeds.vxMetersPerSecond * cos - robotRelativeSpeeds.vyMetersPerSecond * sin,
+        robotRelativeSpeeds.vxMetersPerSecond * sin + robotRelativeSpeeds.vyMetersPerSecond * cos,
+        robotRelativeSpeeds.omegaRadiansPerSecond);
+  }
+
   public Command stopModulesCommand() {
     return new InstantCommand(() -> drive(0, 0, 0, true, false));
   }
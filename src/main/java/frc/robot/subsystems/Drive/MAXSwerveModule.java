@@ -16,6 +16,10 @@ import com.revrobotics.AbsoluteEncoder;
 import com.revrobotics.RelativeEncoder;
 
 import frc.robot.Constants.ModuleConstants;
+import frc.robot.utils.SparkMaxConfig;
+import frc.robot.utils.SparkMaxConfigurator;
+import frc.robot.utils.SparkMaxStatusFrames;
+import frc.robot.utils.SparkMaxStatusFrames.StatusProfile;
 
 public class MAXSwerveModule {
   private final CANSparkMax m_drivingSparkMax;
@@ -34,78 +38,75 @@ public class MAXSwerveModule {
    * Constructs a MAXSwerveModule and configures the driving and turning motor,
    * encoder, and PID controller. This configuration is specific to the REV
    * MAXSwerve Module built with NEOs, SPARKS MAX, and a Through Bore
-   * Encoder.
+   * Encoder. The SPARKS MAX are configured by {@link SparkMaxConfigurator#configureAll()}.
    */
   public MAXSwerveModule(int drivingCANId, int turningCANId, double chassisAngularOffset) {
     m_drivingSparkMax = new CANSparkMax(drivingCANId, MotorType.kBrushless);
     m_turningSparkMax = new CANSparkMax(turningCANId, MotorType.kBrushless);
 
-    // Factory reset, so we get the SPARKS MAX to a known state before configuring
-    // them. This is useful in case a SPARK MAX is swapped out.
-    m_drivingSparkMax.restoreFactoryDefaults();
-    m_turningSparkMax.restoreFactoryDefaults();
-
     // Setup encoders and PID controllers for the driving and turning SPARKS MAX.
     m_drivingEncoder = m_drivingSparkMax.getEncoder();
     m_turningEncoder = m_turningSparkMax.getAbsoluteEncoder(Type.kDutyCycle);
     m_drivingPIDController = m_drivingSparkMax.getPIDController();
     m_turningPIDController = m_turningSparkMax.getPIDController();
-    m_drivingPIDController.setFeedbackDevice(m_drivingEncoder);
-    m_turningPIDController.setFeedbackDevice(m_turningEncoder);
-
-    // Apply position and velocity conversion factors for the driving encoder. The
-    // native units for position and velocity are rotations and RPM, respectively,
-    // but we want meters and meters per second to use with WPILib's swerve APIs.
-    m_drivingEncoder.setPositionConversionFactor(ModuleConstants.kDrivingEncoderPositionFactor);
-    m_drivingEncoder.setVelocityConversionFactor(ModuleConstants.kDrivingEncoderVelocityFactor);
-
-    // Apply position and velocity conversion factors for the turning encoder. We
-    // want these in radians and radians per second to use with WPILib's swerve
-    // APIs.
-    m_turningEncoder.setPositionConversionFactor(ModuleConstants.kTurningEncoderPositionFactor);
-    m_turningEncoder.setVelocityConversionFactor(ModuleConstants.kTurningEncoderVelocityFactor);
-
-    // Invert the turning encoder, since the output shaft rotates in the opposite direction of
-    // the steering motor in the MAXSwerve Module.
-    m_turningEncoder.setInverted(ModuleConstants.kTurningEncoderInverted);
-
-    // Enable PID wrap around for the turning motor. This will allow the PID
-    // controller to go through 0 to get to the setpoint i.e. going from 350 degrees
-    // to 10 degrees will go through 0 rather than the other direction which is a
-    // longer route.
-    m_turningPIDController.setPositionPIDWrappingEnabled(true);
-    m_turningPIDController.setPositionPIDWrappingMinInput(ModuleConstants.kTurningEncoderPositionPIDMinInput);
-    m_turningPIDController.setPositionPIDWrappingMaxInput(ModuleConstants.kTurningEncoderPositionPIDMaxInput);
-
-    // Set the PID gains for the driving motor. Note these are example gains, and you
-    // may need to tune them for your own robot!
-    m_drivingPIDController.setP(ModuleConstants.kDrivingP);
-    m_drivingPIDController.setI(ModuleConstants.kDrivingI);
-    m_drivingPIDController.setD(ModuleConstants.kDrivingD);
-    m_drivingPIDController.setFF(ModuleConstants.kDrivingFF);
-    m_drivingPIDController.setOutputRange(ModuleConstants.kDrivingMinOutput,
-        ModuleConstants.kDrivingMaxOutput);
-
-    // Set the PID gains for the turning motor. Note these are example gains, and you
-    // may need to tune them for your own robot!
-    m_turningPIDController.setP(ModuleConstants.kTurningP);
-    m_turningPIDController.setI(ModuleConstants.kTurningI);
-    m_turningPIDController.setD(ModuleConstants.kTurningD);
-    m_turningPIDController.setFF(ModuleConstants.kTurningFF);
-    m_turningPIDController.setOutputRange(ModuleConstants.kTurningMinOutput,
-        ModuleConstants.kTurningMaxOutput);
-
-    m_drivingSparkMax.setIdleMode(ModuleConstants.kDrivingMotorIdleMode);
-    m_turningSparkMax.setIdleMode(ModuleConstants.kTurningMotorIdleMode);
-    m_drivingSparkMax.setSmartCurrentLimit(ModuleConstants.kDrivingMotorCurrentLimit);
-    m_turningSparkMax.setSmartCurrentLimit(ModuleConstants.kTurningMotorCurrentLimit);
-
-    // Save the SPARK MAX configurations. If a SPARK MAX browns out during
-    // operation, it will maintain the above configurations.
-    m_drivingSparkMax.burnFlash();
-    m_turningSparkMax.burnFlash();
+
+    // Factory reset, so we get the SPARKS MAX to a known state before configuring
+    // them. This is useful in case a SPARK MAX is swapped out. The configuration is
+    // saved so a SPARK MAX that browns out during operation keeps it.
+    SparkMaxConfigurator.register(new SparkMaxConfig(m_drivingSparkMax, "Driving " + drivingCANId)
+        .restoreFactoryDefaults()
+        .feedbackDevice(m_drivingPIDController, m_drivingEncoder)
+        // Apply position and velocity conversion factors for the driving encoder. The
+        // native units for position and velocity are rotations and RPM, respectively,
+        // but we want meters and meters per second to use with WPILib's swerve APIs.
+        .positionConversionFactor(m_drivingEncoder, ModuleConstants.kDrivingEncoderPositionFactor)
+        .velocityConversionFactor(m_drivingEncoder, ModuleConstants.kDrivingEncoderVelocityFactor)
+        // Set the PID gains for the driving motor. Note these are example gains, and you
+        // may need to tune them for your own robot!
+        .pid(m_drivingPIDController, ModuleConstants.kDrivingP, ModuleConstants.kDrivingI,
+            ModuleConstants.kDrivingD, ModuleConstants.kDrivingFF)
+        .outputRange(m_drivingPIDController, ModuleConstants.kDrivingMinOutput,
+            ModuleConstants.kDrivingMaxOutput)
+        .idleMode(ModuleConstants.kDrivingMotorIdleMode)
+        .smartCurrentLimit(ModuleConstants.kDrivingMotorCurrentLimit)
+        .burnFlash());
+
+    SparkMaxConfigurator.register(new SparkMaxConfig(m_turningSparkMax, "Turning " + turningCANId)
+        .restoreFactoryDefaults()
+        .feedbackDevice(m_turningPIDController, m_turningEncoder)
+        // Apply position and velocity conversion factors for the turning encoder. We
+        // want these in radians and radians per second to use with WPILib's swerve
+        // APIs.
+        .positionConversionFactor(m_turningEncoder, ModuleConstants.kTurningEncoderPositionFactor)
+        .velocityConversionFactor(m_turningEncoder, ModuleConstants.kTurningEncoderVelocityFactor)
+        // Invert the turning encoder, since the output shaft rotates in the opposite direction of
+        // the steering motor in the MAXSwerve Module.
+        .inverted(m_turningEncoder, ModuleConstants.kTurningEncoderInverted)
+        // Enable PID wrap around for the turning motor. This will allow the PID
+        // controller to go through 0 to get to the setpoint i.e. going from 350 degrees
+        // to 10 degrees will go through 0 rather than the other direction which is a
+        // longer route.
+        .positionWrapping(m_turningPIDController, ModuleConstants.kTurningEncoderPositionPIDMinInput,
+            ModuleConstants.kTurningEncoderPositionPIDMaxInput)
+        // Set the PID gains for the turning motor. Note these are example gains, and you
+        // may need to tune them for your own robot!
+        .pid(m_turningPIDController, ModuleConstants.kTurningP, ModuleConstants.kTurningI,
+            ModuleConstants.kTurningD, ModuleConstants.kTurningFF)
+        .outputRange(m_turningPIDController, ModuleConstants.kTurningMinOutput,
+            ModuleConstants.kTurningMaxOutput)
+        .idleMode(ModuleConstants.kTurningMotorIdleMode)
+        .smartCurrentLimit(ModuleConstants.kTurningMotorCurrentLimit)
+        .burnFlash());
+
+    SparkMaxStatusFrames.configure(m_drivingSparkMax, "Driving " + drivingCANId, StatusProfile.DRIVE);
+    SparkMaxStatusFrames.configure(m_turningSparkMax, "Turning " + turningCANId, StatusProfile.ABSOLUTE_POSITION);
 
     m_chassisAngularOffset = chassisAngularOffset;
+    // the encoders only read in meters and radians once the SPARKS MAX are configured
+    SparkMaxConfigurator.whenConfigured(this::syncEncoders);
+  }
+
+  private void syncEncoders() {
     m_desiredState.angle = new Rotation2d(m_turningEncoder.getPosition());
     m_drivingEncoder.setPosition(0);
   }
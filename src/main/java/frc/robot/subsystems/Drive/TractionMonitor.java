@@ -0,0 +1,195 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.Drive;
+
+import java.util.Arrays;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.filter.LinearFilter;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.Constants.DriveConstants;
+
+/**
+ * Watches module velocities and IMU acceleration for lost traction.
+ *
+ * <p>Each loop the chassis velocity is fit to the module velocities using the gyro yaw rate. A
+ * module whose velocity disagrees with the fit by more than the slip threshold is slipping and is
+ * dropped from the fit, and its odometry weight falls towards zero. The acceleration implied by the
+ * fitted wheel velocities is compared to the IMU: a large disagreement means the wheels are
+ * spinning or being dragged together, and an IMU acceleration larger than traction could produce
+ * means the robot was hit.
+ */
+public class TractionMonitor {
+  private final Translation2d[] m_moduleLocations;
+  private final double[] m_weights;
+  private final double[] m_residuals;
+  private final boolean[] m_slipping;
+
+  private final LinearFilter m_accelXFilter =
+      LinearFilter.singlePoleIIR(DriveConstants.kImuFilterTimeConstant, 0.02);
+  private final LinearFilter m_accelYFilter =
+      LinearFilter.singlePoleIIR(DriveConstants.kImuFilterTimeConstant, 0.02);
+
+  private double m_vx = 0;
+  private double m_vy = 0;
+  private double m_omega = 0;
+  private double m_accelerationError = 0;
+  private double m_imuAcceleration = 0;
+
+  private boolean m_collision = false;
+  private boolean m_tractionLoss = false;
+  private double m_holdTimer = 0;
+  private int m_collisionCount = 0;
+
+  /**
+   * Creates a new TractionMonitor.
+   *
+   * @param moduleLocations The module locations relative to the robot center, in kinematics order.
+   */
+  public TractionMonitor(Translation2d[] moduleLocations) {
+    m_moduleLocations = moduleLocations;
+    m_weights = new double[moduleLocations.length];
+    m_residuals = new double[moduleLocations.length];
+    m_slipping = new boolean[moduleLocations.length];
+    Arrays.fill(m_weights, 1);
+  }
+
+  /**
+   * Updates the monitor with one loop of measurements.
+   *
+   * @param moduleStates The measured module states, relative to the chassis.
+   * @param imuAccelX IMU acceleration along the robot's forward axis in meters per second squared.
+   * @param imuAccelY IMU acceleration along the robot's left axis in meters per second squared.
+   * @param yawRate Gyro yaw rate in radians per second, counterclockwise positive.
+   * @param dt Seconds since the last update.
+   */
+  public void update(SwerveModuleState[] moduleStates, double imuAccelX, double imuAccelY, double yawRate, double dt) {
+    double previousVx = m_vx;
+    double previousVy = m_vy;
+    m_omega = yawRate;
+
+    // fit with every module, then again without the ones that disagree
+    for (int i = 0; i < m_weights.length; i++) m_weights[i] = 1;
+    fit(moduleStates);
+    for (int i = 0; i < m_weights.length; i++) {
+      m_slipping[i] = m_residuals[i] > DriveConstants.kSlipVelocityThreshold;
+      m_weights[i] = m_slipping[i] ? 0 : 1;
+    }
+    fit(moduleStates);
+    for (int i = 0; i < m_weights.length; i++) {
+      // full weight below the threshold, none at twice the threshold
+      m_weights[i] = MathUtil.clamp(
+          2 - m_residuals[i] / DriveConstants.kSlipVelocityThreshold, 0, 1);
+      m_slipping[i] = m_weights[i] < 1;
+    }
+
+    double filteredAccelX = m_accelXFilter.calculate(imuAccelX);
+    double filteredAccelY = m_accelYFilter.calculate(imuAccelY);
+    m_imuAcceleration = Math.hypot(filteredAccelX, filteredAccelY);
+
+    if (dt > 0) {
+      // robot frame acceleration includes the centripetal term from rotating
+      double wheelAccelX = (m_vx - previousVx) / dt - m_omega * m_vy;
+      double wheelAccelY = (m_vy - previousVy) / dt + m_omega * m_vx;
+      m_accelerationError = Math.hypot(wheelAccelX - filteredAccelX, wheelAccelY - filteredAccelY);
+    }
+
+    boolean collision = m_imuAcceleration > DriveConstants.kCollisionAcceleration;
+    if (collision && !m_collision) m_collisionCount++;
+    m_collision = collision;
+    m_tractionLoss = !collision && m_accelerationError > DriveConstants.kTractionAccelerationError;
+
+    if (m_collision || m_tractionLoss || isAnySlipping()) {
+      m_holdTimer = DriveConstants.kTractionLossHoldSeconds;
+    } else {
+      m_holdTimer = Math.max(0, m_holdTimer - dt);
+    }
+  }
+
+  // weighted average of the module velocities with the gyro yaw rate removed
+  private void fit(SwerveModuleState[] moduleStates) {
+    double sumVx = 0;
+    double sumVy = 0;
+    double sumWeights = 0;
+    for (int i = 0; i < moduleStates.length; i++) {
+      double x = m_moduleLocations[i].getX();
+      double y = m_moduleLocations[i].getY();
+      double moduleVx = moduleStates[i].speedMetersPerSecond * moduleStates[i].angle.getCos();
+      double moduleVy = moduleStates[i].speedMetersPerSecond * moduleStates[i].angle.getSin();
+      sumVx += m_weights[i] * (moduleVx + m_omega * y);
+      sumVy += m_weights[i] * (moduleVy - m_omega * x);
+      sumWeights += m_weights[i];
+    }
+    // every module slipping at once leaves nothing better than the plain average
+    if (sumWeights == 0) {
+      for (int i = 0; i < m_weights.length; i++) m_weights[i] = 1;
+      fit(moduleStates);
+      return;
+    }
+    m_vx = sumVx / sumWeights;
+    m_vy = sumVy / sumWeights;
+
+    for (int i = 0; i < moduleStates.length; i++) {
+      double moduleVx = moduleStates[i].speedMetersPerSecond * moduleStates[i].angle.getCos();
+      double moduleVy = moduleStates[i].speedMetersPerSecond * moduleStates[i].angle.getSin();
+      m_residuals[i] = Math.hypot(
+          moduleVx - getExpectedModuleVx(i),
+          moduleVy - getExpectedModuleVy(i));
+    }
+  }
+
+  /** Forward velocity the module should have if it is rolling with the rest of the robot. */
+  public double getExpectedModuleVx(int module) {
+    return m_vx - m_omega * m_moduleLocations[module].getY();
+  }
+
+  /** Leftward velocity the module should have if it is rolling with the rest of the robot. */
+  public double getExpectedModuleVy(int module) {
+    return m_vy + m_omega * m_moduleLocations[module].getX();
+  }
+
+  /** Odometry weight of the module from 0, fully slipping, to 1, fully trusted. */
+  public double getWeight(int module) {
+    return m_weights[module];
+  }
+
+  public boolean isSlipping(int module) {
+    return m_slipping[module];
+  }
+
+  public boolean isAnySlipping() {
+    for (int i = 0; i < m_slipping.length; i++) {
+      if (m_slipping[i]) return true;
+    }
+    return false;
+  }
+
+  public boolean isCollision() {
+    return m_collision;
+  }
+
+  /** Whether the wheels as a group disagree with the IMU, such as when all of them spin. */
+  public boolean isTractionLoss() {
+    return m_tractionLoss;
+  }
+
+  /** True from any traction event until it has been clear for the hold time. */
+  public boolean shouldLimitAcceleration() {
+    return m_holdTimer > 0;
+  }
+
+  public double getAccelerationError() {
+    return m_accelerationError;
+  }
+
+  public double getImuAcceleration() {
+    return m_imuAcceleration;
+  }
+
+  public int getCollisionCount() {
+    return m_collisionCount;
+  }
+}
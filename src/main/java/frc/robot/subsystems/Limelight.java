@@ -1,26 +1,116 @@
 package frc.robot.subsystems;
 
 import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants.LimelightConstants;
+import frc.robot.utils.LimelightClient;
 import frc.robot.utils.LimelightHelpers;
+import frc.robot.utils.PipelineScheduler;
+import frc.robot.utils.PipelineScheduler.Priority;
+import frc.robot.utils.LimelightClient.Snapshot;
 
 
 public class Limelight extends SubsystemBase {
 
-	private String limelightName = "limelight-back";
-	private double kCameraHeight = 9.14;
-	private double kMountingAngle = 35.0;
-	private double GoalHeight = 24.5; //inches, deg
+	private final String limelightName;
+	private final Translation2d kPosition; //meters from robot center
+	private final double kCameraHeight; //inches
+	private final double kMountingAngle; //deg
+	private final double kYawRadians;
+	private double GoalHeight = 24.5; //inches
+
+	private final LimelightClient m_client;
+	// the only thing that changes the camera's pipeline
+	private final PipelineScheduler m_pipelineScheduler = new PipelineScheduler(
+		LimelightConstants.kAprilTagPipeline,
+		LimelightConstants.kPipelineSharePeriodSeconds,
+		LimelightConstants.kPipelineShareSeconds);
+
+	/**
+	 * Creates a new Limelight.
+	 *
+	 * @param limelightName The Limelight's NetworkTables name.
+	 * @param position Position of the camera relative to the robot center in meters.
+	 * @param cameraHeightInches Height of the camera lens above the floor.
+	 * @param mountingAngleDegrees Upward tilt of the camera.
+	 * @param yawRadians Direction the camera faces relative to the front of the robot, counterclockwise positive.
+	 */
+	public Limelight(String limelightName, Translation2d position, double cameraHeightInches, double mountingAngleDegrees, double yawRadians) {
+		this.limelightName = limelightName;
+		this.kPosition = position;
+		this.kCameraHeight = cameraHeightInches;
+		this.kMountingAngle = mountingAngleDegrees;
+		this.kYawRadians = yawRadians;
+		m_client = new LimelightClient(limelightName);
+	}
+
+	public String getName() {
+		return limelightName;
+	}
+
+	public double getYawRadians() {
+		return kYawRadians;
+	}
+
+	public Translation2d getPosition() {
+		return kPosition;
+	}
+
+	public double getHeightMeters() {
+		return Units.inchesToMeters(kCameraHeight);
+	}
+
+	public double getMountingAngleRadians() {
+		return Units.degreesToRadians(kMountingAngle);
+	}
+
+	public double getParseMicros() {
+		return m_client.getParseMicros();
+	}
+
+	/** The pipeline the camera has been told to run, which frames may not have caught up to yet. */
+	public int getPipelineIndex() {
+		return m_pipelineScheduler.getPipeline();
+	}
+
+	/**
+	 * Asks for a pipeline until released. The camera runs the newest highest priority request and
+	 * lends short slots to the others.
+	 *
+	 * @param owner Who is asking, usually the command.
+	 * @param pipelineIndex The pipeline.
+	 * @param priority How much the request matters.
+	 */
+	public void requestPipeline(Object owner, int pipelineIndex, Priority priority) {
+		m_pipelineScheduler.request(owner, pipelineIndex, priority, Timer.getFPGATimestamp());
+	}
+
+	public void releasePipeline(Object owner) {
+		m_pipelineScheduler.release(owner);
+	}
 
-	public Limelight() {}
+	/** Whether a frame was produced by a pipeline since the camera last switched to it. */
+	public boolean isFrameFrom(Snapshot frame, int pipelineIndex) {
+		return m_pipelineScheduler.isFrameFrom(frame, pipelineIndex);
+	}
+
+	/** The latest frame. Commands should read it once per loop and pass it to the methods below. */
+	public Snapshot getSnapshot() {
+		return m_client.getSnapshot();
+	}
 
 	public double getDistanceToGoalInches() {
-		return (GoalHeight - kCameraHeight) / Math.tan(Units.degreesToRadians(kMountingAngle + getYAngleOffsetDegrees()));
+		return getDistanceToGoalInches(getSnapshot());
+	}
+
+	public double getDistanceToGoalInches(Snapshot frame) {
+		return (GoalHeight - kCameraHeight) / Math.tan(Units.degreesToRadians(kMountingAngle + getYAngleOffsetDegrees(frame)));
 	}
 
 	public void setGoalHeight(double GoalHeight) {
@@ -32,23 +122,39 @@ public class Limelight extends SubsystemBase {
 	}
 
 	public double getDistanceToGoalMeters() {
-		return Units.inchesToMeters(getDistanceToGoalInches());
+		return getDistanceToGoalMeters(getSnapshot());
+	}
+
+	public double getDistanceToGoalMeters(Snapshot frame) {
+		return Units.inchesToMeters(getDistanceToGoalInches(frame));
 	}
 
 	public double getYAngleOffsetDegrees() {
-		return LimelightHelpers.getTY(limelightName);
+		return getYAngleOffsetDegrees(getSnapshot());
+	}
+
+	public double getYAngleOffsetDegrees(Snapshot frame) {
+		return frame.ty;
 	}
 
 	public double getXAngleOffsetDegrees() {
-		return -1 * LimelightHelpers.getTX(limelightName); //must be negative
+		return getXAngleOffsetDegrees(getSnapshot());
+	}
+
+	public double getXAngleOffsetDegrees(Snapshot frame) {
+		return -1 * frame.tx; //must be negative
 	}
 
 	public double getXOffsetRadians() {
-		return Units.degreesToRadians(getXAngleOffsetDegrees());
+		return getXOffsetRadians(getSnapshot());
+	}
+
+	public double getXOffsetRadians(Snapshot frame) {
+		return Units.degreesToRadians(getXAngleOffsetDegrees(frame));
 	}
 
 	public boolean isTargetVisible() {
-		return LimelightHelpers.getTV(limelightName);
+		return getSnapshot().hasTarget;
 	}
 
 	public void setLED(boolean lightOn) {
@@ -56,30 +162,29 @@ public class Limelight extends SubsystemBase {
         else LimelightHelpers.setLEDMode_ForceOff(limelightName); // LED force off
     }
 
-	//Back Limelight
-	public void setRetroPipeline() {
-		setGoalHeight(LimelightConstants.kMiddleRetroTapeHeight);
-		LimelightHelpers.setPipelineIndex(limelightName, 0);
-	}
-
-	public void setAprilTagPipeline() {
-		LimelightHelpers.setPipelineIndex(limelightName, 1);
-	}
-
-	public void setAprilTagFarPipeline() {
-		LimelightHelpers.setPipelineIndex(limelightName, 2);
+	public static boolean isAprilTagPipeline(int pipelineIndex) {
+		return pipelineIndex == LimelightConstants.kAprilTagPipeline || pipelineIndex == LimelightConstants.kAprilTagFarPipeline;
 	}
 
 	public Command setLEDCommand(boolean lightOn) {
 		return new InstantCommand(() -> setLED(lightOn));
 	}
 
+	/** The robot pose from the latest frame, or null if no tag is visible. */
 	public Pose2d getBotPose2d() {
-		return LimelightHelpers.getBotPose2d(limelightName);
+		return getSnapshot().botPose;
 	}
 
 	@Override
 	public void periodic() {
-		SmartDashboard.putNumber("ll distance to goal", getDistanceToGoalMeters());
+		if (m_pipelineScheduler.update(Timer.getFPGATimestamp())) {
+			LimelightHelpers.setPipelineIndex(limelightName, m_pipelineScheduler.getPipeline());
+		}
+
+		Snapshot frame = getSnapshot();
+		SmartDashboard.putNumber(limelightName + " distance to goal", getDistanceToGoalMeters(frame));
+		SmartDashboard.putNumber(limelightName + " frame age ms", 1000 * frame.getAgeSeconds());
+		SmartDashboard.putNumber(limelightName + " pipeline", frame.pipelineIndex);
+		SmartDashboard.putNumber(limelightName + " pipeline switches", m_pipelineScheduler.getSwitchCount());
 	}
 }
\ No newline at end of file
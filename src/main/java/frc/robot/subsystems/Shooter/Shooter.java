@@ -11,7 +11,6 @@ import com.revrobotics.RelativeEncoder;
 import com.revrobotics.CANSparkMax.IdleMode;
 import com.revrobotics.SparkMaxAbsoluteEncoder.Type;
 
-import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
@@ -22,7 +21,19 @@ import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.WaitUntilCommand;
 import frc.robot.Constants.ShooterConstants;
+import frc.robot.subsystems.Superstructure.MechanismEvent;
+import frc.robot.utils.CurrentSignatureDetector;
+import frc.robot.utils.EventBus;
 import frc.robot.utils.ShooterPreset;
+import frc.robot.utils.SparkMaxConfig;
+import frc.robot.utils.SparkMaxConfigurator;
+import frc.robot.utils.SparkMaxStatusFrames;
+import frc.robot.utils.SparkMaxStatusFrames.StatusProfile;
+import frc.robot.utils.controller.AsymmetricProfiledPIDController;
+import frc.robot.utils.controller.AsymmetricTrapezoidProfile;
+import frc.robot.utils.controller.StateSpaceVelocityController;
+import frc.robot.utils.controller.AsymmetricTrapezoidProfile.Constraints;
+import frc.robot.utils.controller.AsymmetricTrapezoidProfile.State;
 
 public class Shooter extends SubsystemBase {
   private CANSparkMax kickerMotor;
@@ -34,51 +45,69 @@ public class Shooter extends SubsystemBase {
   private CANSparkMax bottomFlywheelMotor;
   private RelativeEncoder flywheelEncoder;
 
-  private PIDController pivotController = new PIDController(0, 0, 0);
-  private PIDController flywheelController = new PIDController(0.5, 0, 0);
+  private AsymmetricProfiledPIDController pivotController = 
+    new AsymmetricProfiledPIDController(0, 0, 0, ShooterConstants.kPivotRaiseConstraints); //MUST START AT 0 P
+  private double pivotArrivalTimestamp = 0;
+  private StateSpaceVelocityController flywheelController = new StateSpaceVelocityController(
+    ShooterConstants.kFlywheelkS, ShooterConstants.kFlywheelkV, ShooterConstants.kFlywheelkA,
+    ShooterConstants.kFlywheelLQRVelocityTolerance, ShooterConstants.kFlywheelLQRVoltageTolerance,
+    ShooterConstants.kFlywheelModelStdDev, ShooterConstants.kFlywheelMeasurementStdDev,
+    ShooterConstants.kFlywheelNominalVoltage, ShooterConstants.kFlywheelToleranceRadPerSec, 0.02);
 
   public enum KickerState {
     INTAKING, OUTTAKING, STOPPED
   }
 
   private static KickerState kickerState = KickerState.STOPPED;
-  private Timer kickerRunningTimer = new Timer();
+  private KickerState previousKickerState = KickerState.STOPPED;
+  private boolean isPivotGoalPending = false;
+  private EventBus<MechanismEvent> m_eventBus;
+  private CurrentSignatureDetector cubeDetector = new CurrentSignatureDetector(ShooterConstants.kCubeDetectorConfig, 0.02);
 
   private boolean isShooterEnabled = false;
   
   /** Creates a new Shooter. */
-  public Shooter() {
+  public Shooter(EventBus<MechanismEvent> m_eventBus) {
+    this.m_eventBus = m_eventBus;
     kickerMotor = new CANSparkMax(ShooterConstants.kKickerMotorCanId, CANSparkMaxLowLevel.MotorType.kBrushless);
     pivotMotor = new CANSparkMax(ShooterConstants.kPivotMotorCanId, CANSparkMaxLowLevel.MotorType.kBrushless);
-    kickerMotor.setInverted(true);
-    pivotMotor.setInverted(true);
-
-    kickerMotor.setIdleMode(IdleMode.kBrake);
-    pivotMotor.setIdleMode(IdleMode.kBrake);
-    kickerMotor.setSmartCurrentLimit(ShooterConstants.kKickerMotorCurrentLimit);
-    pivotMotor.setSmartCurrentLimit(ShooterConstants.kPivotMotorCurrentLimit);
-
-    kickerMotor.enableVoltageCompensation(ShooterConstants.kKickerNominalVoltage);
-    pivotMotor.enableVoltageCompensation(ShooterConstants.kKickerNominalVoltage);
-
     pivotEncoder = pivotMotor.getAbsoluteEncoder(Type.kDutyCycle);
-    pivotEncoder.setPositionConversionFactor(ShooterConstants.kPivotPositionConversionFactor);
-    pivotEncoder.setInverted(false);
-    pivotEncoder.setZeroOffset(ShooterConstants.kPivotEncoderZeroOffset);
+
+    SparkMaxConfigurator.register(new SparkMaxConfig(kickerMotor, "Kicker")
+      .inverted(true)
+      .idleMode(IdleMode.kBrake)
+      .smartCurrentLimit(ShooterConstants.kKickerMotorCurrentLimit)
+      .voltageCompensation(ShooterConstants.kKickerNominalVoltage));
+    SparkMaxConfigurator.register(new SparkMaxConfig(pivotMotor, "Pivot")
+      .inverted(true)
+      .idleMode(IdleMode.kBrake)
+      .smartCurrentLimit(ShooterConstants.kPivotMotorCurrentLimit)
+      .voltageCompensation(ShooterConstants.kKickerNominalVoltage)
+      .positionConversionFactor(pivotEncoder, ShooterConstants.kPivotPositionConversionFactor)
+      .inverted(pivotEncoder, false)
+      .zeroOffset(pivotEncoder, ShooterConstants.kPivotEncoderZeroOffset));
 
     topFlywheelMotor = new CANSparkMax(ShooterConstants.kTopFlywheelMotorCanId, CANSparkMaxLowLevel.MotorType.kBrushless);
     bottomFlywheelMotor = new CANSparkMax(ShooterConstants.kBottomFlywheelMotorCanId, CANSparkMaxLowLevel.MotorType.kBrushless);
-    bottomFlywheelMotor.follow(topFlywheelMotor, true);
-    topFlywheelMotor.setInverted(true);
-
-    topFlywheelMotor.setIdleMode(IdleMode.kCoast);
-    bottomFlywheelMotor.setIdleMode(IdleMode.kCoast);
-
     flywheelEncoder = topFlywheelMotor.getEncoder();
-    pivotEncoder.setVelocityConversionFactor(ShooterConstants.kFlywheelVelocityConversionFactor);//gear ratio
+
+    SparkMaxConfigurator.register(new SparkMaxConfig(topFlywheelMotor, "Top Flywheel")
+      .inverted(true)
+      .idleMode(IdleMode.kCoast)
+      .smartCurrentLimit(ShooterConstants.kTopFlywheelMotorCurrentLimit)
+      .velocityConversionFactor(flywheelEncoder, ShooterConstants.kFlywheelVelocityConversionFactor)); //rad/s
+    SparkMaxConfigurator.register(new SparkMaxConfig(bottomFlywheelMotor, "Bottom Flywheel")
+      .follow(topFlywheelMotor, true)
+      .idleMode(IdleMode.kCoast)
+      .smartCurrentLimit(ShooterConstants.kBottomFlywheelMotorCurrentLimit));
+
+    SparkMaxStatusFrames.configure(kickerMotor, "Kicker", StatusProfile.CURRENT);
+    SparkMaxStatusFrames.configure(pivotMotor, "Pivot", StatusProfile.ABSOLUTE_POSITION);
+    SparkMaxStatusFrames.configure(topFlywheelMotor, "Top Flywheel", StatusProfile.VELOCITY, true);
+    SparkMaxStatusFrames.configure(bottomFlywheelMotor, "Bottom Flywheel", StatusProfile.FOLLOWER);
 
     pivotController.disableContinuousInput();
-    pivotController.setTolerance(Units.degreesToRadians(7));
+    pivotController.setTolerance(Units.degreesToRadians(ShooterConstants.kPivotToleranceDegrees));
   }
 
   //enable funtions
@@ -93,26 +122,49 @@ public class Shooter extends SubsystemBase {
 
   public void setTargetPivot(double targetAngleDegrees) {
     pivotController.setP(ShooterConstants.kPivotP); //prevent jumping on enable p = 2.5
-    pivotController.setSetpoint(Units.degreesToRadians(targetAngleDegrees));
+    double targetAngleRadians = Units.degreesToRadians(targetAngleDegrees);
+    isPivotGoalPending = true;
+    if (targetAngleRadians == pivotController.getGoal().position) return;
+
+    State current = pivotController.getSetpoint();
+    Constraints selectedConstraint = 
+      (Math.sin(targetAngleRadians) < Math.sin(current.position)) ? 
+      ShooterConstants.kPivotLowerConstraints : ShooterConstants.kPivotRaiseConstraints;
+    pivotController.setConstraints(selectedConstraint);
+    pivotController.setGoal(new State(targetAngleRadians, 0));
+
+    pivotArrivalTimestamp = Timer.getFPGATimestamp() + 
+      new AsymmetricTrapezoidProfile(selectedConstraint, pivotController.getGoal(), current).totalTime();
   }
 
   public double getPivotTarget() {
-    return pivotController.getSetpoint();
+    return pivotController.getGoal().position;
   }
 
   public boolean atPivotSetpoint() {
-    return pivotController.atSetpoint();
+    return pivotController.atGoal();
+  }
+
+  /** Seconds until the pivot profile reaches its goal, 0 once the profile has finished. */
+  public double getPivotTimeToArrival() {
+    return Math.max(0, pivotArrivalTimestamp - Timer.getFPGATimestamp());
   }
 
   public void setCalculatedPivotVoltage() {
-    pivotMotor.setVoltage(isShooterEnabled ? 
+    if (!isShooterEnabled) {
+      pivotController.reset(getPivotAngleRadians()); //profile from the measured angle once enabled
+      pivotMotor.setVoltage(0);
+      return;
+    }
+    double voltage = 
       pivotController.calculate(getPivotAngleRadians())
-      + ShooterConstants.kPivotFeedforward.calculate(pivotController.getSetpoint(), 0) : 0 );
+      + ShooterConstants.kPivotFeedforward.calculate(pivotController.getSetpoint().position, pivotController.getSetpoint().velocity);
+    pivotMotor.setVoltage(voltage);
   }
 
   //FLYWHEEL
   public double getFlywheelVelocity() {
-    return flywheelEncoder.getVelocity() / 1.0;//gear ratio
+    return flywheelEncoder.getVelocity(); //rad/s
   }
 
   public void setTargetVelocity(double targetRPM) {
@@ -128,14 +180,26 @@ public class Shooter extends SubsystemBase {
   }
 
   private void setCalculatedFlywheelVoltage() {
-    topFlywheelMotor.setVoltage(isShooterEnabled ? flywheelController.calculate(getFlywheelVelocity()) : 0);
+    if (!isShooterEnabled) {
+      flywheelController.reset(getFlywheelVelocity()); //keep the estimate fresh while the motor is off
+      topFlywheelMotor.setVoltage(0);
+      return;
+    }
+    topFlywheelMotor.setVoltage(flywheelController.calculate(getFlywheelVelocity()));
+  }
+
+  public double getFlywheelSpinUpTime() {
+    return flywheelController.getLastSpinUpTime();
+  }
+
+  public double getFlywheelRecoveryTime() {
+    return flywheelController.getLastRecoveryTime();
   }
 
   public void setKickerIntake(double power) {
     kickerMotor.setVoltage(power*ShooterConstants.kKickerNominalVoltage);
     if (kickerState != KickerState.INTAKING) {
-      kickerRunningTimer.reset();
-      kickerRunningTimer.start();
+      cubeDetector.reset();
     }
     kickerState = KickerState.INTAKING;
   }
@@ -149,6 +213,11 @@ public class Shooter extends SubsystemBase {
     kickerState = KickerState.OUTTAKING;
   }
 
+  public void setKickerStop() {
+    kickerMotor.set(0);
+    kickerState = KickerState.STOPPED;
+  }
+
   public KickerState getKickerState() {
     return kickerState;
   }
@@ -185,26 +254,55 @@ public class Shooter extends SubsystemBase {
   }
 
   public boolean isCurrentSpikeDetected() {
-    return (kickerRunningTimer.get() > 0.15) && //excludes current spike when motor first starts
-      (kickerMotor.getOutputCurrent() > 25) && //cube intake current threshold
-      (kickerState == KickerState.INTAKING);
+    return cubeDetector.isDetected() && (kickerState == KickerState.INTAKING);
+  }
+
+  public double getCubeDetectionConfidence() {
+    return cubeDetector.getConfidence();
   }
 
   public boolean isCubeDetected() {
-    return isCurrentSpikeDetected() 
-      && (pivotController.getSetpoint() != Units.degreesToRadians(ShooterConstants.kPivotHoldAngleDegrees)) 
+    return isCurrentSpikeDetected() && isIntakeConfigured();
+  }
+
+  public boolean isCubeAcquiredEvent() {
+    return cubeDetector.isAcquiredEvent() && (kickerState == KickerState.INTAKING) && isIntakeConfigured();
+  }
+
+  private boolean isIntakeConfigured() {
+    return (pivotController.getGoal().position != Units.degreesToRadians(ShooterConstants.kPivotHoldAngleDegrees)) 
       && (flywheelController.getSetpoint() != 0);
   }
 
+  private void publishEvents() {
+    if (isCubeAcquiredEvent()) m_eventBus.publish(MechanismEvent.CUBE_ACQUIRED);
+
+    if (kickerState != previousKickerState && kickerState == KickerState.OUTTAKING) m_eventBus.publish(MechanismEvent.KICKER_OUTTAKING);
+    previousKickerState = kickerState;
+
+    // published once per target, even if the pivot was already at it
+    if (isPivotGoalPending && atPivotSetpoint()) {
+      isPivotGoalPending = false;
+      m_eventBus.publish(MechanismEvent.SHOOTER_AT_SETPOINT);
+    }
+  }
+
   @Override
   public void periodic() {
     // This method will be called once per scheduler run
+    cubeDetector.update(kickerMotor.getOutputCurrent(), kickerState == KickerState.INTAKING);
     setCalculatedPivotVoltage();
     setCalculatedFlywheelVoltage();
+    publishEvents();
     
     SmartDashboard.putNumber("Shooter Pivot", Units.radiansToDegrees(getPivotAngleRadians()));
     SmartDashboard.putNumber("Shooter Target Pivot", Units.radiansToDegrees(getPivotTarget()));
+    SmartDashboard.putNumber("Shooter Pivot Time To Arrival", getPivotTimeToArrival());
+    SmartDashboard.putNumber("Shooter Cube Confidence", getCubeDetectionConfidence());
     SmartDashboard.putNumber("Flywheel RPM", Units.radiansPerSecondToRotationsPerMinute(getFlywheelVelocity()));
-    SmartDashboard.putNumber("Flywheel Target", flywheelController.getSetpoint());
+    SmartDashboard.putNumber("Flywheel Target", Units.radiansPerSecondToRotationsPerMinute(flywheelController.getSetpoint()));
+    SmartDashboard.putBoolean("Flywheel At Setpoint", atVelocitySetpoint());
+    SmartDashboard.putNumber("Flywheel Spin Up Time", getFlywheelSpinUpTime());
+    SmartDashboard.putNumber("Flywheel Recovery Time", getFlywheelRecoveryTime());
   }
 }
@@ -13,6 +13,8 @@ import edu.wpi.first.wpilibj2.command.SelectCommand;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import edu.wpi.first.wpilibj2.command.Command.InterruptionBehavior;
 import frc.robot.Constants.ShooterConstants;
+import frc.robot.utils.CommandCache;
+import frc.robot.utils.HierarchicalStateMachine;
 
 public class ShooterStateMachine {
   Shooter m_shooter;
@@ -25,34 +27,67 @@ public class ShooterStateMachine {
     INTAKE, LOW, MIDDLE, HIGH
   }
 
-  public ShooterState shooterState = ShooterState.RETRACT;
   public ShooterScoreLevel scoreLevel = ShooterScoreLevel.INTAKE;
 
+  private final HierarchicalStateMachine<ShooterState> shooterStateMachine = 
+    new HierarchicalStateMachine<>("Shooter", ShooterState.class, ShooterState.RETRACT);
+
+  private final CommandCache shooterCommandCache = 
+    new CommandCache("Shooter", ShooterState.values().length * ShooterScoreLevel.values().length);
+
   /** Creates a new ShooterStateMachine. */
   public ShooterStateMachine(Shooter m_shooter) {
     this.m_shooter = m_shooter;
+
+    // every state and score level pair is built once here and rescheduled on each press
+    for (ShooterState shooterState : ShooterState.values()) {
+      for (ShooterScoreLevel scoreLevel : ShooterScoreLevel.values()) {
+        shooterCommandCache.put(
+          getCacheIndex(shooterState, scoreLevel),
+          buildShooterCommand(shooterState, scoreLevel).withInterruptBehavior(InterruptionBehavior.kCancelSelf));
+      }
+    }
+    shooterCommandCache.seal();
+
+    // every shooter state can be reached from any other, the score level picks the command
+    for (ShooterState shooterState : ShooterState.values()) {
+      shooterStateMachine.addTransitionFromAny(shooterState, () -> getShooterCommand(shooterState, scoreLevel));
+    }
+    // the manual intake and outtake run the kicker until the shooter leaves manual
+    shooterStateMachine.setExitAction(ShooterState.MANUAL, m_shooter::setKickerStop);
+    SmartDashboard.putString("Shooter State Graph", shooterStateMachine.toDot("Shooter"));
   }
 
   public Command setShooterStateCommand(ShooterState shooterState) {
-    return new InstantCommand(() -> {
-      if (this.shooterState != shooterState) {
-        this.shooterState = shooterState;
-      }
-      getShooterCommand(scoreLevel).withInterruptBehavior(InterruptionBehavior.kCancelSelf).schedule();
-    });
+    return new InstantCommand(() -> setShooterState(shooterState));
+  }
+
+  public void setShooterState(ShooterState shooterState) {
+    shooterCommandCache.beginPress();
+    shooterStateMachine.request(shooterState);
+    shooterCommandCache.endPress();
   }
 
   //Score level
   public Command setShooterScoreLevelCommand(ShooterScoreLevel scoreLevel) {
-    return new InstantCommand(() -> this.scoreLevel = scoreLevel);
+    return new InstantCommand(() -> setShooterScoreLevel(scoreLevel));
+  }
+
+  public void setShooterScoreLevel(ShooterScoreLevel scoreLevel) {
+    this.scoreLevel = scoreLevel;
   }
 
   public ShooterScoreLevel getShooterScoreLevel() {
     return this.scoreLevel;
   }
 
+  /** The state the shooter was last commanded to, which it may still be moving to. */
   public ShooterState getShooterState() {
-    return this.shooterState;
+    return shooterStateMachine.getTargetState();
+  }
+
+  public boolean isTransitioning() {
+    return shooterStateMachine.isTransitioning();
   }
 
   private Command toRetract(ShooterScoreLevel shooterScorelevel) {
@@ -88,7 +123,21 @@ public class ShooterStateMachine {
         ), () -> shooterScorelevel));
   }
 
-  private Command getShooterCommand(ShooterScoreLevel shooterScorelevel) {
+  private static int getCacheIndex(ShooterState shooterState, ShooterScoreLevel shooterScoreLevel) {
+    return shooterState.ordinal() * ShooterScoreLevel.values().length + shooterScoreLevel.ordinal();
+  }
+
+  private Command getShooterCommand(ShooterState shooterState, ShooterScoreLevel shooterScorelevel) {
+    int index = getCacheIndex(shooterState, shooterScorelevel);
+    Command shooterCommand = shooterCommandCache.get(index);
+    if (shooterCommand == null) {
+      shooterCommand = buildShooterCommand(shooterState, shooterScorelevel).withInterruptBehavior(InterruptionBehavior.kCancelSelf);
+      shooterCommandCache.put(index, shooterCommand);
+    }
+    return shooterCommand;
+  }
+
+  private Command buildShooterCommand(ShooterState shooterState, ShooterScoreLevel shooterScorelevel) {
     switch(shooterState) {
       case RETRACT: return toRetract(shooterScorelevel);
       case HOLD: return toHold(shooterScorelevel);
@@ -100,6 +149,8 @@ public class ShooterStateMachine {
       
   public void updateTelemetry() {
     // This method will be called once per scheduler run
-    SmartDashboard.putString("Shooter State", shooterState.toString());
+    SmartDashboard.putString("Shooter State", shooterStateMachine.getTargetState().toString());
+    shooterStateMachine.updateTelemetry();
+    shooterCommandCache.updateTelemetry();
   }
 }
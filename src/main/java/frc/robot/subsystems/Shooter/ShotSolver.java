@@ -0,0 +1,129 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.Shooter;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.util.WPIUtilJNI;
+import frc.robot.Constants.ShooterConstants;
+
+/**
+ * Solves for a cube shot while the robot is moving.
+ *
+ * <p>The cube leaves the shooter with the chassis velocity added to it, so instead of aiming at
+ * the goal the solver aims at a virtual goal offset by the distance the robot travels during the
+ * time of flight. Time of flight depends on the distance to the virtual goal, so the solver
+ * iterates a fixed number of times or until the per-loop compute budget runs out. No objects are
+ * allocated while solving.
+ */
+public class ShotSolver {
+  private double pivotDegrees = ShooterConstants.kLaunchCubePreset.PivotDegrees;
+  private double flywheelRPM = ShooterConstants.kLaunchCubePreset.FlywheelRPM;
+  private double headingRadians = 0;
+  private double timeOfFlightSeconds = 0;
+  private double virtualDistanceMeters = 0;
+  private boolean inRange = false;
+
+  private int iterations = 0;
+  private double solveTimeMicros = 0;
+
+  /** Creates a new ShotSolver. */
+  public ShotSolver() {}
+
+  /**
+   * Solves for the pivot angle, flywheel speed and robot heading needed to score from the current
+   * robot state.
+   *
+   * @param distanceMeters Distance from the robot to the goal as measured by the limelight.
+   * @param targetBearingRadians Counterclockwise-positive angle of the goal in the camera frame.
+   * @param cameraYawRadians Direction the limelight faces relative to the front of the robot.
+   * @param robotHeadingRadians Current field-relative heading of the robot.
+   * @param fieldVxMetersPerSecond Field-relative x velocity of the robot.
+   * @param fieldVyMetersPerSecond Field-relative y velocity of the robot.
+   */
+  public void solve(double distanceMeters, double targetBearingRadians, double cameraYawRadians, double robotHeadingRadians,
+      double fieldVxMetersPerSecond, double fieldVyMetersPerSecond) {
+    long startTime = WPIUtilJNI.now();
+
+    double fieldBearing = robotHeadingRadians + cameraYawRadians + targetBearingRadians;
+    double targetX = distanceMeters * Math.cos(fieldBearing);
+    double targetY = distanceMeters * Math.sin(fieldBearing);
+
+    double virtualX = targetX;
+    double virtualY = targetY;
+    double virtualDistance = distanceMeters;
+    double timeOfFlight = interpolate(ShooterConstants.kShotTimeOfFlightSeconds, distanceMeters);
+
+    iterations = 0;
+    while (iterations < ShooterConstants.kShotSolverMaxIterations) {
+      virtualX = targetX - fieldVxMetersPerSecond * timeOfFlight;
+      virtualY = targetY - fieldVyMetersPerSecond * timeOfFlight;
+      virtualDistance = Math.sqrt(virtualX * virtualX + virtualY * virtualY);
+
+      double nextTimeOfFlight = interpolate(ShooterConstants.kShotTimeOfFlightSeconds, virtualDistance);
+      boolean converged = Math.abs(nextTimeOfFlight - timeOfFlight) < ShooterConstants.kShotSolverToleranceSeconds;
+      timeOfFlight = nextTimeOfFlight;
+      iterations++;
+
+      if (converged || WPIUtilJNI.now() - startTime > ShooterConstants.kShotSolverBudgetMicros) break;
+    }
+
+    virtualDistanceMeters = virtualDistance;
+    timeOfFlightSeconds = timeOfFlight;
+    pivotDegrees = interpolate(ShooterConstants.kShotPivotDegrees, virtualDistance);
+    flywheelRPM = interpolate(ShooterConstants.kShotFlywheelRPM, virtualDistance);
+    headingRadians = MathUtil.angleModulus(Math.atan2(virtualY, virtualX) - ShooterConstants.kShooterYawOffsetRadians);
+    inRange = virtualDistance >= ShooterConstants.kShotDistancesMeters[0]
+      && virtualDistance <= ShooterConstants.kShotDistancesMeters[ShooterConstants.kShotDistancesMeters.length - 1];
+
+    solveTimeMicros = WPIUtilJNI.now() - startTime;
+  }
+
+  // linear interpolation into a shot table, clamped to the ends of the table
+  private static double interpolate(double[] values, double distanceMeters) {
+    double[] distances = ShooterConstants.kShotDistancesMeters;
+    if (distanceMeters <= distances[0]) return values[0];
+    for (int i = 1; i < distances.length; i++) {
+      if (distanceMeters <= distances[i]) {
+        double t = (distanceMeters - distances[i - 1]) / (distances[i] - distances[i - 1]);
+        return MathUtil.interpolate(values[i - 1], values[i], t);
+      }
+    }
+    return values[values.length - 1];
+  }
+
+  public double getPivotDegrees() {
+    return pivotDegrees;
+  }
+
+  public double getFlywheelRPM() {
+    return flywheelRPM;
+  }
+
+  /** Field-relative robot heading that points the shooter at the virtual goal. */
+  public double getHeadingRadians() {
+    return headingRadians;
+  }
+
+  public double getTimeOfFlightSeconds() {
+    return timeOfFlightSeconds;
+  }
+
+  public double getVirtualDistanceMeters() {
+    return virtualDistanceMeters;
+  }
+
+  /** Whether the virtual goal lies inside the calibrated shot table. */
+  public boolean isInRange() {
+    return inRange;
+  }
+
+  public int getIterations() {
+    return iterations;
+  }
+
+  public double getSolveTimeMicros() {
+    return solveTimeMicros;
+  }
+}
@@ -4,34 +4,32 @@
 
 package frc.robot.subsystems;
 
-import java.util.Map;
-
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.Command.InterruptionBehavior;
 import edu.wpi.first.wpilibj2.command.ConditionalCommand;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
-import edu.wpi.first.wpilibj2.command.SelectCommand;
+import edu.wpi.first.wpilibj2.command.ProxyCommand;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import edu.wpi.first.wpilibj2.command.WaitCommand;
-import edu.wpi.first.wpilibj2.command.WaitUntilCommand;
 import frc.robot.Constants.LEDConstants;
 import frc.robot.Constants.ShooterConstants;
 import frc.robot.commands.TurnToAngle;
 import frc.robot.commands.align.AlignToCone;
 import frc.robot.commands.align.AlignToCube;
+import frc.robot.commands.align.DriveToNode;
 import frc.robot.subsystems.Arm.Arm;
 import frc.robot.subsystems.Arm.ArmStateMachine;
 import frc.robot.subsystems.Arm.ArmStateMachine.ArmScoreLevel;
 import frc.robot.subsystems.Arm.ArmStateMachine.ArmState;
-import frc.robot.subsystems.Arm.Claw.ClawState;
 import frc.robot.subsystems.Arm.Claw;
 import frc.robot.subsystems.Drive.DriveSubsystem;
 import frc.robot.subsystems.Shooter.Shooter;
-import frc.robot.subsystems.Shooter.Shooter.KickerState;
 import frc.robot.subsystems.Shooter.ShooterStateMachine;
 import frc.robot.subsystems.Shooter.ShooterStateMachine.ShooterScoreLevel;
 import frc.robot.subsystems.Shooter.ShooterStateMachine.ShooterState;
+import frc.robot.utils.CommandCache;
+import frc.robot.utils.EventBus;
 
 public class Superstructure {
   DriveSubsystem m_drivetrain;
@@ -41,13 +39,25 @@ public class Superstructure {
 
   Shooter m_shooter;
 
-  Limelight m_limelight;
+  Vision m_vision;
 
   LED m_led;
 
   ArmStateMachine m_armStateMachine;
   ShooterStateMachine m_shooterStateMachine;
+
+  EventBus<MechanismEvent> m_eventBus;
+
+  private Command holdShooterCommand;
+
+  private final CommandCache superstructureCommandCache = new CommandCache("Superstructure",
+    ScoreAction.values().length * ScoreMode.values().length * CargoType.values().length
+    + ScoreModeTransition.values().length);
   
+  public enum MechanismEvent {
+    CONE_ACQUIRED, CUBE_ACQUIRED, CLAW_OUTTAKING, KICKER_OUTTAKING, ARM_AT_GOAL, SHOOTER_AT_SETPOINT
+  }
+
   public enum ScoreMode {
     ARM, SHOOTER
   }
@@ -56,6 +66,10 @@ public class Superstructure {
     TO_ARM, TO_SHOOTER, DO_NOTHING
   }
 
+  private enum ScoreAction {
+    SCORE, ALIGN
+  }
+
   public enum DPAD {
     UP, DOWN, LEFT, RIGHT
   }
@@ -72,22 +86,71 @@ public class Superstructure {
   public CargoType cargoType = CargoType.CONE; //default to cone
 
   /** Creates a new Superstructure. */
-  public Superstructure(DriveSubsystem m_drivetrain, Arm m_arm, Claw m_claw, Shooter m_shooter, Limelight m_limelight, LED m_led) {
+  public Superstructure(DriveSubsystem m_drivetrain, Arm m_arm, Claw m_claw, Shooter m_shooter, Vision m_vision, LED m_led, EventBus<MechanismEvent> m_eventBus) {
     this.m_drivetrain = m_drivetrain;
     this.m_arm = m_arm;
     this.m_claw = m_claw;
     this.m_shooter = m_shooter;
-    this.m_limelight = m_limelight;
+    this.m_vision = m_vision;
     this.m_led = m_led;
+    this.m_eventBus = m_eventBus;
 
-    m_armStateMachine = new ArmStateMachine(m_arm);
+    m_armStateMachine = new ArmStateMachine(m_arm, () -> scoreMode == ScoreMode.ARM);
 	  m_shooterStateMachine = new ShooterStateMachine(m_shooter);
+
+    holdShooterCommand = m_shooterStateMachine.setShooterStateCommand(ShooterState.HOLD);
+
+    // score, align and score mode commands are built once here, callers get a proxy that schedules them
+    for (ScoreAction scoreAction : ScoreAction.values()) {
+      for (ScoreMode scoreMode : ScoreMode.values()) {
+        for (CargoType cargoType : CargoType.values()) {
+          superstructureCommandCache.put(
+            getCacheIndex(scoreAction, scoreMode, cargoType),
+            buildScoreActionCommand(scoreAction, scoreMode, cargoType));
+        }
+      }
+    }
+    superstructureCommandCache.put(getCacheIndex(ScoreModeTransition.TO_ARM), shooterToArm());
+    superstructureCommandCache.put(getCacheIndex(ScoreModeTransition.TO_SHOOTER), armToShooter());
+    superstructureCommandCache.put(getCacheIndex(ScoreModeTransition.DO_NOTHING), new InstantCommand());
+    superstructureCommandCache.seal();
+
+    configureEventReactions();
+  }
+
+  private static int getCacheIndex(ScoreAction scoreAction, ScoreMode scoreMode, CargoType cargoType) {
+    return (scoreAction.ordinal() * ScoreMode.values().length + scoreMode.ordinal())
+      * CargoType.values().length + cargoType.ordinal();
   }
 
+  private static int getCacheIndex(ScoreModeTransition scoreModeTransition) {
+    return ScoreAction.values().length * ScoreMode.values().length * CargoType.values().length
+      + scoreModeTransition.ordinal();
+  }
+
+  private Command buildScoreActionCommand(ScoreAction scoreAction, ScoreMode scoreMode, CargoType cargoType) {
+    if (scoreAction == ScoreAction.SCORE) {
+      if (scoreMode == ScoreMode.SHOOTER) return m_shooter.setKickerOuttakeCommand(ShooterConstants.kKickSpeed); //TODO SHOOTER SCORE
+      return cargoType == CargoType.CONE ? m_claw.scoreCone() : m_claw.scoreCube();
+    }
+    if (scoreMode == ScoreMode.SHOOTER) return new TurnToAngle(m_drivetrain, 180);
+    return cargoType == CargoType.CONE
+      ? new AlignToCone(m_drivetrain, m_vision) // align to cone
+      : new AlignToCube(m_drivetrain, m_vision); //align to cube
+  }
+
+  private Command getCachedCommand(int index) {
+    superstructureCommandCache.beginPress();
+    Command command = superstructureCommandCache.get(index);
+    superstructureCommandCache.endPress();
+    return command;
+  }
+
+  // a request that starts no move leaves the mechanism where it is, so there is no event to wait for
   private Command armToShooter() {
     return new SequentialCommandGroup(
       setSubsystemState(DPAD.UP),
-      new WaitUntilCommand(() -> m_arm.isShoulderAtGoal()),
+      m_eventBus.waitForCommand(MechanismEvent.ARM_AT_GOAL).unless(() -> !m_armStateMachine.isTransitioning()),
       new InstantCommand(() -> {
         this.scoreMode = ScoreMode.SHOOTER;
         m_shooter.setShooterEnabled(true);
@@ -99,7 +162,7 @@ public class Superstructure {
   private Command shooterToArm() {
     return new SequentialCommandGroup(
       setSubsystemState(DPAD.DOWN),
-      new WaitUntilCommand(() -> m_shooter.atPivotSetpoint()),
+      m_eventBus.waitForCommand(MechanismEvent.SHOOTER_AT_SETPOINT).unless(() -> !m_shooterStateMachine.isTransitioning()),
       new InstantCommand(() -> {
         m_claw.setClawStop();
         m_shooter.setShooterEnabled(false);
@@ -111,16 +174,11 @@ public class Superstructure {
 
   //Score mode
   public Command setScoreModeCommand(ScoreMode targetScoreMode) {
-    return new SelectCommand(
-      Map.ofEntries(
-        Map.entry(ScoreModeTransition.TO_ARM, shooterToArm()),
-        Map.entry(ScoreModeTransition.TO_SHOOTER, armToShooter()),
-        Map.entry(ScoreModeTransition.DO_NOTHING, new InstantCommand())),
-      () -> {
-        if(getScoreMode() == targetScoreMode) { return ScoreModeTransition.DO_NOTHING;} 
-        return targetScoreMode == ScoreMode.ARM ? ScoreModeTransition.TO_ARM : ScoreModeTransition.TO_SHOOTER;
-      }
-    );
+    return new ProxyCommand(() -> {
+      if (getScoreMode() == targetScoreMode) return getCachedCommand(getCacheIndex(ScoreModeTransition.DO_NOTHING));
+      return getCachedCommand(getCacheIndex(
+        targetScoreMode == ScoreMode.ARM ? ScoreModeTransition.TO_ARM : ScoreModeTransition.TO_SHOOTER));
+    });
   }
 
   public ScoreMode getScoreMode() {
@@ -129,70 +187,49 @@ public class Superstructure {
 
   //Subsystem State
   public Command setSubsystemState(DPAD dPadInput) {
-    final SelectCommand coneArmSelectCommand = new SelectCommand(
-      Map.ofEntries(
-        Map.entry(DPAD.UP, m_armStateMachine.setTargetArmStateCommand(ArmState.STOW, CargoType.CONE)),
-        Map.entry(DPAD.DOWN, m_armStateMachine.setTargetArmStateCommand(ArmState.TRANSFER, CargoType.CONE)),
-        Map.entry(DPAD.LEFT, m_armStateMachine.setTargetArmStateCommand(ArmState.FRONT, CargoType.CONE)),
-        Map.entry(DPAD.RIGHT, m_armStateMachine.setTargetArmStateCommand(ArmState.BACK, CargoType.CONE))), 
-      () -> dPadInput);
-
-    final SelectCommand cubeArmSelectCommand = new SelectCommand(
-      Map.ofEntries(
-        Map.entry(DPAD.UP, m_armStateMachine.setTargetArmStateCommand(ArmState.STOW, CargoType.CUBE)),
-        Map.entry(DPAD.DOWN, m_armStateMachine.setTargetArmStateCommand(ArmState.TRANSFER, CargoType.CUBE)),
-        Map.entry(DPAD.LEFT, m_armStateMachine.setTargetArmStateCommand(ArmState.FRONT, CargoType.CUBE)),
-        Map.entry(DPAD.RIGHT, m_armStateMachine.setTargetArmStateCommand(ArmState.BACK, CargoType.CUBE))), 
-      () -> dPadInput);
-
-    final SelectCommand shooterSelectCommand = new SelectCommand(
-      Map.ofEntries(
-        Map.entry(DPAD.UP, m_shooterStateMachine.setShooterStateCommand(ShooterState.HOLD)),
-        Map.entry(DPAD.DOWN, m_shooterStateMachine.setShooterStateCommand(ShooterState.RETRACT)),
-        Map.entry(DPAD.LEFT, m_shooterStateMachine.setShooterStateCommand(ShooterState.MANUAL)),
-        Map.entry(DPAD.RIGHT, m_shooterStateMachine.setShooterStateCommand(ShooterState.DYNAMIC))),
-      () -> dPadInput); 
-
-    final SelectCommand armSelectCommand = new SelectCommand(
-        Map.ofEntries(
-          Map.entry(CargoType.CONE, coneArmSelectCommand),
-          Map.entry(CargoType.CUBE, cubeArmSelectCommand)
-        ), 
-        () -> getCargoType()
-    );
-    
-    return new SelectCommand(
-      Map.ofEntries(
-        Map.entry(ScoreMode.ARM, armSelectCommand),
-        Map.entry(ScoreMode.SHOOTER, shooterSelectCommand)), 
-      () -> getScoreMode());
+    return new InstantCommand(() -> applySubsystemState(dPadInput));
+  }
+
+  // dispatches straight to the state machines, which schedule their prebuilt transition commands
+  private void applySubsystemState(DPAD dPadInput) {
+    if (getScoreMode() == ScoreMode.SHOOTER) {
+      switch (dPadInput) {
+        case UP: m_shooterStateMachine.setShooterState(ShooterState.HOLD); break;
+        case DOWN: m_shooterStateMachine.setShooterState(ShooterState.RETRACT); break;
+        case LEFT: m_shooterStateMachine.setShooterState(ShooterState.MANUAL); break;
+        case RIGHT: m_shooterStateMachine.setShooterState(ShooterState.DYNAMIC); break;
+      }
+    } else {
+      switch (dPadInput) {
+        case UP: m_armStateMachine.setTargetArmState(ArmState.STOW, getCargoType()); break;
+        case DOWN: m_armStateMachine.setTargetArmState(ArmState.TRANSFER, getCargoType()); break;
+        case LEFT: m_armStateMachine.setTargetArmState(ArmState.FRONT, getCargoType()); break;
+        case RIGHT: m_armStateMachine.setTargetArmState(ArmState.BACK, getCargoType()); break;
+      }
+    }
   }
 
   //Score Level
   public Command setScoreLevelCommand(BUTTON buttonInput) {
-    final SelectCommand armSelectCommand = new SelectCommand(
-        Map.ofEntries(
-          Map.entry(BUTTON.Y, m_armStateMachine.setArmScoreLevelCommand(ArmScoreLevel.HIGH)),
-          Map.entry(BUTTON.B, m_armStateMachine.setArmScoreLevelCommand(ArmScoreLevel.MIDDLE)),
-          Map.entry(BUTTON.A, m_armStateMachine.setArmScoreLevelCommand(ArmScoreLevel.INTAKE)),
-          Map.entry(BUTTON.X, m_armStateMachine.setArmScoreLevelCommand(ArmScoreLevel.LOW))
-          ), 
-        () -> buttonInput);
-
-    final SelectCommand shooterSelectCommand = new SelectCommand(
-      Map.ofEntries(
-        Map.entry(BUTTON.Y, m_shooterStateMachine.setShooterScoreLevelCommand(ShooterScoreLevel.HIGH)),
-        Map.entry(BUTTON.B, m_shooterStateMachine.setShooterScoreLevelCommand(ShooterScoreLevel.MIDDLE)),
-        Map.entry(BUTTON.A, m_shooterStateMachine.setShooterScoreLevelCommand(ShooterScoreLevel.LOW)),
-        Map.entry(BUTTON.X, m_shooterStateMachine.setShooterScoreLevelCommand(ShooterScoreLevel.INTAKE))
-        ),
-      () -> buttonInput);
-
-    return new SelectCommand(
-      Map.ofEntries(
-        Map.entry(ScoreMode.ARM, armSelectCommand),
-        Map.entry(ScoreMode.SHOOTER, shooterSelectCommand)), 
-      () -> getScoreMode());
+    return new InstantCommand(() -> applyScoreLevel(buttonInput));
+  }
+
+  private void applyScoreLevel(BUTTON buttonInput) {
+    if (getScoreMode() == ScoreMode.SHOOTER) {
+      switch (buttonInput) {
+        case Y: m_shooterStateMachine.setShooterScoreLevel(ShooterScoreLevel.HIGH); break;
+        case B: m_shooterStateMachine.setShooterScoreLevel(ShooterScoreLevel.MIDDLE); break;
+        case A: m_shooterStateMachine.setShooterScoreLevel(ShooterScoreLevel.LOW); break;
+        case X: m_shooterStateMachine.setShooterScoreLevel(ShooterScoreLevel.INTAKE); break;
+      }
+    } else {
+      switch (buttonInput) {
+        case Y: m_armStateMachine.setArmScoreLevel(ArmScoreLevel.HIGH); break;
+        case B: m_armStateMachine.setArmScoreLevel(ArmScoreLevel.MIDDLE); break;
+        case A: m_armStateMachine.setArmScoreLevel(ArmScoreLevel.INTAKE); break;
+        case X: m_armStateMachine.setArmScoreLevel(ArmScoreLevel.LOW); break;
+      }
+    }
   }
 
   //Cargo type
@@ -207,23 +244,20 @@ public class Superstructure {
     return this.cargoType;
   }
 
+  /** Whether a cube has been acquired since the kicker last shot. */
+  public boolean hasCube() {
+    return m_eventBus.getLastPublishedTimestamp(MechanismEvent.CUBE_ACQUIRED)
+      > m_eventBus.getLastPublishedTimestamp(MechanismEvent.KICKER_OUTTAKING);
+  }
+
+  /** Whether the shooter has finished moving and is at its pivot and flywheel setpoints. */
+  public boolean isShooterReady() {
+    return !m_shooterStateMachine.isTransitioning() && m_shooter.atPivotSetpoint() && m_shooter.atVelocitySetpoint();
+  }
+
   //Score Command
   public Command ScoreCommand() {
-    final SelectCommand armScore = new SelectCommand(
-      Map.ofEntries(
-        Map.entry(CargoType.CONE, m_claw.scoreCone()),
-        Map.entry(CargoType.CUBE, m_claw.scoreCube())
-      ), 
-      () -> getCargoType()
-    );
-
-    return new SelectCommand(
-      Map.ofEntries(
-        Map.entry(ScoreMode.ARM, armScore),
-        Map.entry(ScoreMode.SHOOTER, m_shooter.setKickerOuttakeCommand(ShooterConstants.kKickSpeed)) //TODO SHOOTER SCORE
-      ), 
-      () -> getScoreMode()
-    );
+    return new ProxyCommand(() -> getCachedCommand(getCacheIndex(ScoreAction.SCORE, getScoreMode(), getCargoType())));
   }
 
   //INTAKE BINDINGS
@@ -248,21 +282,14 @@ public class Superstructure {
   }
 
   public Command getAlign() {
-    final SelectCommand armAlign = new SelectCommand(
-      Map.ofEntries(
-        Map.entry(CargoType.CONE, new AlignToCone(m_drivetrain, m_limelight)), // align to cone
-        Map.entry(CargoType.CUBE, new AlignToCube(m_drivetrain, m_limelight)) //align to cube
-      ), 
-      () -> getCargoType()
-    );
+    return new ProxyCommand(() -> getCachedCommand(getCacheIndex(ScoreAction.ALIGN, getScoreMode(), getCargoType())));
+  }
 
-    return new SelectCommand(
-      Map.ofEntries(
-        Map.entry(ScoreMode.ARM, armAlign),
-        Map.entry(ScoreMode.SHOOTER, new TurnToAngle(m_drivetrain, 180))
-      ), 
-      () -> getScoreMode()
-    );
+  /** Drives to the nearest node for the cargo from anywhere on the field, then aligns on it. */
+  public Command getDriveToNodeAndAlign() {
+    return new DriveToNode(m_drivetrain, this::getCargoType)
+      .andThen(getAlign())
+      .unless(() -> getScoreMode() != ScoreMode.ARM);
   }
 
   public Command scorePreloadedCone(double waitTime) { // for auto use only 3.5 good
@@ -272,7 +299,7 @@ public class Superstructure {
 			setCargoTypeCommand(CargoType.CONE),
 			setScoreLevelCommand(BUTTON.Y),
 			setSubsystemState(DPAD.RIGHT),
-			new WaitCommand(waitTime).raceWith(new AlignToCone(m_drivetrain, m_limelight)),
+			new WaitCommand(waitTime).raceWith(new AlignToCone(m_drivetrain, m_vision)),
 			m_claw.scoreCone()
     );
   }
@@ -285,30 +312,36 @@ public class Superstructure {
     );
   }
 
-  public void AutomationLogic() {
-    if (scoreMode == ScoreMode.ARM) {
-      if (m_claw.getClawState() == ClawState.OUTTAKING) {
-        m_led.set(getCargoType() == CargoType.CONE ? LEDConstants.kYellow : LEDConstants.kPurple);
-      }
-      if (m_claw.isCurrentSpikeDetected()) {
-        m_led.setGreen();
-      }
-    } else if (scoreMode == ScoreMode.SHOOTER) {
-      if (m_shooter.isCubeDetected() &&
-      m_shooterStateMachine.getShooterScoreLevel() == ShooterScoreLevel.INTAKE &&
-      m_shooterStateMachine.getShooterState() == ShooterState.MANUAL) { //auto intake
-        m_led.setGreen();
-        setSubsystemState(DPAD.UP).schedule();
-        m_shooter.setKickerIntake(ShooterConstants.kKickerHoldMotorSpeed);
-      }
-      if (m_shooter.getKickerState() == KickerState.OUTTAKING) {
-        m_led.setRed();
-      }
+  //Automation reactions, run when a mechanism publishes an event
+  private void configureEventReactions() {
+    m_eventBus.subscribe(MechanismEvent.CLAW_OUTTAKING, () -> {
+      if (scoreMode == ScoreMode.ARM) m_led.set(getCargoType() == CargoType.CONE ? LEDConstants.kYellow : LEDConstants.kPurple);
+    });
+
+    m_eventBus.subscribe(MechanismEvent.CONE_ACQUIRED, () -> {
+      if (scoreMode == ScoreMode.ARM) m_led.setGreen();
+    });
+
+    m_eventBus.subscribe(MechanismEvent.CUBE_ACQUIRED, this::holdCubeIfIntaking);
+
+    m_eventBus.subscribe(MechanismEvent.KICKER_OUTTAKING, () -> {
+      if (scoreMode == ScoreMode.SHOOTER) m_led.setRed();
+    });
+  }
+
+  private void holdCubeIfIntaking() {
+    if (scoreMode == ScoreMode.SHOOTER &&
+    m_shooterStateMachine.getShooterScoreLevel() == ShooterScoreLevel.INTAKE &&
+    m_shooterStateMachine.getShooterState() == ShooterState.MANUAL) { //auto intake
+      m_led.setGreen();
+      holdShooterCommand.schedule();
+      m_shooter.setKickerIntake(ShooterConstants.kKickerHoldMotorSpeed);
     }
   }
 
   public void periodic() {
-    AutomationLogic();
+    // the cube may have been picked up before the shooter was set to intake, so it is held as soon as it is
+    if (hasCube()) holdCubeIfIntaking();
 
     SmartDashboard.putString("Score Mode", scoreMode.toString());
     SmartDashboard.putString("Cargo Type", cargoType.toString());
@@ -316,5 +349,6 @@ public class Superstructure {
     m_arm.updateTelemetry();
     m_armStateMachine.updateTelemetry();
     m_shooterStateMachine.updateTelemetry();
+    superstructureCommandCache.updateTelemetry();
   }
 }
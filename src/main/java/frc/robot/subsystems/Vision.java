@@ -0,0 +1,237 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import java.util.List;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.InstantCommand;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.Constants.FieldConstants;
+import frc.robot.Constants.LimelightConstants;
+import frc.robot.subsystems.Drive.DriveSubsystem;
+import frc.robot.utils.AprilTagFieldMap;
+import frc.robot.utils.MultiTagPoseSolver;
+import frc.robot.utils.PipelineScheduler.Priority;
+import frc.robot.utils.LimelightClient.Snapshot;
+
+/**
+ * Runs every Limelight on the robot and decides which one to use.
+ *
+ * <p>Each camera keeps its own mounting, pipeline and latest frame. Vision holds a standing low
+ * priority request for the AprilTag pipeline on every camera whose mount has been measured, so
+ * those cameras localize whenever no command needs them and in shared slots when one does. Every
+ * loop the pose estimate from each of them that sees a tag is fused into the drivetrain pose
+ * estimator, trusted less the smaller the tag appears. The pose is taken with the alliance's
+ * origin, the frame PathPlanner puts odometry in, and while enabled a pose too far from the current
+ * estimate is dropped. Before that the pose is checked against one solved on the RIO from the field
+ * map, the angles to each tag in the frame and the gyro heading, and rejected if the solve fails or
+ * the two disagree. Targeting commands ask for the best camera for their task: the one among the
+ * cameras that can do the task that sees a target in the right pipeline, with the largest one
+ * winning, or the task's default camera when nothing is seen.
+ */
+public class Vision extends SubsystemBase {
+  private final DriveSubsystem m_drivetrain;
+
+  private final Limelight m_backLimelight = new Limelight(
+    LimelightConstants.kBackLimelightName,
+    LimelightConstants.kBackLimelightPosition,
+    LimelightConstants.kBackLimelightHeightInches,
+    LimelightConstants.kBackLimelightMountingAngleDegrees,
+    LimelightConstants.kBackLimelightYawRadians);
+
+  private final Limelight m_frontLimelight = new Limelight(
+    LimelightConstants.kFrontLimelightName,
+    LimelightConstants.kFrontLimelightPosition,
+    LimelightConstants.kFrontLimelightHeightInches,
+    LimelightConstants.kFrontLimelightMountingAngleDegrees,
+    LimelightConstants.kFrontLimelightYawRadians);
+
+  private final List<Limelight> m_cameras = List.of(m_backLimelight, m_frontLimelight);
+  private final List<Limelight> m_localizingCameras = LimelightConstants.kFrontLimelightMountMeasured
+    ? m_cameras
+    : List.of(m_backLimelight);
+  private final long[] m_lastPoseSequence = new long[m_localizingCameras.size()];
+  private int m_acceptedPoseCount = 0;
+  private int m_rejectedPoseCount = 0;
+  private int m_jumpRejectedCount = 0;
+  private int m_crossCheckRejectedCount = 0;
+
+  private final AprilTagFieldMap m_fieldMap =
+    AprilTagFieldMap.load(FieldConstants.kFieldLengthMeters, FieldConstants.kFieldWidthMeters);
+  private final MultiTagPoseSolver m_poseSolver = new MultiTagPoseSolver(
+    m_fieldMap,
+    LimelightConstants.kSolverBearingStdDevRadians,
+    LimelightConstants.kSolverRangeStdDevFraction,
+    LimelightConstants.kSolverHeadingStdDevRadians,
+    LimelightConstants.kSolverMaxIterations);
+
+  /** What a camera is being used for, and which cameras can do it. The first camera is the default. */
+  public enum VisionTask {
+    /** Retroreflective tape for cone scoring, the arm scores off the back. */
+    CONE_ALIGN(false, 0),
+    /** Grid AprilTags for cube scoring with the arm. */
+    CUBE_ALIGN(true, 0),
+    /**
+     * Grid AprilTags for the shooter, which aims from the measured bearing with either camera. The
+     * front camera is left out until its mount is measured, like for localizing.
+     */
+    SHOOT(true, LimelightConstants.kFrontLimelightMountMeasured ? new int[] {0, 1} : new int[] {0});
+
+    private final boolean m_aprilTag;
+    private final int[] m_cameraIndices;
+
+    VisionTask(boolean aprilTag, int... cameraIndices) {
+      m_aprilTag = aprilTag;
+      m_cameraIndices = cameraIndices;
+    }
+  }
+
+  /** Creates a new Vision. */
+  public Vision(DriveSubsystem m_drivetrain) {
+    this.m_drivetrain = m_drivetrain;
+    for (Limelight camera : m_localizingCameras) {
+      camera.requestPipeline(this, LimelightConstants.kAprilTagPipeline, Priority.LOCALIZE);
+    }
+  }
+
+  public Limelight getBackLimelight() {
+    return m_backLimelight;
+  }
+
+  public Limelight getFrontLimelight() {
+    return m_frontLimelight;
+  }
+
+  public List<Limelight> getCameras() {
+    return m_cameras;
+  }
+
+  /**
+   * Returns the camera to use for a task.
+   *
+   * @param task The task.
+   * @return The candidate camera seeing the largest target in the task's pipeline, or the task's
+   *     default camera if none does.
+   */
+  public Limelight getBestCamera(VisionTask task) {
+    Limelight best = m_cameras.get(task.m_cameraIndices[0]);
+    double bestArea = 0;
+    for (int index : task.m_cameraIndices) {
+      Limelight camera = m_cameras.get(index);
+      Snapshot frame = camera.getSnapshot();
+      if (Limelight.isAprilTagPipeline(frame.pipelineIndex) == task.m_aprilTag
+          && frame.hasTarget
+          && frame.getAgeSeconds() < LimelightConstants.kMaxFrameAgeSeconds
+          && frame.ta > bestArea) {
+        best = camera;
+        bestArea = frame.ta;
+      }
+    }
+    return best;
+  }
+
+  /** Every camera that can do the task. */
+  public Limelight[] getCameras(VisionTask task) {
+    Limelight[] cameras = new Limelight[task.m_cameraIndices.length];
+    for (int i = 0; i < cameras.length; i++) cameras[i] = m_cameras.get(task.m_cameraIndices[i]);
+    return cameras;
+  }
+
+  public void setLED(boolean lightOn) {
+    for (Limelight camera : m_cameras) camera.setLED(lightOn);
+  }
+
+  public Command setLEDCommand(boolean lightOn) {
+    return new InstantCommand(() -> setLED(lightOn));
+  }
+
+  // fuses each new pose estimate, since the estimator weighs and time-aligns them itself
+  private void updatePoseEstimates() {
+    for (int i = 0; i < m_localizingCameras.size(); i++) {
+      Limelight camera = m_localizingCameras.get(i);
+      Snapshot frame = camera.getSnapshot();
+      if (frame.sequence == m_lastPoseSequence[i] || !frame.hasBotPose()) continue;
+      if (!camera.isFrameFrom(frame, LimelightConstants.kAprilTagPipeline)) continue;
+      m_lastPoseSequence[i] = frame.sequence;
+
+      Pose2d pose = frame.getBotPose(DriverStation.getAlliance());
+      if (pose == null
+          || frame.getAgeSeconds() > LimelightConstants.kMaxFrameAgeSeconds
+          || frame.ta <= 0
+          || !isOnField(pose)) {
+        m_rejectedPoseCount++;
+        continue;
+      }
+
+      // while disabled the robot is being placed, so any pose is let through to seed the estimate
+      if (!DriverStation.isDisabled()
+          && pose.getTranslation().getDistance(m_drivetrain.getPose().getTranslation())
+            > LimelightConstants.kVisionMaxPoseJumpMeters) {
+        m_jumpRejectedCount++;
+        continue;
+      }
+
+      if (!isConfirmedBySolver(camera, frame)) {
+        m_crossCheckRejectedCount++;
+        continue;
+      }
+
+      double xyStdDev = LimelightConstants.kVisionXYStdDevMeters
+        * Math.sqrt(LimelightConstants.kVisionReferenceTargetArea / frame.ta);
+      m_drivetrain.addVisionMeasurement(
+        pose,
+        frame.timestampSeconds,
+        VecBuilder.fill(xyStdDev, xyStdDev, LimelightConstants.kVisionThetaStdDevRadians));
+      m_acceptedPoseCount++;
+    }
+  }
+
+  // a pose the solver cannot confirm is rejected. Both poses are in the field map's blue frame. The
+  // solve starts at the Limelight's position but takes its heading prior from the drive estimate,
+  // which follows the gyro, so a single tag cannot confirm a pose with a flipped heading.
+  private boolean isConfirmedBySolver(Limelight camera, Snapshot frame) {
+    Rotation2d heading = m_drivetrain.getPose().getRotation();
+    if (DriverStation.getAlliance() == Alliance.Red) heading = heading.plus(Rotation2d.fromDegrees(180));
+    boolean solved = m_poseSolver.solve(
+      frame,
+      camera.getPosition(),
+      camera.getHeightMeters(),
+      camera.getMountingAngleRadians(),
+      camera.getYawRadians(),
+      new Pose2d(frame.botPose.getTranslation(), heading));
+    SmartDashboard.putNumber("Vision Solve Time us", m_poseSolver.getSolveMicros());
+    SmartDashboard.putNumber(camera.getName() + " json parse us", camera.getParseMicros());
+    if (!solved || m_poseSolver.getRmsError() > LimelightConstants.kSolverMaxRmsError) return false;
+
+    double disagreement = m_poseSolver.getPose().getTranslation().getDistance(frame.botPose.getTranslation());
+    SmartDashboard.putNumber("Vision Solver Disagreement", disagreement);
+    return disagreement < LimelightConstants.kPoseCrossCheckToleranceMeters;
+  }
+
+  private static boolean isOnField(Pose2d pose) {
+    return pose.getX() == MathUtil.clamp(pose.getX(), 0, FieldConstants.kFieldLengthMeters)
+      && pose.getY() == MathUtil.clamp(pose.getY(), 0, FieldConstants.kFieldWidthMeters);
+  }
+
+  @Override
+  public void periodic() {
+    updatePoseEstimates();
+
+    SmartDashboard.putString("Vision Shoot Camera", getBestCamera(VisionTask.SHOOT).getName());
+    SmartDashboard.putNumber("Vision Poses Accepted", m_acceptedPoseCount);
+    SmartDashboard.putNumber("Vision Poses Rejected", m_rejectedPoseCount);
+    SmartDashboard.putNumber("Vision Poses Too Far", m_jumpRejectedCount);
+    SmartDashboard.putNumber("Vision Poses Failed Cross Check", m_crossCheckRejectedCount);
+    SmartDashboard.putNumber("Vision Field Map Tags", m_fieldMap.getTagCount());
+  }
+}
@@ -0,0 +1,85 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.pathplanner.lib.PathConstraints;
+import com.pathplanner.lib.PathPlanner;
+import com.pathplanner.lib.PathPlannerTrajectory;
+
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+
+/**
+ * Path groups loaded once with both alliance variants, so picking the alliance when auto starts
+ * costs nothing.
+ *
+ * <p>PathPlanner can transform a path for the red alliance as it starts following it, but that
+ * builds a whole new trajectory every time a path in the auto starts. Here each group is loaded and
+ * transformed with the same PathPlanner transform when the auto is built, and kept in unmodifiable
+ * lists. The autos keep using the blue group, and the auto builder swaps in each path's red twin
+ * with {@link #forAlliance(PathPlannerTrajectory, Alliance)} when it runs.
+ */
+public final class AlliancePaths {
+  private static final Map<String, List<PathPlannerTrajectory>> kBlueGroups = new HashMap<>();
+  private static final Map<PathPlannerTrajectory, PathPlannerTrajectory> kRedTwins = new IdentityHashMap<>();
+
+  private AlliancePaths() {}
+
+  /**
+   * Loads a path group and its red alliance variant, or returns the group if it was already loaded
+   * with the same constraints.
+   *
+   * @param name The path group's file name, without the extension.
+   * @param constraint Constraints for the first path, and the rest if no more are given.
+   * @param constraints Constraints for the following paths.
+   * @return The blue alliance group, unmodifiable.
+   */
+  public static synchronized List<PathPlannerTrajectory> loadPathGroup(
+      String name, PathConstraints constraint, PathConstraints... constraints) {
+    StringBuilder key = new StringBuilder(name);
+    key.append(' ').append(constraint.maxVelocity).append('/').append(constraint.maxAcceleration);
+    for (PathConstraints c : constraints) key.append(' ').append(c.maxVelocity).append('/').append(c.maxAcceleration);
+
+    List<PathPlannerTrajectory> blue = kBlueGroups.get(key.toString());
+    if (blue != null) return blue;
+
+    blue = Collections.unmodifiableList(new ArrayList<>(PathPlanner.loadPathGroup(name, constraint, constraints)));
+    for (PathPlannerTrajectory trajectory : blue) {
+      kRedTwins.put(trajectory, PathPlannerTrajectory.transformTrajectoryForAlliance(trajectory, Alliance.Red));
+    }
+    kBlueGroups.put(key.toString(), blue);
+    return blue;
+  }
+
+  /**
+   * Loads a path group with one constraint per path, the last one applying to any further paths.
+   *
+   * @param name The path group's file name, without the extension.
+   * @param constraints Constraints for each path, at least one.
+   * @return The blue alliance group, unmodifiable.
+   */
+  public static List<PathPlannerTrajectory> loadPathGroup(String name, PathConstraints[] constraints) {
+    return loadPathGroup(name, constraints[0], Arrays.copyOfRange(constraints, 1, constraints.length));
+  }
+
+  /**
+   * Returns a loaded path as driven by an alliance.
+   *
+   * @param trajectory A path from a group returned by {@link #loadPathGroup}.
+   * @param alliance The alliance.
+   * @return The red variant for the red alliance, otherwise the path itself.
+   */
+  public static synchronized PathPlannerTrajectory forAlliance(PathPlannerTrajectory trajectory, Alliance alliance) {
+    if (alliance != Alliance.Red) return trajectory;
+    return kRedTwins.getOrDefault(trajectory, trajectory);
+  }
+}
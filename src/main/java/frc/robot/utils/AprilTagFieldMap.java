@@ -0,0 +1,138 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+
+/**
+ * AprilTag positions read from the Limelight .fmap field map.
+ *
+ * <p>The .fmap stores each tag as a row-major 4x4 transform with the origin at the center of the
+ * field. The map is parsed once into primitive arrays, with positions moved to the blue alliance
+ * origin used by odometry, so lookups in the robot loop allocate nothing.
+ */
+public class AprilTagFieldMap {
+  /** Where the map is, relative to the deploy directory on the robot and the project in simulation. */
+  public static final String kPath = "limelight/2023AprilTagMap.fmap";
+
+  private final int[] m_ids;
+  private final double[] m_transforms;
+  private final double[] m_x;
+  private final double[] m_y;
+  private final double[] m_z;
+  private final double[] m_yaw;
+  private final double[] m_size;
+
+  private AprilTagFieldMap(int count) {
+    m_ids = new int[count];
+    m_transforms = new double[16 * count];
+    m_x = new double[count];
+    m_y = new double[count];
+    m_z = new double[count];
+    m_yaw = new double[count];
+    m_size = new double[count];
+  }
+
+  /**
+   * Loads the deployed field map, or the project copy in simulation.
+   *
+   * @param fieldLengthMeters Length of the field, to move the origin to the blue alliance wall.
+   * @param fieldWidthMeters Width of the field.
+   * @return The map, or an empty map that no tag is found in if it could not be read.
+   */
+  public static AprilTagFieldMap load(double fieldLengthMeters, double fieldWidthMeters) {
+    File file = new File(Filesystem.getDeployDirectory(), kPath);
+    if (!file.exists()) file = new File(kPath);
+    try {
+      return parse(new ObjectMapper().readTree(file), fieldLengthMeters, fieldWidthMeters);
+    } catch (IOException | RuntimeException e) {
+      DriverStation.reportError(
+        "AprilTag field map not loaded from " + file + ", vision poses cannot be checked and are rejected: " + e, false);
+      return new AprilTagFieldMap(0);
+    }
+  }
+
+  static AprilTagFieldMap parse(JsonNode root, double fieldLengthMeters, double fieldWidthMeters) {
+    JsonNode fiducials = root.get("fiducials");
+    AprilTagFieldMap map = new AprilTagFieldMap(fiducials.size());
+    for (int i = 0; i < fiducials.size(); i++) {
+      JsonNode fiducial = fiducials.get(i);
+      JsonNode transform = fiducial.get("transform");
+      if (transform.size() != 16) throw new IllegalArgumentException("tag transform is not 4x4");
+      for (int j = 0; j < 16; j++) {
+        map.m_transforms[16 * i + j] = transform.get(j).asDouble();
+      }
+
+      map.m_ids[i] = fiducial.get("id").asInt();
+      map.m_size[i] = fiducial.get("size").asDouble() / 1000.0; // mm
+      map.m_x[i] = map.m_transforms[16 * i + 3] + fieldLengthMeters / 2;
+      map.m_y[i] = map.m_transforms[16 * i + 7] + fieldWidthMeters / 2;
+      map.m_z[i] = map.m_transforms[16 * i + 11];
+      // the tag's x axis, the first column of the rotation
+      map.m_yaw[i] = Math.atan2(map.m_transforms[16 * i + 4], map.m_transforms[16 * i]);
+    }
+    return map;
+  }
+
+  public int getTagCount() {
+    return m_ids.length;
+  }
+
+  /** Index of a tag in the arrays, or -1 if the map does not have it. */
+  public int indexOf(int id) {
+    for (int i = 0; i < m_ids.length; i++) {
+      if (m_ids[i] == id) return i;
+    }
+    return -1;
+  }
+
+  public int getId(int index) {
+    return m_ids[index];
+  }
+
+  /** Tag center x from the blue alliance wall in meters. */
+  public double getX(int index) {
+    return m_x[index];
+  }
+
+  /** Tag center y from the right side of the blue alliance wall in meters. */
+  public double getY(int index) {
+    return m_y[index];
+  }
+
+  /** Tag center height in meters. */
+  public double getZ(int index) {
+    return m_z[index];
+  }
+
+  /** Direction the tag's x axis points on the field, counterclockwise from the field x axis. */
+  public double getYaw(int index) {
+    return m_yaw[index];
+  }
+
+  /** Tag edge length in meters. */
+  public double getSize(int index) {
+    return m_size[index];
+  }
+
+  /**
+   * The raw .fmap transform of a tag.
+   *
+   * @param index The tag's index.
+   * @param row Row of the 4x4 transform.
+   * @param column Column of the 4x4 transform.
+   * @return The element, with translation in field-centered meters.
+   */
+  public double getTransform(int index, int row, int column) {
+    return m_transforms[16 * index + 4 * row + column];
+  }
+}
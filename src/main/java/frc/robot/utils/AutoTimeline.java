@@ -0,0 +1,188 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Records when each part of an auto ran, to see where its 15 seconds go.
+ *
+ * <p>Steps, path segments, stop events and dependency waits all hold the auto until they finish,
+ * and they nest: a path segment runs inside the step that follows the path. Background entries are
+ * mechanism commands that ran alongside the path. Before they were detached the path held at a stop
+ * event until its commands finished, so the total duration of those started at a stop is idle time
+ * the auto no longer has. Those started at a marker never held the path and are not counted.
+ *
+ * <p>The report draws every entry as a bar against the auto's start, then gives the critical path:
+ * each instant of the auto is charged to the innermost entry holding it at the time, so the times
+ * add up to the auto's length and show what the auto was actually waiting on.
+ */
+public class AutoTimeline {
+  /** How an entry related to the rest of the auto. */
+  public enum Kind {
+    /** A command in the auto's sequence. */
+    STEP('='),
+    /** Following one path of a path group, including its markers. */
+    PATH('#'),
+    /** The commands and wait at a stop point between paths. */
+    STOP('+'),
+    /** Held the path until a dependency was met. */
+    BLOCKED('!'),
+    /** Ran alongside the path. */
+    BACKGROUND('-');
+
+    private final char m_symbol;
+
+    Kind(char symbol) {
+      m_symbol = symbol;
+    }
+  }
+
+  private static final class Entry {
+    private final String m_name;
+    private final Kind m_kind;
+    private final double m_startSeconds;
+    private double m_endSeconds = Double.NaN;
+
+    private Entry(String name, Kind kind, double startSeconds) {
+      m_name = name;
+      m_kind = kind;
+      m_startSeconds = startSeconds;
+    }
+  }
+
+  // characters across the whole auto in the chart
+  private static final int kChartWidth = 60;
+
+  private final String m_name;
+  private final List<Entry> m_entries = new ArrayList<>();
+  private double m_startSeconds = 0;
+
+  /**
+   * Creates a new AutoTimeline.
+   *
+   * @param name The auto's name, for the report.
+   */
+  public AutoTimeline(String name) {
+    m_name = name;
+  }
+
+  /** Clears the entries and starts timing, at the start of the auto. */
+  public void start() {
+    m_entries.clear();
+    m_startSeconds = Timer.getFPGATimestamp();
+  }
+
+  /**
+   * Starts an entry.
+   *
+   * @param name The entry's name.
+   * @param kind How it relates to the rest of the auto.
+   * @return The entry, to pass to {@link #finish(int)}.
+   */
+  public int begin(String name, Kind kind) {
+    m_entries.add(new Entry(name, kind, Timer.getFPGATimestamp()));
+    return m_entries.size() - 1;
+  }
+
+  /** Ends an entry started with {@link #begin(String, Kind)}. */
+  public void finish(int entry) {
+    if (entry < m_entries.size()) m_entries.get(entry).m_endSeconds = Timer.getFPGATimestamp();
+  }
+
+  /** Logs the chart and critical path and publishes the totals, if anything was recorded. */
+  public void report() {
+    if (m_entries.isEmpty()) return;
+    double now = Timer.getFPGATimestamp();
+    double totalSeconds = Math.max(now - m_startSeconds, 1e-6);
+    double[] starts = new double[m_entries.size()];
+    double[] ends = new double[m_entries.size()];
+    double backgroundSeconds = 0;
+    double blockedSeconds = 0;
+
+    StringBuilder report = new StringBuilder(String.format("%s timeline, %.2f s%n", m_name, totalSeconds));
+    for (int i = 0; i < m_entries.size(); i++) {
+      Entry entry = m_entries.get(i);
+      starts[i] = entry.m_startSeconds - m_startSeconds;
+      ends[i] = (Double.isNaN(entry.m_endSeconds) ? now : entry.m_endSeconds) - m_startSeconds;
+      if (entry.m_kind == Kind.BLOCKED) blockedSeconds += ends[i] - starts[i];
+
+      char[] bar = new char[kChartWidth];
+      Arrays.fill(bar, ' ');
+      int first = (int) Math.min(kChartWidth - 1, Math.floor(starts[i] / totalSeconds * kChartWidth));
+      int last = (int) Math.min(kChartWidth - 1, Math.ceil(ends[i] / totalSeconds * kChartWidth) - 1);
+      for (int c = first; c <= Math.max(first, last); c++) bar[c] = entry.m_kind.m_symbol;
+      report.append(String.format("  |%s| %6.2f - %6.2f s  %-10s %s%s%n",
+        new String(bar), starts[i], ends[i], entry.m_kind, entry.m_name,
+        Double.isNaN(entry.m_endSeconds) ? " (still running)" : ""));
+    }
+
+    for (int i = 0; i < m_entries.size(); i++) {
+      if (m_entries.get(i).m_kind == Kind.BACKGROUND && isAtStop(i, starts, ends)) {
+        backgroundSeconds += ends[i] - starts[i];
+      }
+    }
+
+    report.append("  critical path\n");
+    double[] criticalSeconds = getCriticalSeconds(starts, ends, totalSeconds);
+    for (int i = 0; i < m_entries.size(); i++) {
+      if (criticalSeconds[i] <= 0) continue;
+      report.append(String.format("    %6.2f s  %5.1f%%  %-10s %s%n",
+        criticalSeconds[i], 100 * criticalSeconds[i] / totalSeconds, m_entries.get(i).m_kind, m_entries.get(i).m_name));
+    }
+    double untrackedSeconds = criticalSeconds[m_entries.size()];
+    report.append(String.format("    %6.2f s  %5.1f%%  untracked%n", untrackedSeconds, 100 * untrackedSeconds / totalSeconds));
+    report.append(String.format("  idle time removed %.2f s, blocked on dependencies %.2f s%n",
+      backgroundSeconds, blockedSeconds));
+    DataLogManager.log(report.toString());
+
+    SmartDashboard.putNumber("Auto Total Time", totalSeconds);
+    SmartDashboard.putNumber("Auto Untracked Time", untrackedSeconds);
+    SmartDashboard.putNumber("Auto Idle Time Removed", backgroundSeconds);
+    SmartDashboard.putNumber("Auto Blocked Time", blockedSeconds);
+  }
+
+  // whether an entry started while a stop event held the path
+  private boolean isAtStop(int entry, double[] starts, double[] ends) {
+    for (int i = 0; i < starts.length; i++) {
+      if (m_entries.get(i).m_kind == Kind.STOP && starts[i] <= starts[entry] && starts[entry] <= ends[i]) return true;
+    }
+    return false;
+  }
+
+  // time charged to each entry, with the time nothing held the auto in the extra last slot
+  private double[] getCriticalSeconds(double[] starts, double[] ends, double totalSeconds) {
+    double[] boundaries = new double[2 * starts.length + 2];
+    for (int i = 0; i < starts.length; i++) {
+      boundaries[2 * i] = starts[i];
+      boundaries[2 * i + 1] = ends[i];
+    }
+    boundaries[2 * starts.length] = 0;
+    boundaries[2 * starts.length + 1] = totalSeconds;
+    Arrays.sort(boundaries);
+
+    double[] criticalSeconds = new double[starts.length + 1];
+    for (int b = 0; b + 1 < boundaries.length; b++) {
+      double from = Math.max(0, boundaries[b]);
+      double to = Math.min(totalSeconds, boundaries[b + 1]);
+      if (to <= from) continue;
+
+      // nested entries start after the ones around them, so the latest start is the innermost
+      int holder = starts.length;
+      for (int i = 0; i < starts.length; i++) {
+        if (m_entries.get(i).m_kind == Kind.BACKGROUND || starts[i] > from || ends[i] < to) continue;
+        if (holder == starts.length || starts[i] >= starts[holder]) holder = i;
+      }
+      criticalSeconds[holder] += to - from;
+    }
+    return criticalSeconds;
+  }
+}
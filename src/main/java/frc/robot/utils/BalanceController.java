@@ -0,0 +1,149 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import frc.robot.Constants.BalanceConstants;
+import frc.robot.Constants.FieldConstants;
+
+/**
+ * Decides how fast to drive to balance on the charge station, from a {@link
+ * ChargeStationEstimator}.
+ *
+ * <p>The robot climbs towards the hinge, braking from its offset in odometry so it reaches the hinge
+ * at a creep, and creeps on if odometry is off. The station only tips once the robot is past the
+ * hinge by more than its friction holds, and by the time the gyro shows it tipping the robot is
+ * further past, so stopping there lets the station fall all the way to the other side. Instead, as
+ * soon as the station is predicted to be tipping, a lookahead before it gets there, the robot backs
+ * off by the distance it drove since the tip began, measured from its own speed so odometry error
+ * does not matter, and lets the station come level. It then waits for the station to settle, and if
+ * it settled off level it creeps uphill and backs off the same way.
+ */
+public class BalanceController {
+  /** What the controller is doing. */
+  public enum Phase {
+    /** Driving uphill to the hinge. */
+    CLIMB,
+    /** Holding still until the station stops moving. */
+    SETTLE,
+    /** Creeping uphill after settling off level. */
+    CORRECT,
+    /** Backing off after the station started tipping. */
+    BACK_OFF,
+    /** Holding still on a level station. */
+    BALANCED
+  }
+
+  private Phase m_phase = Phase.SETTLE;
+  private double m_uphill = 0;
+  private double m_settledSince = Double.NaN;
+  private double m_backOffRemainingMeters = 0;
+  private double m_lastTimestamp = Double.NaN;
+
+  /** Starts balancing, climbing if the station is tilted and settling if it is not. */
+  public void reset(ChargeStationEstimator estimator) {
+    double tilt = estimator.getTiltDegrees();
+    m_uphill = Math.signum(tilt);
+    m_settledSince = Double.NaN;
+    m_lastTimestamp = Double.NaN;
+    m_phase = Math.abs(tilt) > FieldConstants.kChargeStationLevelDegrees ? Phase.CLIMB : Phase.SETTLE;
+  }
+
+  /**
+   * Returns the speed to drive at. Call once per loop after updating the estimator.
+   *
+   * @param estimator The updated estimator.
+   * @param timestampSeconds Current time.
+   * @return Forward speed, 0 when the robot should hold still.
+   */
+  public double calculate(ChargeStationEstimator estimator, double timestampSeconds) {
+    double dt = Double.isNaN(m_lastTimestamp) ? 0 : timestampSeconds - m_lastTimestamp;
+    m_lastTimestamp = timestampSeconds;
+    double tilt = estimator.getTiltDegrees();
+    // uphill tilt a lookahead from now, it drops as the station tips back
+    double predictedUphillTilt = estimator.getPredictedTiltDegrees(BalanceConstants.kLookaheadSeconds) * m_uphill;
+    boolean tippingBack = -estimator.getTiltRateDegreesPerSecond() * m_uphill > BalanceConstants.kTippingRateDegreesPerSecond;
+
+    switch (m_phase) {
+      case CLIMB:
+        if (tippingBack && predictedUphillTilt < BalanceConstants.kTippingDegrees) {
+          return backOff(estimator);
+        }
+        return m_uphill * getClimbSpeed(estimator);
+
+      case CORRECT:
+        if (tippingBack && predictedUphillTilt < BalanceConstants.kTippingDegrees) {
+          return backOff(estimator);
+        }
+        return m_uphill * BalanceConstants.kCorrectSpeedMetersPerSecond;
+
+      case BACK_OFF:
+        // coasting uphill while stopping adds to the distance
+        m_backOffRemainingMeters += m_uphill * estimator.getVelocityMetersPerSecond() * dt;
+        if (m_backOffRemainingMeters <= 0) {
+          enter(Phase.SETTLE);
+          return 0;
+        }
+        return -m_uphill * BalanceConstants.kBackOffSpeedMetersPerSecond;
+
+      case SETTLE:
+        if (Math.abs(estimator.getTiltRateDegreesPerSecond()) > BalanceConstants.kSettledRateDegreesPerSecond) {
+          m_settledSince = Double.NaN;
+        } else if (Double.isNaN(m_settledSince)) {
+          m_settledSince = timestampSeconds;
+        } else if (timestampSeconds - m_settledSince >= BalanceConstants.kSettleSeconds) {
+          if (Math.abs(tilt) <= FieldConstants.kChargeStationLevelDegrees) {
+            enter(Phase.BALANCED);
+          } else {
+            m_uphill = Math.signum(tilt);
+            enter(Phase.CORRECT);
+          }
+        }
+        return 0;
+
+      case BALANCED:
+      default:
+        if (Math.abs(tilt) > BalanceConstants.kRebalanceDegrees) enter(Phase.SETTLE);
+        return 0;
+    }
+  }
+
+  // slows so the robot stops just short of the hinge, allowing for the drive's lag
+  private double getClimbSpeed(ChargeStationEstimator estimator) {
+    double offset = estimator.getOffsetMeters();
+    if (Double.isNaN(offset)) return BalanceConstants.kClimbSpeedMetersPerSecond;
+
+    double remaining = -offset * m_uphill
+      - BalanceConstants.kPivotLeadMeters
+      - Math.abs(estimator.getVelocityMetersPerSecond()) * BalanceConstants.kLookaheadSeconds;
+    double speed = Math.sqrt(2 * BalanceConstants.kBrakingMetersPerSecondSquared * Math.max(0, remaining));
+    return Math.max(BalanceConstants.kCreepSpeedMetersPerSecond, Math.min(BalanceConstants.kClimbSpeedMetersPerSecond, speed));
+  }
+
+  // the tip began about a detection lag ago, so the robot is that far past where it started
+  private double backOff(ChargeStationEstimator estimator) {
+    m_backOffRemainingMeters =
+      Math.abs(estimator.getVelocityMetersPerSecond()) * BalanceConstants.kBackOffSeconds + BalanceConstants.kBackOffMarginMeters;
+    enter(Phase.BACK_OFF);
+    return -m_uphill * BalanceConstants.kBackOffSpeedMetersPerSecond;
+  }
+
+  private void enter(Phase phase) {
+    m_phase = phase;
+    m_settledSince = Double.NaN;
+  }
+
+  public Phase getPhase() {
+    return m_phase;
+  }
+
+  /** Whether the robot should hold still, with the wheels locked. */
+  public boolean isHolding() {
+    return m_phase == Phase.SETTLE || m_phase == Phase.BALANCED;
+  }
+
+  public boolean isBalanced() {
+    return m_phase == Phase.BALANCED;
+  }
+}
@@ -0,0 +1,140 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+/**
+ * Kalman filter for the tilt of the charge station the robot is driving on, and where the robot is
+ * on it.
+ *
+ * <p>The gyro only measures the pitch angle, and differencing it loop to loop is too noisy to act
+ * on, so the filter estimates tilt and tilt rate together with a constant rate model driven by
+ * random angular acceleration. Everything is along the direction the robot faces: the tilt is
+ * positive when the end of the station in front of the robot is up, so uphill is the sign of the
+ * tilt.
+ *
+ * <p>The robot's offset from the station's hinge and its forward speed come from odometry and the
+ * measured chassis speeds, and are kept with the tilt so a controller can tell how far the
+ * robot is from the point where the station tips and how far it needs to stop.
+ */
+public class ChargeStationEstimator {
+  private final double m_measurementVariance;
+  private final double m_accelerationVariance;
+  private final double m_maxTiltDegrees;
+
+  private double m_tilt = 0;
+  private double m_tiltRate = 0;
+  private double m_p00 = 0;
+  private double m_p01 = 0;
+  private double m_p11 = 0;
+  private double m_lastTimestamp = Double.NaN;
+
+  private double m_offsetMeters = Double.NaN;
+  private double m_velocityMetersPerSecond = 0;
+
+  /**
+   * Creates a new ChargeStationEstimator.
+   *
+   * @param pitchStdDevDegrees Standard deviation of a pitch measurement.
+   * @param accelerationStdDevDegreesPerSecondSquared How much the tilt rate can change, as the
+   *     standard deviation of the angular acceleration.
+   * @param maxTiltDegrees Furthest the station can tilt either way.
+   */
+  public ChargeStationEstimator(
+      double pitchStdDevDegrees, double accelerationStdDevDegreesPerSecondSquared, double maxTiltDegrees) {
+    m_measurementVariance = pitchStdDevDegrees * pitchStdDevDegrees;
+    m_accelerationVariance =
+      accelerationStdDevDegreesPerSecondSquared * accelerationStdDevDegreesPerSecondSquared;
+    m_maxTiltDegrees = maxTiltDegrees;
+  }
+
+  /**
+   * Restarts the filter at a measured tilt, with the station assumed still.
+   *
+   * @param tiltDegrees Measured tilt.
+   * @param timestampSeconds When it was measured.
+   */
+  public void reset(double tiltDegrees, double timestampSeconds) {
+    m_tilt = tiltDegrees;
+    m_tiltRate = 0;
+    m_p00 = m_measurementVariance;
+    m_p01 = 0;
+    // a still station is far likelier than one already turning
+    m_p11 = 0;
+    m_lastTimestamp = timestampSeconds;
+  }
+
+  /**
+   * Predicts to the measurement time and corrects with the measured tilt. Call once per loop.
+   *
+   * @param tiltDegrees Measured tilt.
+   * @param offsetMeters Robot's distance from the hinge along its heading, NaN when it is not known
+   *     to be on the station.
+   * @param velocityMetersPerSecond Robot's measured forward speed.
+   * @param timestampSeconds When the tilt was measured.
+   */
+  public void update(double tiltDegrees, double offsetMeters, double velocityMetersPerSecond, double timestampSeconds) {
+    if (Double.isNaN(m_lastTimestamp)) reset(tiltDegrees, timestampSeconds);
+    m_offsetMeters = offsetMeters;
+    m_velocityMetersPerSecond = velocityMetersPerSecond;
+
+    double dt = Math.max(0, timestampSeconds - m_lastTimestamp);
+    m_lastTimestamp = timestampSeconds;
+
+    // predict with the rate held, P = F P F' + Q
+    m_tilt += m_tiltRate * dt;
+    double dt2 = dt * dt;
+    m_p00 += 2 * dt * m_p01 + dt2 * m_p11 + m_accelerationVariance * dt2 * dt2 / 4;
+    m_p01 += dt * m_p11 + m_accelerationVariance * dt2 * dt / 2;
+    m_p11 += m_accelerationVariance * dt2;
+
+    // correct with the tilt
+    double innovation = tiltDegrees - m_tilt;
+    double s = m_p00 + m_measurementVariance;
+    double k0 = m_p00 / s;
+    double k1 = m_p01 / s;
+    m_tilt += k0 * innovation;
+    m_tiltRate += k1 * innovation;
+    double p00 = m_p00;
+    double p01 = m_p01;
+    m_p00 -= k0 * p00;
+    m_p01 -= k0 * p01;
+    m_p11 -= k1 * p01;
+
+    // the station rests against its stops, so it cannot keep turning past them
+    if (Math.abs(m_tilt) >= m_maxTiltDegrees && m_tiltRate * m_tilt > 0) {
+      m_tilt = Math.copySign(m_maxTiltDegrees, m_tilt);
+      m_tiltRate = 0;
+    }
+  }
+
+  public double getTiltDegrees() {
+    return m_tilt;
+  }
+
+  public double getTiltRateDegreesPerSecond() {
+    return m_tiltRate;
+  }
+
+  /**
+   * Returns where the tilt will be after a delay if its rate holds, to act before the station gets
+   * there.
+   *
+   * @param lookaheadSeconds The delay.
+   * @return The predicted tilt, limited to the station's stops.
+   */
+  public double getPredictedTiltDegrees(double lookaheadSeconds) {
+    double predicted = m_tilt + m_tiltRate * lookaheadSeconds;
+    return Math.max(-m_maxTiltDegrees, Math.min(m_maxTiltDegrees, predicted));
+  }
+
+  /** Robot's distance from the hinge along its heading, NaN if it is not known to be on the station. */
+  public double getOffsetMeters() {
+    return m_offsetMeters;
+  }
+
+  public double getVelocityMetersPerSecond() {
+    return m_velocityMetersPerSecond;
+  }
+}
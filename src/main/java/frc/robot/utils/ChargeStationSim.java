@@ -0,0 +1,249 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Random;
+
+import frc.robot.Constants.BalanceConstants;
+import frc.robot.Constants.DriveConstants;
+import frc.robot.Constants.FieldConstants;
+
+/**
+ * Offline model of the robot balancing on the charge station, for tuning the balance controller
+ * repeatably.
+ *
+ * <p>The platform turns about its hinge against its own inertia and damping, held by friction until
+ * the robot's weight overcomes it, and stops against the ground at its full tilt. The robot's
+ * weight acts where it is along the platform, or at the platform's edge while it is on a ramp. The
+ * drive reaches commanded speeds after a loop of delay and limited by traction, and locks its
+ * wheels when holding. The gyro reading lags the platform and is noisy, and odometry can be off by
+ * a fixed amount.
+ *
+ * <p>Each scenario starts with the robot on the low ramp, driving in at the speed a path leaves it
+ * with. {@link BalanceController} and the old pitch PID, which stopped once the pitch was inside its
+ * tolerance and was then run again, are both run on it, and the report lists the time each took
+ * to balance for good and how often the station crossed level. Run it with the balanceSim gradle
+ * task, which writes the report to build/balance-sim.
+ */
+public final class ChargeStationSim {
+  private static final double kLoopSeconds = 0.02;
+  private static final double kPhysicsSeconds = 0.001;
+  private static final double kHorizonSeconds = 10.0;
+  private static final double kGravity = 9.81;
+
+  // platform, without the ramps that rest on the ground
+  private static final double kPlatformHalfDepthMeters = 0.61;
+  private static final double kStationHalfDepthMeters =
+    (FieldConstants.kChargeStationMaxXMeters - FieldConstants.kChargeStationMinXMeters) / 2;
+  private static final double kPlatformInertiaKgMetersSquared = 8.0;
+  private static final double kHingeDampingNewtonMeterSecondsPerRadian = 60.0;
+  private static final double kHingeFrictionNewtonMeters = 35.0;
+
+  private static final double kDriveAccelerationMetersPerSecondSquared = 3.0;
+  private static final double kGyroLagSeconds = 0.05;
+  private static final double kGyroNoiseDegrees = 0.3;
+
+  // old AutoBalance gains, on pitch in degrees and output as a fraction of max speed
+  private static final double kOldP = 0.006;
+  private static final double kOldD = 0.001;
+  private static final double kOldToleranceDegrees = 2.0;
+
+  private static final String kDefaultOutputDirectory = "build/balance-sim";
+
+  private static final double[] kEntrySpeeds = {0.5, 1.0, 1.5};
+  private static final double[] kOdometryErrors = {-0.15, 0, 0.15};
+
+  /** A run's outcome. */
+  private static final class Result {
+    private double m_balancedSeconds = Double.NaN;
+    private int m_levelCrossings = 0;
+  }
+
+  /** Station and robot, along the robot's heading with the tilt positive when the +x end is up. */
+  private static final class Model {
+    private double m_tilt;
+    private double m_tiltRate = 0;
+    private double m_position;
+    private double m_velocity;
+    private double m_commandedVelocity;
+    private boolean m_locked = false;
+    private double m_gyroTilt;
+
+    private Model(double position, double velocity) {
+      m_position = position;
+      m_velocity = velocity;
+      m_commandedVelocity = velocity;
+      // the station rests down on the side the robot drives onto
+      m_tilt = -Math.signum(position) * Math.toRadians(FieldConstants.kChargeStationMaxTiltDegrees);
+      m_gyroTilt = Math.toDegrees(m_tilt);
+    }
+
+    private void command(double velocity, boolean locked) {
+      m_commandedVelocity = velocity;
+      m_locked = locked;
+    }
+
+    private void step(double dt) {
+      double target = m_locked ? 0 : m_commandedVelocity;
+      double maxChange = kDriveAccelerationMetersPerSecondSquared * dt;
+      m_velocity += Math.max(-maxChange, Math.min(maxChange, target - m_velocity));
+      m_position += m_velocity * dt;
+
+      double arm = 0;
+      if (Math.abs(m_position) < kStationHalfDepthMeters) {
+        arm = Math.max(-kPlatformHalfDepthMeters, Math.min(kPlatformHalfDepthMeters, m_position));
+      }
+      double mass = DriveConstants.kRobotMassKg;
+      // weight on the +x side pushes that end down
+      double torque = -mass * kGravity * arm * Math.cos(m_tilt);
+      if (Math.abs(m_tiltRate) < 1e-3 && Math.abs(torque) < kHingeFrictionNewtonMeters) {
+        m_tiltRate = 0;
+      } else {
+        double friction = Math.copySign(kHingeFrictionNewtonMeters, m_tiltRate == 0 ? torque : m_tiltRate);
+        double acceleration = (torque - friction - kHingeDampingNewtonMeterSecondsPerRadian * m_tiltRate)
+          / (kPlatformInertiaKgMetersSquared + mass * arm * arm);
+        m_tiltRate += acceleration * dt;
+        m_tilt += m_tiltRate * dt;
+      }
+      double maxTilt = Math.toRadians(FieldConstants.kChargeStationMaxTiltDegrees);
+      if (Math.abs(m_tilt) > maxTilt) {
+        m_tilt = Math.copySign(maxTilt, m_tilt);
+        m_tiltRate = 0;
+      }
+
+      m_gyroTilt += (Math.toDegrees(m_tilt) - m_gyroTilt) * dt / kGyroLagSeconds;
+    }
+
+    private double getTiltDegrees() {
+      return Math.toDegrees(m_tilt);
+    }
+  }
+
+  private ChargeStationSim() {}
+
+  /**
+   * Runs every scenario with both controllers and writes the report.
+   *
+   * @param args The output directory, build/balance-sim if not given.
+   */
+  public static void main(String[] args) throws IOException {
+    File outputDirectory = new File(args.length > 0 ? args[0] : kDefaultOutputDirectory);
+    outputDirectory.mkdirs();
+
+    StringWriter buffer = new StringWriter();
+    PrintWriter report = new PrintWriter(buffer);
+    report.println("Charge station balance, time to balanced for good (level crossings)");
+    report.printf("%-8s %-8s %-10s %16s %16s%n", "side", "speed", "odom err", "old PID", "estimated");
+
+    double oldTotal = 0;
+    double newTotal = 0;
+    int oldFailures = 0;
+    int newFailures = 0;
+    for (double side : new double[] {1, -1}) {
+      for (double speed : kEntrySpeeds) {
+        for (double odometryError : kOdometryErrors) {
+          long seed = Double.hashCode(side * 100 + speed * 10 + odometryError);
+          Result old = simulateOld(side, speed, new Random(seed));
+          Result estimated = simulate(side, speed, odometryError, new Random(seed));
+          report.printf("%-8s %-8.1f %-10.2f %16s %16s%n",
+            side > 0 ? "+x" : "-x", speed, odometryError, format(old), format(estimated));
+
+          if (Double.isNaN(old.m_balancedSeconds)) oldFailures++;
+          else oldTotal += old.m_balancedSeconds;
+          if (Double.isNaN(estimated.m_balancedSeconds)) newFailures++;
+          else newTotal += estimated.m_balancedSeconds;
+        }
+      }
+    }
+    int runs = 2 * kEntrySpeeds.length * kOdometryErrors.length;
+    report.printf("mean over balanced runs: old PID %.2f s (%d failed), estimated %.2f s (%d failed)%n",
+      oldTotal / Math.max(1, runs - oldFailures), oldFailures,
+      newTotal / Math.max(1, runs - newFailures), newFailures);
+    report.flush();
+
+    try (PrintWriter file = new PrintWriter(new File(outputDirectory, "report.txt"))) {
+      file.print(buffer);
+    }
+  }
+
+  // side is where the robot starts, +1 for the +x ramp
+  private static Result simulate(double side, double speed, double odometryError, Random random) {
+    Model model = new Model(side * (kStationHalfDepthMeters - 0.1), -side * speed);
+    ChargeStationEstimator estimator = new ChargeStationEstimator(
+      BalanceConstants.kPitchStdDevDegrees,
+      BalanceConstants.kTiltAccelerationStdDevDegreesPerSecondSquared,
+      FieldConstants.kChargeStationMaxTiltDegrees);
+    BalanceController controller = new BalanceController();
+    Result result = new Result();
+
+    boolean started = false;
+    double previousCommand = model.m_velocity;
+    boolean previousLocked = false;
+    for (double t = 0; t < kHorizonSeconds; t += kLoopSeconds) {
+      double measured = model.m_gyroTilt + random.nextGaussian() * kGyroNoiseDegrees;
+      double odometry = model.m_position + odometryError;
+      double offset = Math.abs(odometry) < kStationHalfDepthMeters ? odometry : Double.NaN;
+      estimator.update(measured, offset, model.m_velocity, t);
+      if (!started) {
+        controller.reset(estimator);
+        started = true;
+      }
+      double command = controller.calculate(estimator, t);
+      boolean locked = controller.isHolding();
+
+      // the drive acts on the previous loop's command
+      model.command(previousCommand, previousLocked);
+      previousCommand = command;
+      previousLocked = locked;
+      step(model, result, t);
+    }
+    return result;
+  }
+
+  private static Result simulateOld(double side, double speed, Random random) {
+    Model model = new Model(side * (kStationHalfDepthMeters - 0.1), -side * speed);
+    Result result = new Result();
+
+    double previousError = Double.NaN;
+    double previousCommand = model.m_velocity;
+    for (double t = 0; t < kHorizonSeconds; t += kLoopSeconds) {
+      double error = model.m_gyroTilt + random.nextGaussian() * kGyroNoiseDegrees;
+      double derivative = Double.isNaN(previousError) ? 0 : (error - previousError) / kLoopSeconds;
+      previousError = error;
+      // stops inside the tolerance and is started again when the station leaves it
+      double command = Math.abs(error) < kOldToleranceDegrees
+        ? 0
+        : (kOldP * error + kOldD * derivative) * DriveConstants.kMaxSpeedMetersPerSecond;
+
+      model.command(previousCommand, false);
+      previousCommand = command;
+      step(model, result, t);
+    }
+    return result;
+  }
+
+  // advances a loop and records when the station became level for the rest of the run
+  private static void step(Model model, Result result, double t) {
+    double before = model.getTiltDegrees();
+    for (double s = 0; s < kLoopSeconds - 1e-9; s += kPhysicsSeconds) model.step(kPhysicsSeconds);
+    double after = model.getTiltDegrees();
+    if (Math.signum(before) != Math.signum(after) && Math.abs(before - after) > 1e-6) result.m_levelCrossings++;
+
+    boolean balanced = Math.abs(after) <= FieldConstants.kChargeStationLevelDegrees
+      && Math.abs(model.m_velocity) < 0.05;
+    if (!balanced) result.m_balancedSeconds = Double.NaN;
+    else if (Double.isNaN(result.m_balancedSeconds)) result.m_balancedSeconds = t + kLoopSeconds;
+  }
+
+  private static String format(Result result) {
+    return Double.isNaN(result.m_balancedSeconds)
+      ? String.format("never (%d)", result.m_levelCrossings)
+      : String.format("%.2f s (%d)", result.m_balancedSeconds, result.m_levelCrossings);
+  }
+}
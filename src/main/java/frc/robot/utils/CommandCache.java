@@ -0,0 +1,121 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.lang.management.ManagementFactory;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+
+/**
+ * Fixed-size table of commands that are built once at startup and rescheduled on every press.
+ *
+ * <p>Commands are stored by an integer index the owner computes from its enum ordinals. Once
+ * {@link #seal()} is called every further {@link #put(int, Command)} is counted as a runtime build,
+ * and {@link #beginPress()}/{@link #endPress()} measure how many commands were built and how many
+ * bytes the current thread allocated while handling one button press.
+ *
+ * <p>Cached commands must only ever be scheduled directly. WPILib does not allow a command that is
+ * part of a composition to be scheduled on its own or added to a second composition.
+ */
+public class CommandCache {
+  private static final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+  private static final boolean allocationTrackingSupported =
+    threadBean instanceof com.sun.management.ThreadMXBean
+    && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported();
+
+  private final Command[] m_commands;
+  private final String m_prebuiltKey;
+  private final String m_pressBuildsKey;
+  private final String m_pressBytesKey;
+
+  private boolean m_sealed = false;
+  private int m_prebuiltCount = 0;
+  private int m_runtimeBuildCount = 0;
+
+  private long m_pressStartBytes = 0;
+  private int m_pressStartBuilds = 0;
+  private long m_lastPressBytes = 0;
+  private int m_lastPressBuilds = 0;
+
+  /**
+   * Creates a new CommandCache.
+   *
+   * @param name Name used for dashboard keys.
+   * @param size Number of slots in the cache.
+   */
+  public CommandCache(String name, int size) {
+    m_commands = new Command[size];
+    m_prebuiltKey = name + " Commands Prebuilt";
+    m_pressBuildsKey = name + " Commands Built Per Press";
+    m_pressBytesKey = name + " Bytes Allocated Per Press";
+  }
+
+  /**
+   * Stores a command in the cache.
+   *
+   * @param index The slot to store it in.
+   * @param command The command.
+   */
+  public void put(int index, Command command) {
+    m_commands[index] = command;
+    if (m_sealed) {
+      m_runtimeBuildCount++;
+    } else {
+      m_prebuiltCount++;
+    }
+  }
+
+  /**
+   * Returns the cached command, or null if the slot was never built.
+   *
+   * @param index The slot to read.
+   * @return The cached command.
+   */
+  public Command get(int index) {
+    return m_commands[index];
+  }
+
+  /** Marks the end of startup. Commands stored after this are counted as runtime builds. */
+  public void seal() {
+    m_sealed = true;
+  }
+
+  /** Starts measuring one button press. */
+  public void beginPress() {
+    m_pressStartBytes = getCurrentThreadAllocatedBytes();
+    m_pressStartBuilds = m_runtimeBuildCount;
+  }
+
+  /** Finishes measuring one button press. */
+  public void endPress() {
+    m_lastPressBytes = getCurrentThreadAllocatedBytes() - m_pressStartBytes;
+    m_lastPressBuilds = m_runtimeBuildCount - m_pressStartBuilds;
+  }
+
+  public int getRuntimeBuildCount() {
+    return m_runtimeBuildCount;
+  }
+
+  public int getLastPressBuildCount() {
+    return m_lastPressBuilds;
+  }
+
+  /** Bytes allocated by the last measured press, or 0 if the JVM cannot measure it. */
+  public long getLastPressAllocatedBytes() {
+    return m_lastPressBytes;
+  }
+
+  public void updateTelemetry() {
+    SmartDashboard.putNumber(m_prebuiltKey, m_prebuiltCount);
+    SmartDashboard.putNumber(m_pressBuildsKey, m_lastPressBuilds);
+    SmartDashboard.putNumber(m_pressBytesKey, m_lastPressBytes);
+  }
+
+  private static long getCurrentThreadAllocatedBytes() {
+    if (!allocationTrackingSupported) return 0;
+    return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+}
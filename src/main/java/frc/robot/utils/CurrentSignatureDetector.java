@@ -0,0 +1,169 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+/**
+ * Detects a game piece from the current signature of an intake motor.
+ *
+ * <p>Each sample is run through a median filter to reject single-sample spikes, then a single-pole
+ * low pass filter. A piece is reported when the filtered current is over the threshold, or over a
+ * lower early threshold while still rising quickly, for a number of consecutive samples. Samples
+ * right after the motor starts are ignored to skip the inrush spike.
+ *
+ * <p>All buffers are allocated at construction, so {@link #update(double, boolean)} can be called
+ * every loop without allocating.
+ */
+public class CurrentSignatureDetector {
+  public static class Config {
+    public final int medianWindow;
+    public final double filterTimeConstant;
+    public final double currentThreshold;
+    public final double earlyCurrentThreshold;
+    public final double derivativeThreshold;
+    public final int debounceSamples;
+    public final double blankingSeconds;
+
+    /**
+     * Construct detector settings for one mechanism.
+     *
+     * @param medianWindow Number of samples in the median filter.
+     * @param filterTimeConstant Low pass filter time constant in seconds.
+     * @param currentThreshold Filtered current that indicates a piece, in amps.
+     * @param earlyCurrentThreshold Lower threshold used while current is still rising, in amps.
+     * @param derivativeThreshold Rise rate needed to use the early threshold, in amps per second.
+     * @param debounceSamples Consecutive samples needed to report a piece.
+     * @param blankingSeconds Time after the motor starts during which samples are ignored.
+     */
+    public Config(int medianWindow, double filterTimeConstant, double currentThreshold,
+        double earlyCurrentThreshold, double derivativeThreshold, int debounceSamples, double blankingSeconds) {
+      this.medianWindow = medianWindow;
+      this.filterTimeConstant = filterTimeConstant;
+      this.currentThreshold = currentThreshold;
+      this.earlyCurrentThreshold = earlyCurrentThreshold;
+      this.derivativeThreshold = derivativeThreshold;
+      this.debounceSamples = debounceSamples;
+      this.blankingSeconds = blankingSeconds;
+    }
+  }
+
+  private final Config m_config;
+  private final double m_period;
+  private final double m_filterGain;
+  private final int m_blankingSamples;
+
+  private final double[] m_window;
+  private final double[] m_sorted;
+  private int m_windowIndex = 0;
+  private int m_windowCount = 0;
+
+  private double m_filtered = 0;
+  private double m_derivative = 0;
+  private int m_samplesSinceStart = 0;
+  private int m_debounceCount = 0;
+  private boolean m_detected = false;
+  private boolean m_acquiredEvent = false;
+  private double m_confidence = 0;
+
+  /**
+   * Creates a new CurrentSignatureDetector.
+   *
+   * @param config The detector settings.
+   * @param period The period between updates in seconds.
+   */
+  public CurrentSignatureDetector(Config config, double period) {
+    m_config = config;
+    m_period = period;
+    m_filterGain = period / (config.filterTimeConstant + period);
+    m_blankingSamples = (int) Math.ceil(config.blankingSeconds / period);
+    m_window = new double[config.medianWindow];
+    m_sorted = new double[config.medianWindow];
+  }
+
+  /** Clears the filters. Call when the motor starts intaking. */
+  public void reset() {
+    m_windowIndex = 0;
+    m_windowCount = 0;
+    m_filtered = 0;
+    m_derivative = 0;
+    m_samplesSinceStart = 0;
+    m_debounceCount = 0;
+    m_detected = false;
+    m_acquiredEvent = false;
+    m_confidence = 0;
+  }
+
+  /**
+   * Feeds one current sample into the detector.
+   *
+   * @param current The motor output current in amps.
+   * @param isIntaking Whether the mechanism is currently trying to intake.
+   */
+  public void update(double current, boolean isIntaking) {
+    m_acquiredEvent = false;
+    if (!isIntaking) {
+      if (m_samplesSinceStart != 0) reset();
+      return;
+    }
+
+    m_window[m_windowIndex] = current;
+    m_windowIndex = (m_windowIndex + 1) % m_window.length;
+    if (m_windowCount < m_window.length) m_windowCount++;
+
+    double previous = m_filtered;
+    m_filtered += m_filterGain * (median() - m_filtered);
+    m_derivative = (m_filtered - previous) / m_period;
+
+    if (++m_samplesSinceStart <= m_blankingSamples) return;
+
+    boolean overThreshold = m_filtered > m_config.currentThreshold
+      || (m_filtered > m_config.earlyCurrentThreshold && m_derivative > m_config.derivativeThreshold);
+    m_debounceCount = overThreshold ? Math.min(m_debounceCount + 1, m_config.debounceSamples) : 0;
+
+    double level = m_filtered / m_config.currentThreshold;
+    m_confidence = Math.max(0, Math.min(1,
+      0.5 * Math.min(level, 1) + 0.5 * ((double) m_debounceCount / m_config.debounceSamples)));
+
+    boolean detected = m_debounceCount >= m_config.debounceSamples;
+    m_acquiredEvent = detected && !m_detected;
+    m_detected = detected;
+  }
+
+  // insertion sort of the filled part of the window into the scratch array
+  private double median() {
+    for (int i = 0; i < m_windowCount; i++) {
+      double value = m_window[i];
+      int j = i - 1;
+      while (j >= 0 && m_sorted[j] > value) {
+        m_sorted[j + 1] = m_sorted[j];
+        j--;
+      }
+      m_sorted[j + 1] = value;
+    }
+    return m_sorted[m_windowCount / 2];
+  }
+
+  /** Whether a piece is currently held. */
+  public boolean isDetected() {
+    return m_detected;
+  }
+
+  /** True only on the update in which a piece was first detected. */
+  public boolean isAcquiredEvent() {
+    return m_acquiredEvent;
+  }
+
+  /** Confidence from 0 to 1 that a piece is present. */
+  public double getConfidence() {
+    return m_confidence;
+  }
+
+  public double getFilteredCurrent() {
+    return m_filtered;
+  }
+
+  public double getDerivative() {
+    return m_derivative;
+  }
+}
@@ -0,0 +1,102 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+
+/**
+ * Synchronous publish/subscribe bus keyed by an enum of events.
+ *
+ * <p>Mechanisms publish an event once when a transition happens, and every subscriber registered
+ * for that event runs immediately on the publishing thread. Subscribers are registered once at
+ * startup, so publishing does not allocate.
+ */
+public class EventBus<E extends Enum<E>> {
+  private final EnumMap<E, ArrayList<Runnable>> m_subscribers;
+  private final double[] m_lastPublishedTimestamps;
+  private final int[] m_publishCounts;
+
+  /**
+   * Creates a new EventBus.
+   *
+   * @param eventType The enum class of the events carried on this bus.
+   */
+  public EventBus(Class<E> eventType) {
+    m_subscribers = new EnumMap<>(eventType);
+    for (E event : eventType.getEnumConstants()) {
+      m_subscribers.put(event, new ArrayList<>());
+    }
+    m_lastPublishedTimestamps = new double[eventType.getEnumConstants().length];
+    m_publishCounts = new int[eventType.getEnumConstants().length];
+  }
+
+  /**
+   * Registers a reaction to run every time the event is published.
+   *
+   * @param event The event to react to.
+   * @param reaction The reaction to run.
+   */
+  public void subscribe(E event, Runnable reaction) {
+    m_subscribers.get(event).add(reaction);
+  }
+
+  /**
+   * Publishes an event and runs its subscribers.
+   *
+   * @param event The event that happened.
+   */
+  public void publish(E event) {
+    m_lastPublishedTimestamps[event.ordinal()] = Timer.getFPGATimestamp();
+    m_publishCounts[event.ordinal()]++;
+
+    ArrayList<Runnable> subscribers = m_subscribers.get(event);
+    for (int i = 0; i < subscribers.size(); i++) {
+      subscribers.get(i).run();
+    }
+  }
+
+  /**
+   * Creates a command that finishes the next time the event is published after it starts. The
+   * command subscribes here once, so build it at startup and reuse it.
+   *
+   * @param event The event to wait for.
+   */
+  public Command waitForCommand(E event) {
+    return new WaitForEventCommand(event);
+  }
+
+  /** FPGA timestamp of the last time the event was published, 0 if it never was. */
+  public double getLastPublishedTimestamp(E event) {
+    return m_lastPublishedTimestamps[event.ordinal()];
+  }
+
+  /** Number of times the event has been published. */
+  public int getPublishCount(E event) {
+    return m_publishCounts[event.ordinal()];
+  }
+
+  private class WaitForEventCommand extends CommandBase {
+    private boolean m_published = false;
+
+    WaitForEventCommand(E event) {
+      subscribe(event, () -> m_published = true);
+    }
+
+    @Override
+    public void initialize() {
+      m_published = false;
+    }
+
+    @Override
+    public boolean isFinished() {
+      return m_published;
+    }
+  }
+}
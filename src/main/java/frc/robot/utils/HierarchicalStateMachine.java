@@ -0,0 +1,346 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.EnumMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+
+/**
+ * Table-driven hierarchical state machine whose transitions run as commands.
+ *
+ * <p>Transitions are stored in an {@link EnumMap} table keyed by source and target state. When a
+ * transition is looked up the source state is tried first, then each of its parents, and finally
+ * transitions registered with {@link #addTransitionFromAny(Enum, Supplier, BooleanSupplier)},
+ * which act as the root of the hierarchy. A transition whose guard is false is not taken.
+ *
+ * <p>A requested transition is in progress until its command finishes. Only then does the machine
+ * settle in the target state and run its entry actions, so {@link #getState()} never reports a
+ * state the mechanism has not reached. Exit actions run when the machine leaves a settled state. A
+ * request made during a move plans from the state the mechanism measures closest to, if one was
+ * given, since it may be far from the state it last settled in. If the command is interrupted by
+ * anything other than a newer request the transition is aborted and the machine stays in the state
+ * it last settled in.
+ *
+ * <p>The table, actions and command suppliers are set up once at startup, so requesting and
+ * completing a transition does not allocate as long as the suppliers return prebuilt commands.
+ */
+public class HierarchicalStateMachine<S extends Enum<S>> {
+  private static class Transition {
+    final Supplier<Command> command;
+    final BooleanSupplier guard;
+
+    Transition(Supplier<Command> command, BooleanSupplier guard) {
+      this.command = command;
+      this.guard = guard;
+    }
+  }
+
+  private final Class<S> m_stateType;
+  private final EnumMap<S, EnumMap<S, Transition>> m_transitions;
+  private final EnumMap<S, Transition> m_anyTransitions;
+  private final EnumMap<S, S> m_parents;
+  private final EnumMap<S, Runnable> m_entryActions;
+  private final EnumMap<S, Runnable> m_exitActions;
+  private final Supplier<S> m_measuredState;
+
+  private final String m_latencyKey;
+  private final String m_maxLatencyKey;
+  private final String m_transitioningKey;
+  private final String m_rejectedKey;
+  private final String m_abortedKey;
+
+  private S m_state;
+  private S m_targetState;
+  private boolean m_transitioning = false;
+  private Command m_activeCommand;
+  private double m_requestTimestamp = 0;
+
+  private double m_lastLatency = 0;
+  private double m_maxLatency = 0;
+  private int m_rejectedCount = 0;
+  private int m_abortedCount = 0;
+
+  /**
+   * Creates a new HierarchicalStateMachine.
+   *
+   * @param name Name used for dashboard keys.
+   * @param stateType The enum class of the states.
+   * @param initialState The state the mechanism starts in.
+   * @param measuredState Supplies the state the mechanism is measured closest to, used to plan a
+   *     request made during a move. Null to always plan from the last settled state.
+   */
+  public HierarchicalStateMachine(String name, Class<S> stateType, S initialState, Supplier<S> measuredState) {
+    m_stateType = stateType;
+    m_transitions = new EnumMap<>(stateType);
+    for (S state : stateType.getEnumConstants()) {
+      m_transitions.put(state, new EnumMap<>(stateType));
+    }
+    m_anyTransitions = new EnumMap<>(stateType);
+    m_parents = new EnumMap<>(stateType);
+    m_entryActions = new EnumMap<>(stateType);
+    m_exitActions = new EnumMap<>(stateType);
+    m_measuredState = measuredState;
+
+    m_state = initialState;
+    m_targetState = initialState;
+
+    m_latencyKey = name + " Transition Latency";
+    m_maxLatencyKey = name + " Max Transition Latency";
+    m_transitioningKey = name + " Transitioning";
+    m_rejectedKey = name + " Rejected Transitions";
+    m_abortedKey = name + " Aborted Transitions";
+
+    CommandScheduler.getInstance().onCommandFinish(this::onCommandFinish);
+    CommandScheduler.getInstance().onCommandInterrupt(this::onCommandInterrupt);
+  }
+
+  public HierarchicalStateMachine(String name, Class<S> stateType, S initialState) {
+    this(name, stateType, initialState, null);
+  }
+
+  /**
+   * Makes a state a child of another. Transitions and actions of the parent apply to the child.
+   *
+   * @param state The child state.
+   * @param parent The parent state.
+   */
+  public HierarchicalStateMachine<S> setParent(S state, S parent) {
+    m_parents.put(state, parent);
+    return this;
+  }
+
+  /**
+   * Adds a transition between two states.
+   *
+   * @param from The source state.
+   * @param to The target state.
+   * @param command Supplies the command that moves the mechanism. May return null for no motion.
+   * @param guard Must be true for the transition to be taken, or null to always allow it.
+   */
+  public HierarchicalStateMachine<S> addTransition(S from, S to, Supplier<Command> command, BooleanSupplier guard) {
+    m_transitions.get(from).put(to, new Transition(command, guard));
+    return this;
+  }
+
+  public HierarchicalStateMachine<S> addTransition(S from, S to, Supplier<Command> command) {
+    return addTransition(from, to, command, null);
+  }
+
+  /**
+   * Adds a transition that can be taken from any state without a more specific transition.
+   *
+   * @param to The target state.
+   * @param command Supplies the command that moves the mechanism. May return null for no motion.
+   * @param guard Must be true for the transition to be taken, or null to always allow it.
+   */
+  public HierarchicalStateMachine<S> addTransitionFromAny(S to, Supplier<Command> command, BooleanSupplier guard) {
+    m_anyTransitions.put(to, new Transition(command, guard));
+    return this;
+  }
+
+  public HierarchicalStateMachine<S> addTransitionFromAny(S to, Supplier<Command> command) {
+    return addTransitionFromAny(to, command, null);
+  }
+
+  public HierarchicalStateMachine<S> setEntryAction(S state, Runnable action) {
+    m_entryActions.put(state, action);
+    return this;
+  }
+
+  public HierarchicalStateMachine<S> setExitAction(S state, Runnable action) {
+    m_exitActions.put(state, action);
+    return this;
+  }
+
+  /**
+   * Requests a transition to the target state.
+   *
+   * <p>A request made while another transition is in progress replaces it, and starts from the
+   * measured state if it has an allowed transition to the target, otherwise from the last settled
+   * state. Requesting the target that is already in progress reschedules its command only if the
+   * supplier now returns a different one, for example after a score level change.
+   *
+   * @param target The state to move to.
+   * @return False if no transition exists, its guard failed, or its command cannot run right now.
+   */
+  public boolean request(S target) {
+    Transition transition = null;
+    if (m_transitioning && m_measuredState != null) {
+      transition = findAllowedTransition(m_measuredState.get(), target);
+    }
+    if (transition == null) transition = findAllowedTransition(m_state, target);
+    if (transition == null) {
+      m_rejectedCount++;
+      return false;
+    }
+
+    Command command = transition.command.get();
+    if (command != null && DriverStation.isDisabled() && !command.runsWhenDisabled()) {
+      m_rejectedCount++;
+      return false;
+    }
+
+    if (m_transitioning) {
+      if (target == m_targetState && command == m_activeCommand) return true;
+    } else {
+      runExitActions(m_state, target);
+    }
+
+    Command previousCommand = m_activeCommand;
+    m_targetState = target;
+    m_transitioning = true;
+    m_requestTimestamp = Timer.getFPGATimestamp();
+    m_activeCommand = command;
+
+    // the old command may not share requirements with the new one, so it is not always cancelled for us
+    if (previousCommand != null && previousCommand != command) previousCommand.cancel();
+
+    if (command == null) {
+      complete();
+    } else {
+      command.schedule();
+    }
+    return true;
+  }
+
+  private Transition findAllowedTransition(S from, S to) {
+    Transition transition = findTransition(from, to);
+    if (transition == null || (transition.guard != null && !transition.guard.getAsBoolean())) return null;
+    return transition;
+  }
+
+  private Transition findTransition(S from, S to) {
+    for (S state = from; state != null; state = m_parents.get(state)) {
+      Transition transition = m_transitions.get(state).get(to);
+      if (transition != null) return transition;
+    }
+    return m_anyTransitions.get(to);
+  }
+
+  private void onCommandFinish(Command command) {
+    if (m_transitioning && command == m_activeCommand) complete();
+  }
+
+  private void onCommandInterrupt(Command command) {
+    // a newer request has already replaced m_activeCommand before its old command is cancelled
+    if (m_transitioning && command == m_activeCommand) {
+      m_transitioning = false;
+      m_activeCommand = null;
+      m_targetState = m_state;
+      m_abortedCount++;
+    }
+  }
+
+  private void complete() {
+    S previousState = m_state;
+    m_state = m_targetState;
+    m_transitioning = false;
+    m_activeCommand = null;
+    runEntryActions(m_state, getCommonAncestor(previousState, m_state));
+
+    m_lastLatency = Timer.getFPGATimestamp() - m_requestTimestamp;
+    m_maxLatency = Math.max(m_maxLatency, m_lastLatency);
+  }
+
+  // exits the source and its parents up to, but not including, the common ancestor with the target
+  private void runExitActions(S from, S to) {
+    S commonAncestor = getCommonAncestor(from, to);
+    for (S state = from; state != null && state != commonAncestor; state = m_parents.get(state)) {
+      Runnable action = m_exitActions.get(state);
+      if (action != null) action.run();
+    }
+  }
+
+  // enters from just below the common ancestor down to the target, outermost first
+  private void runEntryActions(S state, S commonAncestor) {
+    if (state == null || state == commonAncestor) return;
+    runEntryActions(m_parents.get(state), commonAncestor);
+    Runnable action = m_entryActions.get(state);
+    if (action != null) action.run();
+  }
+
+  private S getCommonAncestor(S a, S b) {
+    for (S state = a; state != null; state = m_parents.get(state)) {
+      if (isAncestorOrSelf(state, b)) return state;
+    }
+    return null;
+  }
+
+  private boolean isAncestorOrSelf(S ancestor, S state) {
+    for (S s = state; s != null; s = m_parents.get(s)) {
+      if (s == ancestor) return true;
+    }
+    return false;
+  }
+
+  /** The state the machine last settled in. */
+  public S getState() {
+    return m_state;
+  }
+
+  /** The state being moved to, or the settled state if no transition is in progress. */
+  public S getTargetState() {
+    return m_targetState;
+  }
+
+  public boolean isTransitioning() {
+    return m_transitioning;
+  }
+
+  /**
+   * Returns true if the machine has settled in the state or one of its children.
+   *
+   * @param state The state to check.
+   * @return True if in the state.
+   */
+  public boolean isInState(S state) {
+    return !m_transitioning && isAncestorOrSelf(state, m_state);
+  }
+
+  public void updateTelemetry() {
+    SmartDashboard.putNumber(m_latencyKey, m_lastLatency);
+    SmartDashboard.putNumber(m_maxLatencyKey, m_maxLatency);
+    SmartDashboard.putBoolean(m_transitioningKey, m_transitioning);
+    SmartDashboard.putNumber(m_rejectedKey, m_rejectedCount);
+    SmartDashboard.putNumber(m_abortedKey, m_abortedCount);
+  }
+
+  /**
+   * Exports the transition table in Graphviz DOT format. Parent links are drawn dashed and guarded
+   * transitions are labelled. This allocates and is meant to be called once, not every loop.
+   *
+   * @param name The name of the graph.
+   * @return The graph.
+   */
+  public String toDot(String name) {
+    StringBuilder dot = new StringBuilder("digraph \"").append(name).append("\" {\n");
+    for (S from : m_stateType.getEnumConstants()) {
+      for (var entry : m_transitions.get(from).entrySet()) {
+        appendEdge(dot, from.name(), entry.getKey().name(), entry.getValue());
+      }
+    }
+    for (var entry : m_anyTransitions.entrySet()) {
+      appendEdge(dot, "*", entry.getKey().name(), entry.getValue());
+    }
+    for (var entry : m_parents.entrySet()) {
+      dot.append("  \"").append(entry.getKey().name()).append("\" -> \"")
+        .append(entry.getValue().name()).append("\" [style=dashed];\n");
+    }
+    return dot.append("}\n").toString();
+  }
+
+  private static void appendEdge(StringBuilder dot, String from, String to, Transition transition) {
+    dot.append("  \"").append(from).append("\" -> \"").append(to).append('"');
+    if (transition.guard != null) dot.append(" [label=\"guarded\"]");
+    dot.append(";\n");
+  }
+}
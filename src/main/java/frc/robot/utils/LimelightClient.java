@@ -0,0 +1,276 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.EnumSet;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.DoubleSubscriber;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.StringSubscriber;
+import edu.wpi.first.networktables.TimestampedString;
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Keeps the latest frame from a Limelight without looking anything up in the robot loop.
+ *
+ * <p>A NetworkTables listener fires on its own thread when the Limelight publishes the JSON results,
+ * which it writes last in each frame and which change every frame since they carry the frame's
+ * timestamp. Only then is one immutable {@link Snapshot} built from the cached values and swapped
+ * in, so a command that reads the snapshot once per loop sees tx, ty, tv, ta, botpose and the
+ * pipeline that produced them from the same frame, and each frame gets one sequence number. The
+ * robot pose is kept with both the blue and the red alliance origin. The snapshot is stamped with
+ * the time the image was captured, using the server timestamp of the JSON results minus the
+ * pipeline and capture latency the Limelight reports.
+ *
+ * <p>The per-tag angles in the JSON results are parsed on the listener thread too, into primitive
+ * arrays, so the robot loop can solve for its own pose without touching JSON.
+ */
+public class LimelightClient implements AutoCloseable {
+  /** One frame of Limelight results. */
+  public static final class Snapshot {
+    /** Empty snapshot used until the first frame arrives. */
+    public static final Snapshot kEmpty =
+      new Snapshot(0, -1, false, 0, 0, 0, null, null, 0, 0, Double.NEGATIVE_INFINITY, new int[0], new double[0], new double[0]);
+
+    /** Increments with every frame, so a reader can tell a new frame from the one it already used. */
+    public final long sequence;
+    /** Pipeline the camera reports it ran, -1 before the first report. */
+    public final int pipelineIndex;
+    public final boolean hasTarget;
+    /** Horizontal offset to the target in degrees, as reported, positive to the right. */
+    public final double tx;
+    /** Vertical offset to the target in degrees, positive up. */
+    public final double ty;
+    /** Target area in percent of the image. */
+    public final double ta;
+    /** Robot pose from the field map with the blue alliance origin, or null if no tag is visible. */
+    public final Pose2d botPose;
+    /**
+     * Robot pose with the red alliance origin, or null if no tag is visible. This is the frame
+     * PathPlanner's red alliance paths, and so odometry on the red alliance, are in.
+     */
+    public final Pose2d redBotPose;
+    public final double pipelineLatencyMs;
+    public final double captureLatencyMs;
+    /** FPGA time in seconds when the image was captured. */
+    public final double timestampSeconds;
+
+    private final int[] m_tagIds;
+    private final double[] m_tagTx;
+    private final double[] m_tagTy;
+
+    Snapshot(long sequence, int pipelineIndex, boolean hasTarget, double tx, double ty, double ta, Pose2d botPose,
+        Pose2d redBotPose, double pipelineLatencyMs, double captureLatencyMs, double timestampSeconds,
+        int[] tagIds, double[] tagTx, double[] tagTy) {
+      this.sequence = sequence;
+      this.pipelineIndex = pipelineIndex;
+      this.hasTarget = hasTarget;
+      this.tx = tx;
+      this.ty = ty;
+      this.ta = ta;
+      this.botPose = botPose;
+      this.redBotPose = redBotPose;
+      this.pipelineLatencyMs = pipelineLatencyMs;
+      this.captureLatencyMs = captureLatencyMs;
+      this.timestampSeconds = timestampSeconds;
+      m_tagIds = tagIds;
+      m_tagTx = tagTx;
+      m_tagTy = tagTy;
+    }
+
+    /** Number of AprilTags in the JSON results. */
+    public int getTagCount() {
+      return m_tagIds.length;
+    }
+
+    public int getTagId(int index) {
+      return m_tagIds[index];
+    }
+
+    /** Horizontal offset to a tag's center in degrees, positive to the right. */
+    public double getTagTx(int index) {
+      return m_tagTx[index];
+    }
+
+    /** Vertical offset to a tag's center in degrees, positive up. */
+    public double getTagTy(int index) {
+      return m_tagTy[index];
+    }
+
+    /** Seconds since the image was captured. */
+    public double getAgeSeconds() {
+      return Timer.getFPGATimestamp() - timestampSeconds;
+    }
+
+    public boolean hasBotPose() {
+      return botPose != null;
+    }
+
+    /**
+     * Returns the robot pose with an alliance's origin.
+     *
+     * @param alliance The alliance whose frame odometry is in.
+     * @return The red origin pose on the red alliance, otherwise the blue origin pose.
+     */
+    public Pose2d getBotPose(Alliance alliance) {
+      return alliance == Alliance.Red ? redBotPose : botPose;
+    }
+  }
+
+  private final NetworkTableInstance m_instance;
+  private final DoubleSubscriber m_tv;
+  private final DoubleSubscriber m_tx;
+  private final DoubleSubscriber m_ty;
+  private final DoubleSubscriber m_ta;
+  private final DoubleSubscriber m_tl;
+  private final DoubleSubscriber m_cl;
+  private final DoubleSubscriber m_getpipe;
+  private final DoubleArraySubscriber m_botpose;
+  private final DoubleArraySubscriber m_redBotpose;
+  private final StringSubscriber m_json;
+  private final int m_listener;
+  private final ObjectMapper m_mapper = new ObjectMapper();
+
+  private volatile Snapshot m_snapshot = Snapshot.kEmpty;
+  private long m_sequence = 0;
+  private long m_jsonTime = 0;
+  private int[] m_tagIds = new int[0];
+  private double[] m_tagTx = new double[0];
+  private double[] m_tagTy = new double[0];
+  private volatile double m_parseMicros = 0;
+  private boolean m_lastParseFailed = false;
+
+  /**
+   * Creates a new LimelightClient.
+   *
+   * @param limelightName The Limelight's NetworkTables name, such as "limelight-back".
+   */
+  public LimelightClient(String limelightName) {
+    m_instance = NetworkTableInstance.getDefault();
+    NetworkTable table = m_instance.getTable(limelightName);
+    m_tv = table.getDoubleTopic("tv").subscribe(0);
+    m_tx = table.getDoubleTopic("tx").subscribe(0);
+    m_ty = table.getDoubleTopic("ty").subscribe(0);
+    m_ta = table.getDoubleTopic("ta").subscribe(0);
+    m_tl = table.getDoubleTopic("tl").subscribe(0);
+    m_cl = table.getDoubleTopic("cl").subscribe(0);
+    m_getpipe = table.getDoubleTopic("getpipe").subscribe(-1);
+    m_botpose = table.getDoubleArrayTopic("botpose_wpiblue").subscribe(new double[0]);
+    m_redBotpose = table.getDoubleArrayTopic("botpose_wpired").subscribe(new double[0]);
+    m_json = table.getStringTopic("json").subscribe("");
+
+    // the other values of a frame are already in when its JSON results arrive
+    m_listener = m_instance.addListener(m_json, EnumSet.of(NetworkTableEvent.Kind.kValueAll), event -> update());
+  }
+
+  // runs on the NetworkTables listener thread
+  private synchronized void update() {
+    TimestampedString json = m_json.getAtomic();
+    if (json.serverTime == 0 || json.serverTime == m_jsonTime) return;
+    m_jsonTime = json.serverTime;
+    parseTags(json.value);
+
+    double pipelineLatencyMs = m_tl.get();
+    double captureLatencyMs = m_cl.get();
+    double timestampSeconds = json.serverTime / 1e6 - (pipelineLatencyMs + captureLatencyMs) / 1000.0;
+
+    m_snapshot = new Snapshot(
+      ++m_sequence,
+      (int) m_getpipe.get(),
+      m_tv.get() == 1.0,
+      m_tx.get(),
+      m_ty.get(),
+      m_ta.get(),
+      toPose2d(m_botpose.get()),
+      toPose2d(m_redBotpose.get()),
+      pipelineLatencyMs,
+      captureLatencyMs,
+      timestampSeconds,
+      m_tagIds,
+      m_tagTx,
+      m_tagTy);
+  }
+
+  // a frame whose results cannot be parsed has no tags, rather than the previous frame's
+  private void parseTags(String json) {
+    long startTime = WPIUtilJNI.now();
+    if (json.isEmpty()) {
+      clearTags();
+      return;
+    }
+    try {
+      JsonNode fiducials = m_mapper.readTree(json).path("Results").path("Fiducial");
+      int count = fiducials.size();
+      int[] ids = new int[count];
+      double[] tx = new double[count];
+      double[] ty = new double[count];
+      for (int i = 0; i < count; i++) {
+        JsonNode fiducial = fiducials.get(i);
+        ids[i] = fiducial.path("fID").asInt(-1);
+        tx[i] = fiducial.path("tx").asDouble();
+        ty[i] = fiducial.path("ty").asDouble();
+      }
+      m_tagIds = ids;
+      m_tagTx = tx;
+      m_tagTy = ty;
+      m_lastParseFailed = false;
+    } catch (Exception e) {
+      clearTags();
+      // reported once per run of bad results, the listener sees every frame
+      if (!m_lastParseFailed) DriverStation.reportError("Limelight results not parsed: " + e, false);
+      m_lastParseFailed = true;
+    }
+    m_parseMicros = WPIUtilJNI.now() - startTime;
+  }
+
+  private void clearTags() {
+    m_tagIds = new int[0];
+    m_tagTx = new double[0];
+    m_tagTy = new double[0];
+  }
+
+  // the Limelight sends all zeros when no tag is visible
+  private static Pose2d toPose2d(double[] botpose) {
+    if (botpose.length < 6) return null;
+    if (botpose[0] == 0 && botpose[1] == 0 && botpose[5] == 0) return null;
+    return new Pose2d(botpose[0], botpose[1], Rotation2d.fromDegrees(botpose[5]));
+  }
+
+  /** Time the last JSON results took to parse, on the listener thread. */
+  public double getParseMicros() {
+    return m_parseMicros;
+  }
+
+  /** The latest frame. Read it once per loop and use that reference for everything in the loop. */
+  public Snapshot getSnapshot() {
+    return m_snapshot;
+  }
+
+  @Override
+  public void close() {
+    m_instance.removeListener(m_listener);
+    m_tv.close();
+    m_tx.close();
+    m_ty.close();
+    m_ta.close();
+    m_tl.close();
+    m_cl.close();
+    m_getpipe.close();
+    m_botpose.close();
+    m_redBotpose.close();
+    m_json.close();
+  }
+}
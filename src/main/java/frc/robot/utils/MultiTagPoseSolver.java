@@ -0,0 +1,235 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.util.WPIUtilJNI;
+import frc.robot.utils.LimelightClient.Snapshot;
+
+/**
+ * Solves for the robot pose from the AprilTags in one Limelight frame.
+ *
+ * <p>Each tag in the frame gives a horizontal bearing, and a range from its vertical angle and the
+ * known height difference between the camera and the tag. The pose that best explains all of them
+ * is found by Gauss-Newton least squares, starting from a guess whose heading is also used as a
+ * prior, so a single tag is still enough. Working arrays are allocated once, so a solve
+ * allocates nothing but the resulting pose.
+ *
+ * <p>The result is an independent check on the pose the Limelight computes itself.
+ */
+public class MultiTagPoseSolver {
+  private static final int kMaxTags = 16;
+  private static final int kParameters = 3;
+  private static final double kJacobianStep = 1e-6;
+  private static final double kConvergedStep = 1e-5;
+  // below this the vertical angle says little about range
+  private static final double kMinRangeTangent = 0.05;
+
+  private final AprilTagFieldMap m_fieldMap;
+  private final double m_bearingStdDevRadians;
+  private final double m_rangeStdDevFraction;
+  private final double m_headingStdDevRadians;
+  private final int m_maxIterations;
+
+  // observations of the current solve
+  private int m_count = 0;
+  private final int[] m_tagIndex = new int[kMaxTags];
+  private final double[] m_bearing = new double[kMaxTags];
+  private final double[] m_range = new double[kMaxTags];
+  private double m_cameraX;
+  private double m_cameraY;
+  private double m_cameraYaw;
+  private double m_headingPrior;
+
+  private final double[] m_residuals = new double[2 * kMaxTags + 1];
+  private final double[] m_perturbed = new double[2 * kMaxTags + 1];
+  private final double[][] m_jacobian = new double[2 * kMaxTags + 1][kParameters];
+  private final double[] m_parameters = new double[kParameters];
+  private final double[][] m_normal = new double[kParameters][kParameters + 1];
+
+  private Pose2d m_pose = new Pose2d();
+  private double m_rmsError = 0;
+  private int m_iterations = 0;
+  private int m_tagsUsed = 0;
+  private double m_solveMicros = 0;
+
+  /**
+   * Creates a new MultiTagPoseSolver.
+   *
+   * @param fieldMap The tag positions.
+   * @param bearingStdDevRadians Standard deviation of a tag's bearing.
+   * @param rangeStdDevFraction Standard deviation of a tag's range as a fraction of the range.
+   * @param headingStdDevRadians Standard deviation of the heading prior.
+   * @param maxIterations Most Gauss-Newton iterations per solve.
+   */
+  public MultiTagPoseSolver(AprilTagFieldMap fieldMap, double bearingStdDevRadians, double rangeStdDevFraction,
+      double headingStdDevRadians, int maxIterations) {
+    m_fieldMap = fieldMap;
+    m_bearingStdDevRadians = bearingStdDevRadians;
+    m_rangeStdDevFraction = rangeStdDevFraction;
+    m_headingStdDevRadians = headingStdDevRadians;
+    m_maxIterations = maxIterations;
+  }
+
+  /**
+   * Solves for the robot pose from the tags in a frame.
+   *
+   * @param frame The frame.
+   * @param cameraPosition Camera position relative to the robot center in meters.
+   * @param cameraHeightMeters Camera lens height above the floor.
+   * @param cameraPitchRadians Upward tilt of the camera.
+   * @param cameraYawRadians Direction the camera faces relative to the front of the robot.
+   * @param guess Pose to start from, whose heading is also used as the heading prior.
+   * @return Whether a pose was found.
+   */
+  public boolean solve(Snapshot frame, Translation2d cameraPosition, double cameraHeightMeters,
+      double cameraPitchRadians, double cameraYawRadians, Pose2d guess) {
+    long startTime = WPIUtilJNI.now();
+    m_cameraX = cameraPosition.getX();
+    m_cameraY = cameraPosition.getY();
+    m_cameraYaw = cameraYawRadians;
+    m_headingPrior = guess.getRotation().getRadians();
+
+    m_count = 0;
+    for (int i = 0; i < frame.getTagCount() && m_count < kMaxTags; i++) {
+      int index = m_fieldMap.indexOf(frame.getTagId(i));
+      if (index < 0) continue;
+      m_tagIndex[m_count] = index;
+      m_bearing[m_count] = -Math.toRadians(frame.getTagTx(i));
+      double tangent = Math.tan(cameraPitchRadians + Math.toRadians(frame.getTagTy(i)));
+      double height = m_fieldMap.getZ(index) - cameraHeightMeters;
+      m_range[m_count] = (tangent * Math.signum(height) > kMinRangeTangent) ? height / tangent : Double.NaN;
+      m_count++;
+    }
+    m_tagsUsed = m_count;
+    if (m_count == 0) {
+      m_solveMicros = WPIUtilJNI.now() - startTime;
+      return false;
+    }
+
+    m_parameters[0] = guess.getX();
+    m_parameters[1] = guess.getY();
+    m_parameters[2] = guess.getRotation().getRadians();
+    int residualCount = 2 * m_count + 1;
+
+    m_iterations = 0;
+    boolean solved = false;
+    while (m_iterations < m_maxIterations) {
+      m_iterations++;
+      computeResiduals(m_parameters, m_residuals);
+      for (int p = 0; p < kParameters; p++) {
+        double original = m_parameters[p];
+        m_parameters[p] = original + kJacobianStep;
+        computeResiduals(m_parameters, m_perturbed);
+        m_parameters[p] = original;
+        for (int r = 0; r < residualCount; r++) {
+          m_jacobian[r][p] = (m_perturbed[r] - m_residuals[r]) / kJacobianStep;
+        }
+      }
+
+      // J^T J step = -J^T r
+      for (int i = 0; i < kParameters; i++) {
+        for (int j = 0; j < kParameters; j++) {
+          double sum = 0;
+          for (int r = 0; r < residualCount; r++) sum += m_jacobian[r][i] * m_jacobian[r][j];
+          m_normal[i][j] = sum;
+        }
+        double sum = 0;
+        for (int r = 0; r < residualCount; r++) sum -= m_jacobian[r][i] * m_residuals[r];
+        m_normal[i][kParameters] = sum;
+      }
+      if (!solveNormalEquations()) break;
+
+      double stepSize = 0;
+      for (int p = 0; p < kParameters; p++) {
+        m_parameters[p] += m_normal[p][kParameters];
+        stepSize = Math.max(stepSize, Math.abs(m_normal[p][kParameters]));
+      }
+      if (stepSize < kConvergedStep) {
+        solved = true;
+        break;
+      }
+    }
+
+    computeResiduals(m_parameters, m_residuals);
+    double sumSquares = 0;
+    for (int r = 0; r < residualCount; r++) sumSquares += m_residuals[r] * m_residuals[r];
+    m_rmsError = Math.sqrt(sumSquares / residualCount);
+    m_pose = new Pose2d(m_parameters[0], m_parameters[1], new Rotation2d(m_parameters[2]));
+
+    m_solveMicros = WPIUtilJNI.now() - startTime;
+    return solved;
+  }
+
+  // standard-deviation normalized residuals, zero for a range that was not measured
+  private void computeResiduals(double[] parameters, double[] residuals) {
+    double cos = Math.cos(parameters[2]);
+    double sin = Math.sin(parameters[2]);
+    double cameraX = parameters[0] + cos * m_cameraX - sin * m_cameraY;
+    double cameraY = parameters[1] + sin * m_cameraX + cos * m_cameraY;
+    double cameraHeading = parameters[2] + m_cameraYaw;
+
+    for (int i = 0; i < m_count; i++) {
+      double dx = m_fieldMap.getX(m_tagIndex[i]) - cameraX;
+      double dy = m_fieldMap.getY(m_tagIndex[i]) - cameraY;
+      double bearing = MathUtil.angleModulus(Math.atan2(dy, dx) - cameraHeading);
+      residuals[2 * i] = MathUtil.angleModulus(bearing - m_bearing[i]) / m_bearingStdDevRadians;
+      residuals[2 * i + 1] = Double.isNaN(m_range[i])
+        ? 0
+        : (Math.hypot(dx, dy) - m_range[i]) / (m_rangeStdDevFraction * m_range[i]);
+    }
+    residuals[2 * m_count] = MathUtil.angleModulus(parameters[2] - m_headingPrior) / m_headingStdDevRadians;
+  }
+
+  // Gaussian elimination with partial pivoting, leaves the solution in the last column
+  private boolean solveNormalEquations() {
+    for (int col = 0; col < kParameters; col++) {
+      int pivot = col;
+      for (int row = col + 1; row < kParameters; row++) {
+        if (Math.abs(m_normal[row][col]) > Math.abs(m_normal[pivot][col])) pivot = row;
+      }
+      if (Math.abs(m_normal[pivot][col]) < 1e-12) return false;
+      double[] temp = m_normal[col];
+      m_normal[col] = m_normal[pivot];
+      m_normal[pivot] = temp;
+
+      for (int row = 0; row < kParameters; row++) {
+        if (row == col) continue;
+        double factor = m_normal[row][col] / m_normal[col][col];
+        for (int k = col; k <= kParameters; k++) m_normal[row][k] -= factor * m_normal[col][k];
+      }
+    }
+    for (int row = 0; row < kParameters; row++) {
+      m_normal[row][kParameters] /= m_normal[row][row];
+    }
+    return true;
+  }
+
+  /** The pose from the last solve. */
+  public Pose2d getPose() {
+    return m_pose;
+  }
+
+  /** Root mean square of the normalized residuals of the last solve, near 1 for a good fit. */
+  public double getRmsError() {
+    return m_rmsError;
+  }
+
+  public int getIterations() {
+    return m_iterations;
+  }
+
+  /** Number of tags in the last frame that are on the field map. */
+  public int getTagsUsed() {
+    return m_tagsUsed;
+  }
+
+  public double getSolveMicros() {
+    return m_solveMicros;
+  }
+}
@@ -0,0 +1,371 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pathplanner.lib.PathConstraints;
+
+import frc.robot.Constants.DriveConstants;
+import frc.robot.Constants.ModuleConstants;
+import frc.robot.Constants.NeoMotorConstants;
+import frc.robot.commands.auto.PathTestAuto;
+import frc.robot.commands.auto.Cable.CubeThreeCargoCableAuto;
+import frc.robot.commands.auto.Cable.TwoCargoCableAuto;
+import frc.robot.commands.auto.Center.OneConeBalanceCenterAuto;
+import frc.robot.commands.auto.Center.OneConeBalanceMobilityCenterAuto;
+import frc.robot.commands.auto.Center.TwoCargoBalanceCenterAuto;
+import frc.robot.commands.auto.Open.ThreeCargoOpenAuto;
+import frc.robot.commands.auto.Open.TwoCargoBalanceOpenAuto;
+import frc.robot.commands.auto.Open.TwoCargoOpenAuto;
+
+/**
+ * Offline re-timing of the PathPlanner paths for minimum time.
+ *
+ * <p>Each .path is split at its stop points the way PathPlanner loads a path group, and sampled
+ * along its Bezier splines. The speed along each piece is then the fastest the robot can actually
+ * drive, found with a forward pass limited by acceleration and a backward pass limited by braking:
+ *
+ * <ul>
+ *   <li>Drive motor torque at {@link ModuleConstants#kDrivingMotorCurrentLimit}, falling off with
+ *       back-EMF as the wheels speed up.
+ *   <li>Wheel friction shared between speeding up and turning, so tight curves are taken slower.
+ *   <li>Module free speed, shared with the rotation the path asks for at the same time.
+ * </ul>
+ *
+ * <p>Velocity overrides in the path are kept, since they mark places the robot has to be slow such
+ * as the charge station. The same geometry is also timed with the PathConstraints each auto loads
+ * its paths with, read from the auto itself, and the report lists the time each auto would save.
+ *
+ * <p>This is an offline tool, run with {@code ./gradlew optimizePaths}. The re-timed trajectories
+ * and the report are written to build/optimized-paths.
+ */
+public final class PathTimeOptimizer {
+  private static final int kSamplesPerSpline = 200;
+  private static final double kBatteryVoltage = 11.0; // under load
+  private static final double kSpeedMargin = 0.9; // headroom for feedback on top of the profile
+  private static final double kTractionMargin = 0.8;
+  private static final double kGravity = 9.81;
+  private static final String kDefaultPathDirectory = "src/main/deploy/pathplanner";
+  private static final String kDefaultOutputDirectory = "build/optimized-paths";
+
+  /** The path group an auto loads and the constraints it loads each path with. */
+  private static final class AutoPaths {
+    private final String m_autoName;
+    private final String m_pathName;
+    private final PathConstraints[] m_constraints;
+
+    private AutoPaths(String autoName, String pathName, PathConstraints[] constraints) {
+      m_autoName = autoName;
+      m_pathName = pathName;
+      m_constraints = constraints;
+    }
+  }
+
+  private static final AutoPaths[] kAutos = {
+    new AutoPaths("OneConeBalanceCenterAuto",
+      OneConeBalanceCenterAuto.kPathName, OneConeBalanceCenterAuto.kPathConstraints),
+    new AutoPaths("OneConeBalanceMobilityCenterAuto",
+      OneConeBalanceMobilityCenterAuto.kPathName, OneConeBalanceMobilityCenterAuto.kPathConstraints),
+    new AutoPaths("TwoCargoBalanceCenterAuto",
+      TwoCargoBalanceCenterAuto.kPathName, TwoCargoBalanceCenterAuto.kPathConstraints),
+    new AutoPaths("TwoCargoBalanceCenterAuto mirror",
+      TwoCargoBalanceCenterAuto.kMirrorPathName, TwoCargoBalanceCenterAuto.kPathConstraints),
+    new AutoPaths("TwoCargoOpenAuto", TwoCargoOpenAuto.kPathName, TwoCargoOpenAuto.kPathConstraints),
+    new AutoPaths("TwoCargoBalanceOpenAuto", TwoCargoBalanceOpenAuto.kPathName, TwoCargoBalanceOpenAuto.kPathConstraints),
+    new AutoPaths("ThreeCargoOpenAuto", ThreeCargoOpenAuto.kPathName, ThreeCargoOpenAuto.kPathConstraints),
+    new AutoPaths("TwoCargoCableAuto", TwoCargoCableAuto.kPathName, TwoCargoCableAuto.kPathConstraints),
+    new AutoPaths("CubeThreeCargoCableAuto", CubeThreeCargoCableAuto.kPathName, CubeThreeCargoCableAuto.kPathConstraints),
+    new AutoPaths("PathTestAuto", PathTestAuto.kPathName, PathTestAuto.kPathConstraints)
+  };
+
+  /** Most tangential acceleration at a speed and curvature. */
+  private interface AccelerationLimit {
+    double get(double velocity, double curvature);
+  }
+
+  /** One stop-to-stop piece of a path, sampled along its length. */
+  private static final class Segment {
+    private final List<double[]> m_samples = new ArrayList<>();
+    // filled in by finish(), indexed by sample
+    private double[] m_distance;
+    private double[] m_curvature;
+    private double[] m_rotationRate; // holonomic rotation per meter
+    private double[] m_velocityCap;
+
+    // x, y, curvature, holonomic radians, velocity cap
+    private void add(double x, double y, double curvature, double holonomic, double velocityCap) {
+      m_samples.add(new double[] {x, y, curvature, holonomic, velocityCap});
+    }
+
+    private int size() {
+      return m_samples.size();
+    }
+
+    private void finish() {
+      int n = size();
+      m_distance = new double[n];
+      m_curvature = new double[n];
+      m_rotationRate = new double[n];
+      m_velocityCap = new double[n];
+      for (int i = 0; i < n; i++) {
+        double[] sample = m_samples.get(i);
+        if (i > 0) {
+          double[] previous = m_samples.get(i - 1);
+          m_distance[i] = m_distance[i - 1] + Math.hypot(sample[0] - previous[0], sample[1] - previous[1]);
+        }
+        m_curvature[i] = sample[2];
+        m_velocityCap[i] = sample[4];
+      }
+      for (int i = 0; i < n; i++) {
+        int a = Math.max(0, i - 1);
+        int b = Math.min(n - 1, i + 1);
+        double ds = m_distance[b] - m_distance[a];
+        double dTheta = Math.IEEEremainder(m_samples.get(b)[3] - m_samples.get(a)[3], 2 * Math.PI);
+        m_rotationRate[i] = ds > 1e-9 ? dTheta / ds : 0;
+      }
+    }
+  }
+
+  private PathTimeOptimizer() {}
+
+  /**
+   * Re-times every path and writes the trajectories and report.
+   *
+   * @param args The PathPlanner path directory and the output directory, both optional.
+   * @throws IOException If the report cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    File pathDirectory = new File(args.length > 0 ? args[0] : kDefaultPathDirectory);
+    File outputDirectory = new File(args.length > 1 ? args[1] : kDefaultOutputDirectory);
+    outputDirectory.mkdirs();
+
+    StringWriter report = new StringWriter();
+    PrintWriter out = new PrintWriter(report);
+    out.printf("Path time optimization, %.0f kg, mu %.2f, %d A drive current limit%n",
+      DriveConstants.kRobotMassKg, DriveConstants.kWheelCoefficientOfFriction, ModuleConstants.kDrivingMotorCurrentLimit);
+
+    out.printf("%nPer path, against the constraints saved in the .path file%n");
+    File[] pathFiles = pathDirectory.listFiles((directory, name) -> name.endsWith(".path"));
+    if (pathFiles == null) pathFiles = new File[0];
+    Arrays.sort(pathFiles);
+    for (File pathFile : pathFiles) {
+      String name = pathFile.getName().replace(".path", "");
+      try {
+        JsonNode path = new ObjectMapper().readTree(pathFile);
+        List<Segment> segments = sample(path);
+        double optimized = writeTrajectory(segments, new File(outputDirectory, name + ".csv"));
+        JsonNode maxVelocity = path.path("maxVelocity");
+        JsonNode maxAcceleration = path.path("maxAcceleration");
+        if (maxVelocity.isNumber() && maxAcceleration.isNumber()) {
+          PathConstraints constraints = new PathConstraints(maxVelocity.asDouble(), maxAcceleration.asDouble());
+          double current = getConstrainedTime(segments, new PathConstraints[] {constraints});
+          out.printf("  %-28s %6.2f s -> %6.2f s%n", name, current, optimized);
+        } else {
+          out.printf("  %-28s    n/a -> %6.2f s%n", name, optimized);
+        }
+      } catch (IOException | RuntimeException e) {
+        out.printf("  %-28s could not be read: %s%n", name, e);
+      }
+    }
+
+    out.printf("%nPer auto, against the PathConstraints the auto loads with%n");
+    for (AutoPaths auto : kAutos) {
+      try {
+        List<Segment> segments = sample(new ObjectMapper().readTree(new File(pathDirectory, auto.m_pathName + ".path")));
+        double current = getConstrainedTime(segments, auto.m_constraints);
+        double optimized = 0;
+        for (Segment segment : segments) optimized += getTime(segment, getOptimizedProfile(segment));
+        out.printf("  %-34s %6.2f s -> %6.2f s, saves %5.2f s (%4.1f%%)%n",
+          auto.m_autoName, current, optimized, current - optimized, 100 * (current - optimized) / current);
+      } catch (IOException | RuntimeException e) {
+        out.printf("  %-34s could not be read: %s%n", auto.m_autoName, e);
+      }
+    }
+    out.flush();
+
+    try (PrintWriter file = new PrintWriter(new File(outputDirectory, "report.txt"))) {
+      file.print(report);
+    }
+  }
+
+  // splits at stop points and samples each Bezier spline, with a zero speed cap where the path
+  // stops or reverses and the waypoint's velocity override over the spline that follows it
+  private static List<Segment> sample(JsonNode path) {
+    JsonNode waypoints = path.get("waypoints");
+    List<Segment> segments = new ArrayList<>();
+    Segment segment = new Segment();
+    segments.add(segment);
+
+    for (int i = 0; i < waypoints.size() - 1; i++) {
+      JsonNode start = waypoints.get(i);
+      JsonNode end = waypoints.get(i + 1);
+      double[] p0 = point(start.get("anchorPoint"));
+      double[] p3 = point(end.get("anchorPoint"));
+      double[] p1 = start.get("nextControl").isNull() ? p0 : point(start.get("nextControl"));
+      double[] p2 = end.get("prevControl").isNull() ? p3 : point(end.get("prevControl"));
+      double startAngle = Math.toRadians(start.path("holonomicAngle").asDouble());
+      double angleChange = Math.IEEEremainder(Math.toRadians(end.path("holonomicAngle").asDouble()) - startAngle, 2 * Math.PI);
+      double override = start.path("velOverride").isNumber() ? start.get("velOverride").asDouble() : Double.POSITIVE_INFINITY;
+
+      for (int k = segment.size() == 0 ? 0 : 1; k <= kSamplesPerSpline; k++) {
+        double t = (double) k / kSamplesPerSpline;
+        double u = 1 - t;
+        double x = u * u * u * p0[0] + 3 * u * u * t * p1[0] + 3 * u * t * t * p2[0] + t * t * t * p3[0];
+        double y = u * u * u * p0[1] + 3 * u * u * t * p1[1] + 3 * u * t * t * p2[1] + t * t * t * p3[1];
+        double dx = 3 * u * u * (p1[0] - p0[0]) + 6 * u * t * (p2[0] - p1[0]) + 3 * t * t * (p3[0] - p2[0]);
+        double dy = 3 * u * u * (p1[1] - p0[1]) + 6 * u * t * (p2[1] - p1[1]) + 3 * t * t * (p3[1] - p2[1]);
+        double ddx = 6 * u * (p2[0] - 2 * p1[0] + p0[0]) + 6 * t * (p3[0] - 2 * p2[0] + p1[0]);
+        double ddy = 6 * u * (p2[1] - 2 * p1[1] + p0[1]) + 6 * t * (p3[1] - 2 * p2[1] + p1[1]);
+        double speed = Math.hypot(dx, dy);
+        double curvature = speed > 1e-9 ? (dx * ddy - dy * ddx) / (speed * speed * speed) : 0;
+
+        double cap = override;
+        if (k == 0 && (i == 0 || start.path("isReversal").asBoolean() || start.path("isStopPoint").asBoolean())) {
+          cap = 0;
+        }
+        if (k == kSamplesPerSpline && (i == waypoints.size() - 2 || end.path("isReversal").asBoolean()
+            || end.path("isStopPoint").asBoolean())) {
+          cap = 0;
+        }
+        segment.add(x, y, curvature, startAngle + t * angleChange, cap);
+      }
+
+      if (end.path("isStopPoint").asBoolean() && i < waypoints.size() - 2) {
+        segment = new Segment();
+        segments.add(segment);
+      }
+    }
+
+    for (Segment piece : segments) piece.finish();
+    return segments;
+  }
+
+  private static double[] point(JsonNode node) {
+    return new double[] {node.get("x").asDouble(), node.get("y").asDouble()};
+  }
+
+  // the fastest speed at each sample that both the forward and backward passes allow
+  private static double[] getProfile(Segment segment, double[] velocityCap, AccelerationLimit acceleration,
+      AccelerationLimit deceleration) {
+    int n = segment.size();
+    double[] velocity = new double[n];
+    velocity[0] = velocityCap[0];
+    for (int i = 0; i < n - 1; i++) {
+      double ds = segment.m_distance[i + 1] - segment.m_distance[i];
+      double a = Math.max(0, acceleration.get(velocity[i], segment.m_curvature[i]));
+      velocity[i + 1] = Math.min(velocityCap[i + 1], Math.sqrt(velocity[i] * velocity[i] + 2 * a * ds));
+    }
+    for (int i = n - 1; i > 0; i--) {
+      double ds = segment.m_distance[i] - segment.m_distance[i - 1];
+      double a = Math.max(0, deceleration.get(velocity[i], segment.m_curvature[i]));
+      velocity[i - 1] = Math.min(velocity[i - 1], Math.sqrt(velocity[i] * velocity[i] + 2 * a * ds));
+    }
+    return velocity;
+  }
+
+  private static double[] getOptimizedProfile(Segment segment) {
+    double traction = kTractionMargin * DriveConstants.kWheelCoefficientOfFriction * kGravity;
+    double maxSpeed = kSpeedMargin * Math.min(DriveConstants.kMaxSpeedMetersPerSecond,
+      ModuleConstants.kDriveWheelFreeSpeedRps * kBatteryVoltage / NeoMotorConstants.kNominalVoltage);
+    double moduleRadius = Math.hypot(DriveConstants.kWheelBase / 2, DriveConstants.kTrackWidth / 2);
+
+    // NEO model, scaled to the force of all four wheels at the ground
+    double resistance = NeoMotorConstants.kNominalVoltage / NeoMotorConstants.kStallCurrentAmps;
+    double torquePerAmp = NeoMotorConstants.kStallTorqueNewtonMeters / NeoMotorConstants.kStallCurrentAmps;
+    double freeSpeedRadiansPerSecond = NeoMotorConstants.kFreeSpeedRpm * 2 * Math.PI / 60;
+    double backEmfPerRadianPerSecond =
+      (NeoMotorConstants.kNominalVoltage - NeoMotorConstants.kFreeCurrentAmps * resistance) / freeSpeedRadiansPerSecond;
+    double wheelRadius = ModuleConstants.kWheelDiameterMeters / 2;
+    double accelerationPerAmp = 4 * torquePerAmp * ModuleConstants.kDrivingMotorReduction / wheelRadius / DriveConstants.kRobotMassKg;
+    double currentLimit = ModuleConstants.kDrivingMotorCurrentLimit;
+
+    double[] cap = new double[segment.size()];
+    for (int i = 0; i < cap.length; i++) {
+      double curveLimit = Math.sqrt(traction / Math.max(Math.abs(segment.m_curvature[i]), 1e-9));
+      double rotationLimit = maxSpeed / (1 + Math.abs(segment.m_rotationRate[i]) * moduleRadius);
+      cap[i] = Math.min(segment.m_velocityCap[i], Math.min(curveLimit, rotationLimit));
+    }
+
+    AccelerationLimit acceleration = (velocity, curvature) -> {
+      double motorSpeed = velocity / wheelRadius * ModuleConstants.kDrivingMotorReduction;
+      double current = Math.min(currentLimit, (kBatteryVoltage - motorSpeed * backEmfPerRadianPerSecond) / resistance);
+      return Math.min(accelerationPerAmp * (current - NeoMotorConstants.kFreeCurrentAmps), remainingTraction(traction, velocity, curvature));
+    };
+    // braking is only held back by the current limit, the back-EMF helps it
+    AccelerationLimit deceleration = (velocity, curvature) ->
+      Math.min(accelerationPerAmp * currentLimit, remainingTraction(traction, velocity, curvature));
+    return getProfile(segment, cap, acceleration, deceleration);
+  }
+
+  // what friction leaves for speeding up or slowing down after turning
+  private static double remainingTraction(double traction, double velocity, double curvature) {
+    double lateral = velocity * velocity * curvature;
+    return Math.sqrt(Math.max(0, traction * traction - lateral * lateral));
+  }
+
+  // PathConstraints limit speed and acceleration, and PathPlanner slows for curvature with the same acceleration
+  private static double getConstrainedTime(List<Segment> segments, PathConstraints[] constraints) {
+    double time = 0;
+    for (int s = 0; s < segments.size(); s++) {
+      Segment segment = segments.get(s);
+      PathConstraints constraint = constraints[Math.min(s, constraints.length - 1)];
+      double[] cap = new double[segment.size()];
+      for (int i = 0; i < cap.length; i++) {
+        double curveLimit = Math.sqrt(constraint.maxAcceleration / Math.max(Math.abs(segment.m_curvature[i]), 1e-9));
+        cap[i] = Math.min(segment.m_velocityCap[i], Math.min(constraint.maxVelocity, curveLimit));
+      }
+      AccelerationLimit limit = (velocity, curvature) -> constraint.maxAcceleration;
+      time += getTime(segment, getProfile(segment, cap, limit, limit));
+    }
+    return time;
+  }
+
+  private static double getTime(Segment segment, double[] velocity) {
+    double time = 0;
+    for (int i = 0; i < velocity.length - 1; i++) {
+      double ds = segment.m_distance[i + 1] - segment.m_distance[i];
+      time += 2 * ds / Math.max(velocity[i] + velocity[i + 1], 1e-6);
+    }
+    return time;
+  }
+
+  // one row per sample, with the time starting over at each stop
+  private static double writeTrajectory(List<Segment> segments, File file) throws IOException {
+    double totalTime = 0;
+    try (PrintWriter out = new PrintWriter(file)) {
+      out.println("segment,time,x,y,holonomicDegrees,velocity,acceleration,curvature");
+      for (int s = 0; s < segments.size(); s++) {
+        Segment segment = segments.get(s);
+        double[] velocity = getOptimizedProfile(segment);
+        double time = 0;
+        for (int i = 0; i < velocity.length; i++) {
+          double acceleration = 0;
+          if (i < velocity.length - 1) {
+            double ds = segment.m_distance[i + 1] - segment.m_distance[i];
+            if (ds > 1e-9) acceleration = (velocity[i + 1] * velocity[i + 1] - velocity[i] * velocity[i]) / (2 * ds);
+          }
+          double[] sample = segment.m_samples.get(i);
+          out.printf("%d,%.4f,%.4f,%.4f,%.2f,%.4f,%.4f,%.4f%n",
+            s, time, sample[0], sample[1], Math.toDegrees(sample[3]), velocity[i], acceleration, sample[2]);
+          if (i < velocity.length - 1) {
+            double ds = segment.m_distance[i + 1] - segment.m_distance[i];
+            time += 2 * ds / Math.max(velocity[i] + velocity[i + 1], 1e-6);
+          }
+        }
+        totalTime += time;
+      }
+    }
+    return totalTime;
+  }
+}
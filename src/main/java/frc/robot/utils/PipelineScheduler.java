@@ -0,0 +1,147 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import frc.robot.utils.LimelightClient.Snapshot;
+
+/**
+ * Decides which pipeline a Limelight runs when more than one user wants it.
+ *
+ * <p>Each user holds at most one request, a pipeline and a priority, until it releases it. The
+ * newest request of the highest priority owns the camera. If another request wants a different
+ * pipeline, the owner gives it a short slot once per sharing period, so the camera can keep
+ * localizing off AprilTags while a command aligns to retroreflective tape.
+ *
+ * <p>A pipeline switch takes a few frames, and frames from before it keep arriving afterwards.
+ * Every frame carries the pipeline the camera reports it ran, and a frame is only accepted for a
+ * pipeline if it came from that pipeline and was captured after the scheduler last switched to it.
+ */
+public class PipelineScheduler {
+  /** How much a request matters, lowest first. */
+  public enum Priority {
+    /** Background pose estimation, which can wait for a slot. */
+    LOCALIZE,
+    /** A command driving off the camera. */
+    ALIGN
+  }
+
+  private static final class Request {
+    private final Object m_owner;
+    private final int m_pipeline;
+    private final Priority m_priority;
+    private final double m_startSeconds;
+
+    private Request(Object owner, int pipeline, Priority priority, double startSeconds) {
+      m_owner = owner;
+      m_pipeline = pipeline;
+      m_priority = priority;
+      m_startSeconds = startSeconds;
+    }
+  }
+
+  // Limelight pipelines are numbered 0 through 9
+  private static final int kPipelineCount = 10;
+
+  private final int m_defaultPipeline;
+  private final double m_sharePeriodSeconds;
+  private final double m_shareSeconds;
+
+  private final List<Request> m_requests = new ArrayList<>();
+  private final double[] m_switchTimes = new double[kPipelineCount];
+  // unknown until the first update, so the camera is always told which pipeline to run
+  private int m_pipeline = -1;
+  private int m_switchCount = 0;
+
+  /**
+   * Creates a new PipelineScheduler.
+   *
+   * @param defaultPipeline Pipeline to run when nothing is requested.
+   * @param sharePeriodSeconds How often a request that does not own the camera gets a slot.
+   * @param shareSeconds How long that slot is, long enough for the switch and at least one frame.
+   */
+  public PipelineScheduler(int defaultPipeline, double sharePeriodSeconds, double shareSeconds) {
+    m_defaultPipeline = defaultPipeline;
+    m_sharePeriodSeconds = sharePeriodSeconds;
+    m_shareSeconds = shareSeconds;
+  }
+
+  /**
+   * Requests a pipeline, replacing any request already held by the owner.
+   *
+   * @param owner Who is asking, used to release the request later.
+   * @param pipeline The pipeline index.
+   * @param priority How much the request matters.
+   * @param timestampSeconds Current FPGA time.
+   */
+  public void request(Object owner, int pipeline, Priority priority, double timestampSeconds) {
+    release(owner);
+    m_requests.add(new Request(owner, pipeline, priority, timestampSeconds));
+  }
+
+  /** Drops the owner's request, if it has one. */
+  public void release(Object owner) {
+    m_requests.removeIf(request -> request.m_owner == owner);
+  }
+
+  /**
+   * Picks the pipeline for this loop. Call once per loop.
+   *
+   * @param timestampSeconds Current FPGA time.
+   * @return Whether the pipeline changed and has to be sent to the camera.
+   */
+  public boolean update(double timestampSeconds) {
+    Request owner = null;
+    for (Request request : m_requests) {
+      if (owner == null
+          || request.m_priority.compareTo(owner.m_priority) > 0
+          || (request.m_priority == owner.m_priority && request.m_startSeconds >= owner.m_startSeconds)) {
+        owner = request;
+      }
+    }
+
+    int pipeline = owner == null ? m_defaultPipeline : owner.m_pipeline;
+    if (owner != null) {
+      Request shared = null;
+      for (Request request : m_requests) {
+        if (request.m_pipeline == owner.m_pipeline) continue;
+        if (shared == null || request.m_priority.compareTo(shared.m_priority) > 0) shared = request;
+      }
+      // the owner runs first in each period so it gets frames as soon as it asks
+      double sinceStart = timestampSeconds - owner.m_startSeconds;
+      if (shared != null && sinceStart % m_sharePeriodSeconds >= m_sharePeriodSeconds - m_shareSeconds) {
+        pipeline = shared.m_pipeline;
+      }
+    }
+
+    if (pipeline == m_pipeline) return false;
+    m_pipeline = pipeline;
+    m_switchTimes[pipeline] = timestampSeconds;
+    m_switchCount++;
+    return true;
+  }
+
+  /** The pipeline the camera has been told to run. */
+  public int getPipeline() {
+    return m_pipeline;
+  }
+
+  /**
+   * Whether a frame came from a pipeline after the camera was last switched to it.
+   *
+   * @param frame The frame.
+   * @param pipeline The pipeline the reader wants.
+   * @return Whether the frame can be used as a frame of that pipeline.
+   */
+  public boolean isFrameFrom(Snapshot frame, int pipeline) {
+    return frame.pipelineIndex == pipeline && frame.timestampSeconds >= m_switchTimes[pipeline];
+  }
+
+  public int getSwitchCount() {
+    return m_switchCount;
+  }
+}
@@ -0,0 +1,175 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.ArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import com.revrobotics.AbsoluteEncoder;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.CANSparkMax.IdleMode;
+import com.revrobotics.MotorFeedbackSensor;
+import com.revrobotics.REVLibError;
+import com.revrobotics.RelativeEncoder;
+import com.revrobotics.SparkMaxPIDController;
+
+/**
+ * The full configuration of one SPARK MAX, applied by {@link SparkMaxConfigurator}.
+ *
+ * <p>Each setting pairs the setter with a read-back check. Settings whose value the SPARK MAX
+ * cannot report, such as the smart current limit, have no check and are applied on every boot.
+ */
+public class SparkMaxConfig {
+  private static final double kRelativeTolerance = 1e-4;
+
+  static class Setting {
+    final String name;
+    final Supplier<REVLibError> apply;
+    final BooleanSupplier verify;
+
+    Setting(String name, Supplier<REVLibError> apply, BooleanSupplier verify) {
+      this.name = name;
+      this.apply = apply;
+      this.verify = verify;
+    }
+  }
+
+  final CANSparkMax motor;
+  final String name;
+  final ArrayList<Setting> settings = new ArrayList<>();
+  boolean restoreFactoryDefaults = false;
+  boolean burnFlash = false;
+
+  /**
+   * Creates a new SparkMaxConfig.
+   *
+   * @param motor The controller to configure.
+   * @param name Name used when reporting errors.
+   */
+  public SparkMaxConfig(CANSparkMax motor, String name) {
+    this.motor = motor;
+    this.name = name;
+  }
+
+  /** Restores factory defaults before applying the settings, so nothing else carries over. */
+  public SparkMaxConfig restoreFactoryDefaults() {
+    restoreFactoryDefaults = true;
+    return this;
+  }
+
+  /** Saves the settings so they survive a brown out. Skipped when the controller already matches. */
+  public SparkMaxConfig burnFlash() {
+    burnFlash = true;
+    return this;
+  }
+
+  /**
+   * Adds a setting.
+   *
+   * @param name Name used when reporting errors.
+   * @param apply Applies the setting.
+   * @param verify Returns true if the controller reports the setting, or null if it cannot be read back.
+   */
+  public SparkMaxConfig setting(String name, Supplier<REVLibError> apply, BooleanSupplier verify) {
+    settings.add(new Setting(name, apply, verify));
+    return this;
+  }
+
+  public SparkMaxConfig inverted(boolean inverted) {
+    return setting("inverted",
+      () -> { motor.setInverted(inverted); return motor.getLastError(); },
+      () -> motor.getInverted() == inverted);
+  }
+
+  public SparkMaxConfig idleMode(IdleMode idleMode) {
+    return setting("idle mode", () -> motor.setIdleMode(idleMode), () -> motor.getIdleMode() == idleMode);
+  }
+
+  public SparkMaxConfig smartCurrentLimit(int limit) {
+    return setting("smart current limit", () -> motor.setSmartCurrentLimit(limit), null);
+  }
+
+  public SparkMaxConfig voltageCompensation(double nominalVoltage) {
+    return setting("voltage compensation",
+      () -> motor.enableVoltageCompensation(nominalVoltage),
+      () -> isClose(motor.getVoltageCompensationNominalVoltage(), nominalVoltage));
+  }
+
+  public SparkMaxConfig follow(CANSparkMax leader, boolean invert) {
+    return setting("follow", () -> motor.follow(leader, invert), motor::isFollower);
+  }
+
+  public SparkMaxConfig feedbackDevice(SparkMaxPIDController controller, MotorFeedbackSensor sensor) {
+    return setting("feedback device", () -> controller.setFeedbackDevice(sensor), null);
+  }
+
+  public SparkMaxConfig pid(SparkMaxPIDController controller, double p, double i, double d, double ff) {
+    return setting("P", () -> controller.setP(p), () -> isClose(controller.getP(), p))
+      .setting("I", () -> controller.setI(i), () -> isClose(controller.getI(), i))
+      .setting("D", () -> controller.setD(d), () -> isClose(controller.getD(), d))
+      .setting("FF", () -> controller.setFF(ff), () -> isClose(controller.getFF(), ff));
+  }
+
+  public SparkMaxConfig outputRange(SparkMaxPIDController controller, double min, double max) {
+    return setting("output range",
+      () -> controller.setOutputRange(min, max),
+      () -> isClose(controller.getOutputMin(), min) && isClose(controller.getOutputMax(), max));
+  }
+
+  public SparkMaxConfig positionWrapping(SparkMaxPIDController controller, double min, double max) {
+    return setting("position wrapping enabled",
+        () -> controller.setPositionPIDWrappingEnabled(true),
+        controller::getPositionPIDWrappingEnabled)
+      .setting("position wrapping range",
+        () -> {
+          REVLibError error = controller.setPositionPIDWrappingMinInput(min);
+          return error != REVLibError.kOk ? error : controller.setPositionPIDWrappingMaxInput(max);
+        },
+        () -> isClose(controller.getPositionPIDWrappingMinInput(), min)
+          && isClose(controller.getPositionPIDWrappingMaxInput(), max));
+  }
+
+  public SparkMaxConfig positionConversionFactor(RelativeEncoder encoder, double factor) {
+    return setting("encoder position factor",
+      () -> encoder.setPositionConversionFactor(factor),
+      () -> isClose(encoder.getPositionConversionFactor(), factor));
+  }
+
+  public SparkMaxConfig velocityConversionFactor(RelativeEncoder encoder, double factor) {
+    return setting("encoder velocity factor",
+      () -> encoder.setVelocityConversionFactor(factor),
+      () -> isClose(encoder.getVelocityConversionFactor(), factor));
+  }
+
+  public SparkMaxConfig positionConversionFactor(AbsoluteEncoder encoder, double factor) {
+    return setting("absolute encoder position factor",
+      () -> encoder.setPositionConversionFactor(factor),
+      () -> isClose(encoder.getPositionConversionFactor(), factor));
+  }
+
+  public SparkMaxConfig velocityConversionFactor(AbsoluteEncoder encoder, double factor) {
+    return setting("absolute encoder velocity factor",
+      () -> encoder.setVelocityConversionFactor(factor),
+      () -> isClose(encoder.getVelocityConversionFactor(), factor));
+  }
+
+  public SparkMaxConfig inverted(AbsoluteEncoder encoder, boolean inverted) {
+    return setting("absolute encoder inverted",
+      () -> encoder.setInverted(inverted),
+      () -> encoder.getInverted() == inverted);
+  }
+
+  public SparkMaxConfig zeroOffset(AbsoluteEncoder encoder, double zeroOffset) {
+    return setting("absolute encoder zero offset",
+      () -> encoder.setZeroOffset(zeroOffset),
+      () -> isClose(encoder.getZeroOffset(), zeroOffset));
+  }
+
+  // the controller stores parameters as floats
+  private static boolean isClose(double actual, double expected) {
+    return Math.abs(actual - expected) <= kRelativeTolerance * Math.max(1, Math.abs(expected));
+  }
+}
@@ -0,0 +1,156 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.revrobotics.REVLibError;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.utils.SparkMaxConfig.Setting;
+
+/**
+ * Applies every registered {@link SparkMaxConfig} at startup.
+ *
+ * <p>Each SPARK MAX call waits for the controller to answer, so configuring the robot one device
+ * after another takes seconds. Devices are configured in parallel instead, each on its own thread.
+ *
+ * <p>A device is first read back. If every setting that can be read back already matches, the
+ * factory reset and burnFlash are skipped, since they are the slowest calls and wear the flash, and
+ * only the settings that cannot be read back are sent. Otherwise each setting is applied and read
+ * back, retrying a few times, and anything that still does not stick is reported to the driver
+ * station instead of being silently ignored.
+ *
+ * <p>Encoder readings are only in the configured units once this has run, so anything that reads
+ * or resets an encoder at startup registers it with {@link #whenConfigured(Runnable)}.
+ */
+public final class SparkMaxConfigurator {
+  private static final int kMaxThreads = 8;
+  private static final int kAttempts = 3;
+  private static final double kTimeoutSeconds = 10;
+
+  /** What happened to a device. */
+  public enum Result {
+    /** Already configured, nothing was saved. */
+    MATCHED,
+    /** Configured and verified. */
+    CONFIGURED,
+    /** At least one setting could not be applied. */
+    FAILED
+  }
+
+  private static final ArrayList<SparkMaxConfig> m_configs = new ArrayList<>();
+  private static final ArrayList<Runnable> m_configuredActions = new ArrayList<>();
+
+  private SparkMaxConfigurator() {}
+
+  /**
+   * Registers a device to be configured by {@link #configureAll()}.
+   *
+   * @param config The device's configuration.
+   */
+  public static void register(SparkMaxConfig config) {
+    m_configs.add(config);
+  }
+
+  /**
+   * Registers an action to run once {@link #configureAll()} has finished, in registration order.
+   *
+   * @param action The action.
+   */
+  public static void whenConfigured(Runnable action) {
+    m_configuredActions.add(action);
+  }
+
+  /** Configures every registered device, waits for all of them to finish, then runs the actions. */
+  public static void configureAll() {
+    configureDevices();
+    for (Runnable action : m_configuredActions) action.run();
+    m_configuredActions.clear();
+  }
+
+  private static void configureDevices() {
+    if (m_configs.isEmpty()) return;
+    double startTime = Timer.getFPGATimestamp();
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(m_configs.size(), kMaxThreads));
+    ArrayList<Future<Result>> results = new ArrayList<>();
+    for (SparkMaxConfig config : m_configs) {
+      results.add(executor.submit(() -> configure(config)));
+    }
+    executor.shutdown();
+
+    for (int i = 0; i < m_configs.size(); i++) {
+      String name = m_configs.get(i).name;
+      Result result;
+      try {
+        result = results.get(i).get((long) (kTimeoutSeconds * 1000), TimeUnit.MILLISECONDS);
+      } catch (Exception e) {
+        DriverStation.reportError(name + " configuration did not finish: " + e, false);
+        result = Result.FAILED;
+      }
+      SmartDashboard.putString("SPARK MAX Config/" + name, result.name());
+    }
+    executor.shutdownNow();
+    m_configs.clear();
+
+    SmartDashboard.putNumber("SPARK MAX Config Time", Timer.getFPGATimestamp() - startTime);
+  }
+
+  private static Result configure(SparkMaxConfig config) {
+    Result result;
+    if (matches(config)) {
+      // nothing to save, but settings that cannot be read back are not trusted
+      result = Result.MATCHED;
+      for (Setting setting : config.settings) {
+        if (setting.verify == null && !apply(config, setting)) result = Result.FAILED;
+      }
+    } else {
+      result = Result.CONFIGURED;
+      if (config.restoreFactoryDefaults && !retry(config, "factory defaults", () -> config.motor.restoreFactoryDefaults())) {
+        result = Result.FAILED;
+      }
+      for (Setting setting : config.settings) {
+        if (!apply(config, setting)) result = Result.FAILED;
+      }
+      // a partial configuration is not worth saving over the last good one
+      if (config.burnFlash && result != Result.FAILED && !retry(config, "burn flash", config.motor::burnFlash)) {
+        result = Result.FAILED;
+      }
+    }
+
+    SparkMaxStatusFrames.apply(config.motor);
+    return result;
+  }
+
+  private static boolean matches(SparkMaxConfig config) {
+    for (Setting setting : config.settings) {
+      if (setting.verify != null && !setting.verify.getAsBoolean()) return false;
+    }
+    return true;
+  }
+
+  private static boolean apply(SparkMaxConfig config, Setting setting) {
+    for (int attempt = 0; attempt < kAttempts; attempt++) {
+      if (setting.apply.get() == REVLibError.kOk
+          && (setting.verify == null || setting.verify.getAsBoolean())) {
+        return true;
+      }
+    }
+    DriverStation.reportError(config.name + " " + setting.name + " not set after " + kAttempts + " attempts", false);
+    return false;
+  }
+
+  private static boolean retry(SparkMaxConfig config, String name, Supplier<REVLibError> call) {
+    return apply(config, new Setting(name, call, null));
+  }
+}
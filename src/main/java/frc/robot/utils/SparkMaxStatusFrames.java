@@ -0,0 +1,163 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.ArrayList;
+
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.CANSparkMax.FaultID;
+import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
+import com.revrobotics.REVLibError;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Sets the periodic status frame rates of every SPARK MAX from what its subsystem reads.
+ *
+ * <p>By default every SPARK MAX sends all seven status frames whether or not anything reads them.
+ * Each device is registered with a {@link StatusProfile} that keeps the frames its subsystem uses
+ * fast and slows the rest down. The estimated status frame load is published next to the measured
+ * bus utilization so the savings can be checked.
+ *
+ * <p>Status frame rates are not saved by burnFlash, so a controller that browns out comes back at
+ * the defaults. {@link #updateTelemetry()} watches for the reset fault and applies the profile again.
+ */
+public final class SparkMaxStatusFrames {
+  // in ms, indexed by PeriodicFrame.kStatus0 to kStatus6
+  private static final int[] kDefaultPeriods = {10, 20, 20, 50, 20, 200, 200};
+  private static final int kSlowPeriod = 500;
+  private static final int kFollowedStatus0Period = 10;
+
+  // an extended frame with 8 data bytes and worst case bit stuffing
+  private static final double kBitsPerFrame = 160;
+  private static final double kBusBitsPerSecond = 1e6;
+
+  /**
+   * Frame periods for what a device is used for. Status 0 carries applied output and faults and is
+   * what followers track, status 1 has velocity, current and temperature, status 2 has the internal
+   * encoder position, and status 5 has the duty cycle absolute encoder position.
+   */
+  public enum StatusProfile {
+    /** Drive motor, reads internal encoder velocity and position. */
+    DRIVE(20, 20, 20, kSlowPeriod, kSlowPeriod, kSlowPeriod, kSlowPeriod),
+    /** Steering or arm joint, reads the absolute encoder position. */
+    ABSOLUTE_POSITION(20, kSlowPeriod, kSlowPeriod, kSlowPeriod, kSlowPeriod, 20, kSlowPeriod),
+    /** Flywheel, reads internal encoder velocity as fast as it is sent. */
+    VELOCITY(20, 10, kSlowPeriod, kSlowPeriod, kSlowPeriod, kSlowPeriod, kSlowPeriod),
+    /** Roller, reads output current for game piece detection. */
+    CURRENT(20, 20, kSlowPeriod, kSlowPeriod, kSlowPeriod, kSlowPeriod, kSlowPeriod),
+    /** Follower, nothing is read from it. */
+    FOLLOWER(100, kSlowPeriod, kSlowPeriod, kSlowPeriod, kSlowPeriod, kSlowPeriod, kSlowPeriod);
+
+    private final int[] m_periods;
+
+    StatusProfile(int... periods) {
+      m_periods = periods;
+    }
+  }
+
+  private static class Device {
+    final CANSparkMax motor;
+    final String name;
+    final int[] periods;
+
+    Device(CANSparkMax motor, String name, int[] periods) {
+      this.motor = motor;
+      this.name = name;
+      this.periods = periods;
+    }
+  }
+
+  private static final ArrayList<Device> m_devices = new ArrayList<>();
+  private static double m_estimatedLoad = 0;
+  private static double m_defaultLoad = 0;
+  private static int m_reapplyCount = 0;
+
+  private SparkMaxStatusFrames() {}
+
+  /**
+   * Registers a SPARK MAX. The periods are set by {@link #apply(CANSparkMax)} once the controller
+   * has been configured, since a factory reset would undo them.
+   *
+   * @param motor The controller.
+   * @param name Name used when reporting errors.
+   * @param profile What the controller's subsystem reads from it.
+   * @param hasFollowers Whether other controllers follow this one, which keeps status 0 fast.
+   */
+  public static void configure(CANSparkMax motor, String name, StatusProfile profile, boolean hasFollowers) {
+    int[] periods = profile.m_periods.clone();
+    if (hasFollowers) periods[0] = Math.min(periods[0], kFollowedStatus0Period);
+
+    m_devices.add(new Device(motor, name, periods));
+    m_estimatedLoad += getLoad(periods);
+    m_defaultLoad += getLoad(kDefaultPeriods);
+  }
+
+  public static void configure(CANSparkMax motor, String name, StatusProfile profile) {
+    configure(motor, name, profile, false);
+  }
+
+  /**
+   * Sets the status frame periods of a registered SPARK MAX.
+   *
+   * @param motor The controller.
+   */
+  public static void apply(CANSparkMax motor) {
+    for (int i = 0; i < m_devices.size(); i++) {
+      Device device = m_devices.get(i);
+      if (device.motor == motor) {
+        apply(device);
+        // the reset fault from power-on is not a brown out
+        motor.clearFaults();
+      }
+    }
+  }
+
+  private static void apply(Device device) {
+    PeriodicFrame[] frames = PeriodicFrame.values();
+    for (int i = 0; i < device.periods.length && i < frames.length; i++) {
+      REVLibError error = device.motor.setPeriodicFramePeriod(frames[i], device.periods[i]);
+      if (error != REVLibError.kOk) {
+        DriverStation.reportWarning(
+          device.name + " status frame " + i + " period not set: " + error.name(), false);
+      }
+    }
+  }
+
+  private static double getLoad(int[] periods) {
+    double framesPerSecond = 0;
+    for (int period : periods) framesPerSecond += 1000.0 / period;
+    return framesPerSecond * kBitsPerFrame / kBusBitsPerSecond;
+  }
+
+  /** Estimated fraction of the bus used by the configured status frames. */
+  public static double getEstimatedLoad() {
+    return m_estimatedLoad;
+  }
+
+  /** Estimated fraction of the bus the same devices would use at the default rates. */
+  public static double getDefaultLoad() {
+    return m_defaultLoad;
+  }
+
+  /** Reapplies the profile of any controller that has reset, and reports bus load. */
+  public static void updateTelemetry() {
+    for (int i = 0; i < m_devices.size(); i++) {
+      Device device = m_devices.get(i);
+      if (device.motor.getStickyFault(FaultID.kHasReset)) {
+        apply(device);
+        device.motor.clearFaults();
+        m_reapplyCount++;
+      }
+    }
+
+    SmartDashboard.putNumber("CAN Status Load Estimate %", 100 * m_estimatedLoad);
+    SmartDashboard.putNumber("CAN Default Status Load Estimate %", 100 * m_defaultLoad);
+    SmartDashboard.putNumber("CAN Bus Utilization %", 100 * RobotController.getCANStatus().percentBusUtilization);
+    SmartDashboard.putNumber("CAN Status Frame Reapplies", m_reapplyCount);
+  }
+}
@@ -0,0 +1,171 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+
+/**
+ * Produces swerve module setpoints that the modules can actually follow.
+ *
+ * <p>Each call moves the previous chassis speeds a fraction of the way towards the desired chassis
+ * speeds. The fraction is the largest one for which no module has to steer faster than the max
+ * steer rate or change its velocity vector faster than the max wheel acceleration. Since the
+ * interpolation happens in chassis speed space every module stays kinematically consistent with
+ * the others, so the wheels do not fight each other while they turn.
+ *
+ * <p>A module that was stopped is free to steer, since it is not scrubbing. A module that ends up
+ * stopped holds its previous heading instead of snapping to zero, and module headings are flipped
+ * against the previous setpoint so a reversal drives backwards instead of steering half a turn.
+ */
+public class SwerveSetpointGenerator {
+  private static final double kStoppedSpeedMetersPerSecond = 1e-3;
+  private static final int kSteeringSearchIterations = 10;
+
+  private final SwerveDriveKinematics m_kinematics;
+  private final double m_maxSpeed;
+  private final double m_maxSteerRate;
+  private double m_maxAcceleration;
+
+  private ChassisSpeeds m_previousSpeeds = new ChassisSpeeds();
+  private SwerveModuleState[] m_previousStates;
+  private double m_lastScale = 1;
+
+  /**
+   * Creates a new SwerveSetpointGenerator.
+   *
+   * @param kinematics The drivetrain kinematics.
+   * @param maxSpeed Maximum module speed in meters per second.
+   * @param maxSteerRate Maximum module steering rate in radians per second.
+   * @param maxAcceleration Maximum change of a module's velocity vector in meters per second squared.
+   */
+  public SwerveSetpointGenerator(SwerveDriveKinematics kinematics, double maxSpeed, double maxSteerRate, double maxAcceleration) {
+    m_kinematics = kinematics;
+    m_maxSpeed = maxSpeed;
+    m_maxSteerRate = maxSteerRate;
+    m_maxAcceleration = maxAcceleration;
+    m_previousStates = kinematics.toSwerveModuleStates(new ChassisSpeeds());
+  }
+
+  /**
+   * Changes the wheel acceleration limit, such as to ease off while traction is lost.
+   *
+   * @param maxAcceleration Maximum change of a module's velocity vector in meters per second squared.
+   */
+  public void setMaxAcceleration(double maxAcceleration) {
+    m_maxAcceleration = maxAcceleration;
+  }
+
+  /**
+   * Restarts the generator from the given module states, such as the measured states.
+   *
+   * @param moduleStates The states to continue from.
+   */
+  public void reset(SwerveModuleState[] moduleStates) {
+    m_previousSpeeds = m_kinematics.toChassisSpeeds(moduleStates);
+    for (int i = 0; i < m_previousStates.length; i++) {
+      m_previousStates[i] = new SwerveModuleState(moduleStates[i].speedMetersPerSecond, moduleStates[i].angle);
+    }
+  }
+
+  /**
+   * Returns the next feasible module states on the way to the desired chassis speeds.
+   *
+   * @param desiredSpeeds The desired robot-relative chassis speeds.
+   * @param dt Seconds since the last call.
+   * @return The module states to command.
+   */
+  public SwerveModuleState[] generate(ChassisSpeeds desiredSpeeds, double dt) {
+    SwerveModuleState[] desiredStates = m_kinematics.toSwerveModuleStates(desiredSpeeds);
+    SwerveDriveKinematics.desaturateWheelSpeeds(desiredStates, m_maxSpeed);
+    desiredSpeeds = m_kinematics.toChassisSpeeds(desiredStates);
+
+    double maxSteer = m_maxSteerRate * dt;
+    double maxVelocityChange = m_maxAcceleration * dt;
+    double scale = 1;
+
+    for (int i = 0; i < desiredStates.length; i++) {
+      double previousVx = m_previousStates[i].speedMetersPerSecond * m_previousStates[i].angle.getCos();
+      double previousVy = m_previousStates[i].speedMetersPerSecond * m_previousStates[i].angle.getSin();
+      double desiredVx = desiredStates[i].speedMetersPerSecond * desiredStates[i].angle.getCos();
+      double desiredVy = desiredStates[i].speedMetersPerSecond * desiredStates[i].angle.getSin();
+
+      double velocityChange = Math.hypot(desiredVx - previousVx, desiredVy - previousVy);
+      if (velocityChange > maxVelocityChange) {
+        scale = Math.min(scale, maxVelocityChange / velocityChange);
+      }
+
+      if (Math.abs(m_previousStates[i].speedMetersPerSecond) > kStoppedSpeedMetersPerSecond) {
+        scale = Math.min(scale, findSteeringLimit(
+          previousVx, previousVy, desiredVx, desiredVy, m_previousStates[i].angle.getRadians(), maxSteer));
+      }
+    }
+    m_lastScale = scale;
+
+    ChassisSpeeds limitedSpeeds = new ChassisSpeeds(
+      m_previousSpeeds.vxMetersPerSecond + scale * (desiredSpeeds.vxMetersPerSecond - m_previousSpeeds.vxMetersPerSecond),
+      m_previousSpeeds.vyMetersPerSecond + scale * (desiredSpeeds.vyMetersPerSecond - m_previousSpeeds.vyMetersPerSecond),
+      m_previousSpeeds.omegaRadiansPerSecond + scale * (desiredSpeeds.omegaRadiansPerSecond - m_previousSpeeds.omegaRadiansPerSecond));
+    SwerveModuleState[] limitedStates = m_kinematics.toSwerveModuleStates(limitedSpeeds);
+
+    for (int i = 0; i < limitedStates.length; i++) {
+      if (Math.abs(limitedStates[i].speedMetersPerSecond) < kStoppedSpeedMetersPerSecond) {
+        // a stopped module points where it is about to drive, or keeps its heading if nothing is asked of it
+        Rotation2d heading = Math.abs(desiredStates[i].speedMetersPerSecond) > kStoppedSpeedMetersPerSecond
+          ? desiredStates[i].angle
+          : m_previousStates[i].angle;
+        limitedStates[i] = SwerveModuleState.optimize(new SwerveModuleState(0, heading), m_previousStates[i].angle);
+      } else {
+        limitedStates[i] = SwerveModuleState.optimize(limitedStates[i], m_previousStates[i].angle);
+      }
+    }
+
+    m_previousSpeeds = limitedSpeeds;
+    m_previousStates = limitedStates;
+    return limitedStates;
+  }
+
+  // largest fraction of the way from previous to desired velocity that stays within the steering limit
+  private static double findSteeringLimit(double previousVx, double previousVy, double desiredVx, double desiredVy,
+      double heading, double maxSteer) {
+    if (getSteeringError(desiredVx, desiredVy, heading) <= maxSteer) return 1;
+
+    double low = 0;
+    double high = 1;
+    for (int i = 0; i < kSteeringSearchIterations; i++) {
+      double mid = 0.5 * (low + high);
+      double vx = previousVx + mid * (desiredVx - previousVx);
+      double vy = previousVy + mid * (desiredVy - previousVy);
+      if (getSteeringError(vx, vy, heading) <= maxSteer) {
+        low = mid;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  // steering needed to point along the velocity, allowing the module to drive backwards
+  private static double getSteeringError(double vx, double vy, double heading) {
+    if (Math.hypot(vx, vy) < kStoppedSpeedMetersPerSecond) return 0;
+    double error = MathUtil.angleModulus(Math.atan2(vy, vx) - heading);
+    if (error > Math.PI / 2) error -= Math.PI;
+    if (error < -Math.PI / 2) error += Math.PI;
+    return Math.abs(error);
+  }
+
+  /** The chassis speeds of the last generated setpoint. */
+  public ChassisSpeeds getSetpointSpeeds() {
+    return m_previousSpeeds;
+  }
+
+  /** Fraction of the requested change applied by the last call, 1 when nothing was limited. */
+  public double getLastScale() {
+    return m_lastScale;
+  }
+}
@@ -1,7 +1,34 @@
 package frc.robot.utils;
 
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+
 public class SwerveUtils {
 
+    /**
+     * Corrects chassis speeds for the robot rotating during one loop.  Module states are held constant for the whole loop,
+     * so a robot that translates while rotating follows an arc and drifts sideways.  This finds the speeds whose arc over
+     * {@code _dtSeconds} ends at the pose the instantaneous speeds were aiming for.
+     * @param _speeds The desired robot-relative chassis speeds.
+     * @param _dtSeconds The duration of the loop (in seconds) the speeds will be held for.
+     * @return The corrected robot-relative chassis speeds, or {@code _speeds} if {@code _dtSeconds} is not positive.
+     */
+    public static ChassisSpeeds Discretize(ChassisSpeeds _speeds, double _dtSeconds) {
+        if (_dtSeconds <= 0.0) {
+            return _speeds;
+        }
+
+        Pose2d desiredDelta = new Pose2d(
+            _speeds.vxMetersPerSecond * _dtSeconds,
+            _speeds.vyMetersPerSecond * _dtSeconds,
+            Rotation2d.fromRadians(_speeds.omegaRadiansPerSecond * _dtSeconds));
+        Twist2d twist = new Pose2d().log(desiredDelta);
+
+        return new ChassisSpeeds(twist.dx / _dtSeconds, twist.dy / _dtSeconds, twist.dtheta / _dtSeconds);
+    }
+
     /**
      * Steps a value towards a target with a specified step size.
      * @param _current The current or starting value.  Can be positive or negative.
@@ -0,0 +1,218 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.interpolation.TimeInterpolatableBuffer;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+
+/**
+ * Kalman filter for the position of a stationary vision target, predicted every loop from
+ * drivetrain motion.
+ *
+ * <p>The tracker dead-reckons its own robot pose from the measured chassis speeds and the gyro, and
+ * keeps the target position in that frame. Because the target does not move, predicting it between
+ * frames only means moving the robot, so the distance and bearing to the target are available at the
+ * loop rate and through short dropouts. The filter only adds uncertainty while it coasts.
+ *
+ * <p>A camera observation is a distance and bearing measured when the image was captured. It is
+ * placed using the dead-reckoned pose at the capture time, so latency does not drag the target
+ * along with the robot. Range is trusted less the further away the target is. An observation that
+ * is too far from the current estimate is treated as a different target and ignored, unless the
+ * track has already gone stale.
+ */
+public class TargetTracker {
+  private static final double kPoseHistorySeconds = 1.0;
+
+  private final double m_rangeStdDevFraction;
+  private final double m_bearingStdDevRadians;
+  private final double m_processNoise;
+  private final double m_coastSeconds;
+  private final double m_gateChiSquared;
+
+  private final TimeInterpolatableBuffer<Pose2d> m_poseHistory =
+      TimeInterpolatableBuffer.createBuffer(kPoseHistorySeconds);
+  private Pose2d m_pose = new Pose2d();
+  private double m_lastPredictTime = Double.NaN;
+
+  // target position in the dead-reckoned frame and its covariance
+  private boolean m_hasTrack = false;
+  private double m_x = 0;
+  private double m_y = 0;
+  private double m_pxx = 0;
+  private double m_pxy = 0;
+  private double m_pyy = 0;
+  private double m_lastObservationTime = Double.NEGATIVE_INFINITY;
+  private int m_rejectedCount = 0;
+
+  /**
+   * Creates a new TargetTracker.
+   *
+   * @param rangeStdDevFraction Range standard deviation as a fraction of the range.
+   * @param bearingStdDevRadians Bearing standard deviation.
+   * @param processNoise Growth of the position variance while coasting, in square meters per second.
+   * @param coastSeconds How long the track is kept without an observation.
+   * @param gateChiSquared Largest squared Mahalanobis distance of an observation from the estimate.
+   */
+  public TargetTracker(double rangeStdDevFraction, double bearingStdDevRadians, double processNoise,
+      double coastSeconds, double gateChiSquared) {
+    m_rangeStdDevFraction = rangeStdDevFraction;
+    m_bearingStdDevRadians = bearingStdDevRadians;
+    m_processNoise = processNoise;
+    m_coastSeconds = coastSeconds;
+    m_gateChiSquared = gateChiSquared;
+  }
+
+  /** Drops the track and the pose history, such as when a new alignment starts. */
+  public void reset() {
+    m_hasTrack = false;
+    m_lastObservationTime = Double.NEGATIVE_INFINITY;
+    m_lastPredictTime = Double.NaN;
+    m_poseHistory.clear();
+    m_pose = new Pose2d();
+  }
+
+  /**
+   * Moves the robot by the measured motion since the last call. Call once per loop.
+   *
+   * @param robotRelativeSpeeds Measured robot-relative chassis speeds.
+   * @param headingRadians Gyro heading, counterclockwise positive.
+   * @param timestampSeconds Current FPGA time.
+   */
+  public void predict(ChassisSpeeds robotRelativeSpeeds, double headingRadians, double timestampSeconds) {
+    double dt = Double.isNaN(m_lastPredictTime) ? 0 : timestampSeconds - m_lastPredictTime;
+    m_lastPredictTime = timestampSeconds;
+
+    Rotation2d heading = new Rotation2d(headingRadians);
+    Translation2d fieldVelocity = new Translation2d(
+        robotRelativeSpeeds.vxMetersPerSecond, robotRelativeSpeeds.vyMetersPerSecond).rotateBy(heading);
+    m_pose = new Pose2d(m_pose.getTranslation().plus(fieldVelocity.times(dt)), heading);
+    m_poseHistory.addSample(timestampSeconds, m_pose);
+
+    if (m_hasTrack) {
+      m_pxx += m_processNoise * dt;
+      m_pyy += m_processNoise * dt;
+    }
+  }
+
+  /**
+   * Adds a camera observation.
+   *
+   * @param distanceMeters Horizontal distance from the camera to the target.
+   * @param bearingRadians Angle of the target in the camera frame, counterclockwise positive.
+   * @param cameraYawRadians Direction the camera faces relative to the front of the robot.
+   * @param timestampSeconds FPGA time the image was captured.
+   * @return Whether the observation was used.
+   */
+  public boolean addObservation(double distanceMeters, double bearingRadians, double cameraYawRadians,
+      double timestampSeconds) {
+    if (!Double.isFinite(distanceMeters) || distanceMeters <= 0) return false;
+
+    Pose2d pose = m_poseHistory.getSample(timestampSeconds);
+    if (pose == null) pose = m_pose;
+
+    double angle = pose.getRotation().getRadians() + cameraYawRadians + bearingRadians;
+    double cos = Math.cos(angle);
+    double sin = Math.sin(angle);
+    double zx = pose.getX() + distanceMeters * cos;
+    double zy = pose.getY() + distanceMeters * sin;
+
+    // range and cross-range variances rotated into the tracking frame
+    double rangeVariance = Math.pow(m_rangeStdDevFraction * distanceMeters, 2);
+    double crossVariance = Math.pow(m_bearingStdDevRadians * distanceMeters, 2);
+    double rxx = rangeVariance * cos * cos + crossVariance * sin * sin;
+    double rxy = (rangeVariance - crossVariance) * cos * sin;
+    double ryy = rangeVariance * sin * sin + crossVariance * cos * cos;
+
+    boolean stale = timestampSeconds - m_lastObservationTime > m_coastSeconds;
+    if (!m_hasTrack || stale) {
+      m_x = zx;
+      m_y = zy;
+      m_pxx = rxx;
+      m_pxy = rxy;
+      m_pyy = ryy;
+      m_hasTrack = true;
+      m_lastObservationTime = timestampSeconds;
+      return true;
+    }
+
+    double sxx = m_pxx + rxx;
+    double sxy = m_pxy + rxy;
+    double syy = m_pyy + ryy;
+    double det = sxx * syy - sxy * sxy;
+    if (det <= 0) return false;
+    double ixx = syy / det;
+    double ixy = -sxy / det;
+    double iyy = sxx / det;
+
+    double ex = zx - m_x;
+    double ey = zy - m_y;
+    double mahalanobis = ex * (ixx * ex + ixy * ey) + ey * (ixy * ex + iyy * ey);
+    if (mahalanobis > m_gateChiSquared) {
+      m_rejectedCount++;
+      return false;
+    }
+
+    // K = P S^-1
+    double kxx = m_pxx * ixx + m_pxy * ixy;
+    double kxy = m_pxx * ixy + m_pxy * iyy;
+    double kyx = m_pxy * ixx + m_pyy * ixy;
+    double kyy = m_pxy * ixy + m_pyy * iyy;
+
+    m_x += kxx * ex + kxy * ey;
+    m_y += kyx * ex + kyy * ey;
+
+    // P = (I - K) P
+    double pxx = (1 - kxx) * m_pxx - kxy * m_pxy;
+    double pxy = (1 - kxx) * m_pxy - kxy * m_pyy;
+    double pyy = -kyx * m_pxy + (1 - kyy) * m_pyy;
+    m_pxx = pxx;
+    m_pxy = pxy;
+    m_pyy = pyy;
+
+    m_lastObservationTime = Math.max(m_lastObservationTime, timestampSeconds);
+    return true;
+  }
+
+  /** Whether there is a target observed within the coast time. */
+  public boolean hasTarget() {
+    return m_hasTrack && m_lastPredictTime - m_lastObservationTime <= m_coastSeconds;
+  }
+
+  /** Predicted horizontal distance from the robot to the target. */
+  public double getDistanceMeters() {
+    return Math.hypot(m_x - m_pose.getX(), m_y - m_pose.getY());
+  }
+
+  /**
+   * Predicted angle of the target in a camera's frame.
+   *
+   * @param cameraYawRadians Direction the camera faces relative to the front of the robot.
+   * @return The bearing, counterclockwise positive.
+   */
+  public double getBearingRadians(double cameraYawRadians) {
+    return MathUtil.angleModulus(Math.atan2(m_y - m_pose.getY(), m_x - m_pose.getX())
+        - m_pose.getRotation().getRadians() - cameraYawRadians);
+  }
+
+  /** Seconds since the last observation was used. */
+  public double getCoastSeconds() {
+    return m_lastPredictTime - m_lastObservationTime;
+  }
+
+  /** Standard deviation of the target position along its worst axis. */
+  public double getPositionStdDev() {
+    double mean = 0.5 * (m_pxx + m_pyy);
+    double spread = Math.sqrt(0.25 * (m_pxx - m_pyy) * (m_pxx - m_pyy) + m_pxy * m_pxy);
+    return Math.sqrt(mean + spread);
+  }
+
+  public int getRejectedCount() {
+    return m_rejectedCount;
+  }
+}
@@ -0,0 +1,81 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.controller;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.PIDController;
+
+/**
+ * Profiled heading controller that does not allocate, for running inside the drive loop.
+ *
+ * <p>The setpoint moves towards the goal along a trapezoid profile, at the fastest rate that can
+ * still stop at the goal within the acceleration limit, and is advanced one step per call in place
+ * instead of building a profile each loop like {@link AsymmetricProfiledPIDController}. The output
+ * is the setpoint's rate as feedforward plus PID on the heading error to the setpoint. Headings are
+ * in radians and wrap, so the robot always turns the short way.
+ */
+public class HeadingController {
+  private final PIDController m_controller;
+  private final double m_maxVelocity;
+  private final double m_maxAcceleration;
+
+  private double m_setpoint = 0;
+  private double m_setpointVelocity = 0;
+
+  /**
+   * Creates a new HeadingController.
+   *
+   * @param kP Proportional gain, in radians per second per radian.
+   * @param kD Derivative gain.
+   * @param maxVelocity Fastest the setpoint turns, in radians per second.
+   * @param maxAcceleration Fastest the setpoint's rate changes, in radians per second squared.
+   */
+  public HeadingController(double kP, double kD, double maxVelocity, double maxAcceleration) {
+    m_controller = new PIDController(kP, 0, kD);
+    m_controller.enableContinuousInput(-Math.PI, Math.PI);
+    m_maxVelocity = maxVelocity;
+    m_maxAcceleration = maxAcceleration;
+  }
+
+  /**
+   * Starts the setpoint from the robot's heading and rate, so taking over does not jerk.
+   *
+   * @param headingRadians The measured heading.
+   * @param rateRadiansPerSecond The measured turn rate.
+   */
+  public void reset(double headingRadians, double rateRadiansPerSecond) {
+    m_setpoint = MathUtil.angleModulus(headingRadians);
+    m_setpointVelocity = MathUtil.clamp(rateRadiansPerSecond, -m_maxVelocity, m_maxVelocity);
+    m_controller.reset();
+  }
+
+  /**
+   * Returns the turn rate to reach and hold a heading.
+   *
+   * @param headingRadians The measured heading.
+   * @param goalRadians The heading to hold.
+   * @param dtSeconds Time since the last call.
+   * @return The turn rate, in radians per second.
+   */
+  public double calculate(double headingRadians, double goalRadians, double dtSeconds) {
+    double remaining = MathUtil.angleModulus(goalRadians - m_setpoint);
+    double maxChange = m_maxAcceleration * dtSeconds;
+    // fastest rate that can still stop at the goal
+    double stoppingVelocity = Math.copySign(
+      Math.min(m_maxVelocity, Math.sqrt(2 * m_maxAcceleration * Math.abs(remaining))), remaining);
+    m_setpointVelocity += MathUtil.clamp(stoppingVelocity - m_setpointVelocity, -maxChange, maxChange);
+
+    double step = m_setpointVelocity * dtSeconds;
+    if (Math.abs(step) >= Math.abs(remaining) && Math.abs(m_setpointVelocity) <= maxChange + 1e-9) {
+      // close enough to stop on the goal this step
+      m_setpoint = MathUtil.angleModulus(goalRadians);
+      m_setpointVelocity = 0;
+    } else {
+      m_setpoint = MathUtil.angleModulus(m_setpoint + step);
+    }
+
+    return m_setpointVelocity + m_controller.calculate(MathUtil.angleModulus(headingRadians), m_setpoint);
+  }
+}
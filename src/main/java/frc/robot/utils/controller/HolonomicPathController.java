@@ -0,0 +1,128 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.controller;
+
+import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPlannerTrajectory.PathPlannerState;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+
+/**
+ * Holonomic trajectory tracking with feedforward from the trajectory and feedback on the pose error.
+ *
+ * <p>The feedforward is the path's own velocity and holonomic rotation rate, sampled a latency
+ * ahead of now since a command sent this loop only takes effect once the modules respond. The
+ * path's acceleration adds a lead on top, so the modules' velocity loops are asked for speed
+ * before they need it instead of catching up once the path has already sped up. Feedback only has
+ * to correct what the feedforward misses, and compares the pose against the path at the current
+ * time.
+ *
+ * <p>Each call also records the tracking error in the path's frame: along-track is how far the
+ * robot lags behind the reference, cross-track how far it is to the reference's left.
+ */
+public class HolonomicPathController {
+  private final PIDController m_xController;
+  private final PIDController m_yController;
+  private final PIDController m_thetaController;
+  private final double m_latencySeconds;
+  private final double m_accelerationLeadSeconds;
+
+  private PathPlannerState m_reference;
+  private double m_alongTrackError = 0;
+  private double m_crossTrackError = 0;
+  private double m_headingError = 0;
+
+  /**
+   * Creates a new HolonomicPathController.
+   *
+   * @param xController Field x feedback, in meters per second per meter of error.
+   * @param yController Field y feedback, in meters per second per meter of error.
+   * @param thetaController Heading feedback, in radians per second per radian of error.
+   * @param latencySeconds How far ahead to sample the feedforward.
+   * @param accelerationLeadSeconds How much of the path's acceleration to add to the feedforward
+   *     speed, as the time the modules' velocity loops take to respond.
+   */
+  public HolonomicPathController(
+      PIDController xController, PIDController yController, PIDController thetaController,
+      double latencySeconds, double accelerationLeadSeconds) {
+    m_xController = xController;
+    m_yController = yController;
+    m_thetaController = thetaController;
+    m_thetaController.enableContinuousInput(-Math.PI, Math.PI);
+    m_latencySeconds = latencySeconds;
+    m_accelerationLeadSeconds = accelerationLeadSeconds;
+  }
+
+  /** Clears the feedback and error history, when a new path starts. */
+  public void reset() {
+    m_xController.reset();
+    m_yController.reset();
+    m_thetaController.reset();
+    m_reference = null;
+    m_alongTrackError = 0;
+    m_crossTrackError = 0;
+    m_headingError = 0;
+  }
+
+  /**
+   * Returns the speeds to follow a path with.
+   *
+   * @param pose The estimated pose.
+   * @param trajectory The path.
+   * @param timeSeconds Time since the path started.
+   * @return Robot-relative chassis speeds.
+   */
+  public ChassisSpeeds calculate(Pose2d pose, PathPlannerTrajectory trajectory, double timeSeconds) {
+    PathPlannerState reference = (PathPlannerState) trajectory.sample(timeSeconds);
+    PathPlannerState ahead = (PathPlannerState) trajectory.sample(timeSeconds + m_latencySeconds);
+    m_reference = reference;
+
+    // past the end of the path the sample holds the end state, which is at rest
+    double feedforwardSpeed = ahead.velocityMetersPerSecond;
+    if (timeSeconds + m_latencySeconds < trajectory.getTotalTimeSeconds()) {
+      feedforwardSpeed += ahead.accelerationMetersPerSecondSq * m_accelerationLeadSeconds;
+    }
+    Rotation2d direction = ahead.poseMeters.getRotation();
+    double xSpeed = feedforwardSpeed * direction.getCos()
+      + m_xController.calculate(pose.getX(), reference.poseMeters.getX());
+    double ySpeed = feedforwardSpeed * direction.getSin()
+      + m_yController.calculate(pose.getY(), reference.poseMeters.getY());
+    double rotSpeed = ahead.holonomicAngularVelocityRadPerSec
+      + m_thetaController.calculate(pose.getRotation().getRadians(), reference.holonomicRotation.getRadians());
+
+    Translation2d error = reference.poseMeters.getTranslation().minus(pose.getTranslation())
+      .rotateBy(reference.poseMeters.getRotation().unaryMinus());
+    m_alongTrackError = error.getX();
+    m_crossTrackError = -error.getY();
+    m_headingError = MathUtil.angleModulus(
+      reference.holonomicRotation.getRadians() - pose.getRotation().getRadians());
+
+    return ChassisSpeeds.fromFieldRelativeSpeeds(xSpeed, ySpeed, rotSpeed, pose.getRotation());
+  }
+
+  /** The path's pose and holonomic rotation at the last call's time, null before the first call. */
+  public Pose2d getReferencePose() {
+    return m_reference == null
+      ? null
+      : new Pose2d(m_reference.poseMeters.getTranslation(), m_reference.holonomicRotation);
+  }
+
+  public double getAlongTrackErrorMeters() {
+    return m_alongTrackError;
+  }
+
+  public double getCrossTrackErrorMeters() {
+    return m_crossTrackError;
+  }
+
+  public double getHeadingErrorRadians() {
+    return m_headingError;
+  }
+}
@@ -0,0 +1,173 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.controller;
+
+import edu.wpi.first.math.Nat;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.controller.LinearQuadraticRegulator;
+import edu.wpi.first.math.estimator.KalmanFilter;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.system.LinearSystem;
+import edu.wpi.first.math.system.LinearSystemLoop;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Velocity controller for a flywheel-like mechanism built on a WPILib {@link LinearSystemLoop}.
+ *
+ * <p>The plant is identified from kV and kA, an LQR closes the loop on a Kalman-filtered velocity
+ * estimate, and the loop's plant inversion provides the kV/kA feedforward. Static friction is
+ * cancelled with kS on top of the loop output.
+ *
+ * <p>The controller also records how long the mechanism took to reach a new setpoint (spin-up
+ * time) and how long it took to get back into tolerance after being knocked out of it without a
+ * setpoint change, such as after a shot (recovery time).
+ */
+public class StateSpaceVelocityController {
+  private final LinearSystemLoop<N1, N1, N1> m_loop;
+  private final double m_kS;
+  private final double m_period;
+
+  private double m_setpoint = 0;
+  private double m_measurement = 0;
+  private double m_tolerance;
+
+  private boolean m_wasAtSetpoint = false;
+  private double m_spinUpStartTime = 0;
+  private double m_recoveryStartTime = 0;
+  private boolean m_spinningUp = false;
+  private boolean m_recovering = false;
+  private double m_lastSpinUpTime = 0;
+  private double m_lastRecoveryTime = 0;
+
+  /**
+   * Creates a new StateSpaceVelocityController.
+   *
+   * @param kS Static friction gain in volts.
+   * @param kV Velocity gain in volts per unit/s.
+   * @param kA Acceleration gain in volts per unit/s^2.
+   * @param velocityErrorTolerance LQR state excursion, in units/s. Lower values are more aggressive.
+   * @param controlEffortTolerance LQR control effort excursion in volts.
+   * @param modelStdDev Standard deviation of the model in units/s.
+   * @param measurementStdDev Standard deviation of the velocity measurement in units/s.
+   * @param maxVoltage Maximum voltage the loop may apply.
+   * @param tolerance Velocity error considered at setpoint, in units/s.
+   * @param period The period between controller updates in seconds.
+   */
+  public StateSpaceVelocityController(
+      double kS, double kV, double kA,
+      double velocityErrorTolerance, double controlEffortTolerance,
+      double modelStdDev, double measurementStdDev,
+      double maxVoltage, double tolerance, double period) {
+    LinearSystem<N1, N1, N1> plant = LinearSystemId.identifyVelocitySystem(kV, kA);
+
+    KalmanFilter<N1, N1, N1> observer = new KalmanFilter<>(
+        Nat.N1(), Nat.N1(), plant,
+        VecBuilder.fill(modelStdDev),
+        VecBuilder.fill(measurementStdDev),
+        period);
+
+    LinearQuadraticRegulator<N1, N1, N1> controller = new LinearQuadraticRegulator<>(
+        plant,
+        VecBuilder.fill(velocityErrorTolerance),
+        VecBuilder.fill(controlEffortTolerance),
+        period);
+
+    m_loop = new LinearSystemLoop<>(plant, controller, observer, maxVoltage, period);
+    m_kS = kS;
+    m_period = period;
+    m_tolerance = tolerance;
+  }
+
+  /**
+   * Sets the velocity setpoint and starts timing the spin-up.
+   *
+   * @param setpoint The desired velocity.
+   */
+  public void setSetpoint(double setpoint) {
+    if (setpoint == m_setpoint) return;
+    m_setpoint = setpoint;
+    m_spinningUp = true;
+    m_recovering = false;
+    m_spinUpStartTime = Timer.getFPGATimestamp();
+  }
+
+  public double getSetpoint() {
+    return m_setpoint;
+  }
+
+  public void setTolerance(double tolerance) {
+    m_tolerance = tolerance;
+  }
+
+  /**
+   * Returns true if the last measurement was within tolerance of the setpoint.
+   *
+   * @return True if at setpoint.
+   */
+  public boolean atSetpoint() {
+    return Math.abs(m_setpoint - m_measurement) < m_tolerance;
+  }
+
+  /**
+   * Returns the next output of the controller. A zero setpoint lets the mechanism coast.
+   *
+   * @param measurement The current measured velocity.
+   * @return The voltage to apply.
+   */
+  public double calculate(double measurement) {
+    m_measurement = measurement;
+    updateMetrics();
+
+    if (m_setpoint == 0) {
+      m_loop.reset(VecBuilder.fill(measurement));
+      return 0;
+    }
+
+    m_loop.setNextR(m_setpoint);
+    m_loop.correct(VecBuilder.fill(measurement));
+    m_loop.predict(m_period);
+
+    return m_loop.getU(0) + m_kS * Math.signum(m_setpoint);
+  }
+
+  /**
+   * Resets the velocity estimate to the given measurement.
+   *
+   * @param measurement The current measured velocity.
+   */
+  public void reset(double measurement) {
+    m_measurement = measurement;
+    m_loop.reset(VecBuilder.fill(measurement));
+  }
+
+  private void updateMetrics() {
+    boolean isAtSetpoint = atSetpoint();
+    double now = Timer.getFPGATimestamp();
+
+    if (isAtSetpoint && m_spinningUp) {
+      m_lastSpinUpTime = now - m_spinUpStartTime;
+      m_spinningUp = false;
+    } else if (isAtSetpoint && m_recovering) {
+      m_lastRecoveryTime = now - m_recoveryStartTime;
+      m_recovering = false;
+    } else if (!isAtSetpoint && m_wasAtSetpoint && !m_spinningUp) {
+      m_recovering = true;
+      m_recoveryStartTime = now;
+    }
+
+    m_wasAtSetpoint = isAtSetpoint;
+  }
+
+  /** Seconds taken to reach the most recent setpoint change. */
+  public double getLastSpinUpTime() {
+    return m_lastSpinUpTime;
+  }
+
+  /** Seconds taken to get back within tolerance after the most recent disturbance. */
+  public double getLastRecoveryTime() {
+    return m_lastRecoveryTime;
+  }
+}
@@ -0,0 +1,84 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import com.pathplanner.lib.PathConstraints;
+import com.pathplanner.lib.PathPlanner;
+import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPlannerTrajectory.PathPlannerState;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import frc.robot.Constants.FieldConstants;
+import frc.robot.commands.auto.Cable.TwoCargoCableAuto;
+import org.junit.jupiter.api.Test;
+
+/** Loads an auto's deployed path group and compares each path with its red twin. */
+class AlliancePathsTest {
+  private static List<PathPlannerTrajectory> loadGroup() {
+    return AlliancePaths.loadPathGroup(TwoCargoCableAuto.kPathName, TwoCargoCableAuto.kPathConstraints);
+  }
+
+  @Test
+  void loadsEachGroupOnce() {
+    List<PathPlannerTrajectory> group = loadGroup();
+
+    assertSame(group, loadGroup());
+    assertThrows(UnsupportedOperationException.class, () -> group.remove(0));
+  }
+
+  @Test
+  void blueAllianceKeepsThePath() {
+    for (PathPlannerTrajectory trajectory : loadGroup()) {
+      assertSame(trajectory, AlliancePaths.forAlliance(trajectory, Alliance.Blue));
+    }
+  }
+
+  @Test
+  void pathThatWasNotLoadedIsKept() {
+    PathPlannerTrajectory trajectory = PathPlanner.loadPath(TwoCargoCableAuto.kPathName, new PathConstraints(1, 1));
+
+    assertSame(trajectory, AlliancePaths.forAlliance(trajectory, Alliance.Red));
+  }
+
+  @Test
+  void redTwinIsReflectedAcrossTheFieldWidth() {
+    for (PathPlannerTrajectory blue : loadGroup()) {
+      PathPlannerTrajectory red = AlliancePaths.forAlliance(blue, Alliance.Red);
+      assertNotSame(blue, red);
+      assertEquals(blue.getStates().size(), red.getStates().size());
+      assertEquals(blue.getTotalTimeSeconds(), red.getTotalTimeSeconds(), 1e-9);
+
+      // PathPlanner's red frame keeps x and reflects y, so the sum of the two y is the field width
+      double width = blue.getInitialState().poseMeters.getY() + red.getInitialState().poseMeters.getY();
+      assertEquals(FieldConstants.kFieldWidthMeters, width, 0.01);
+
+      for (int i = 0; i < blue.getStates().size(); i++) {
+        PathPlannerState blueState = (PathPlannerState) blue.getStates().get(i);
+        PathPlannerState redState = (PathPlannerState) red.getStates().get(i);
+        assertEquals(blueState.timeSeconds, redState.timeSeconds, 1e-9);
+        assertEquals(blueState.velocityMetersPerSecond, redState.velocityMetersPerSecond, 1e-9);
+        assertEquals(blueState.poseMeters.getX(), redState.poseMeters.getX(), 1e-9);
+        assertEquals(width, blueState.poseMeters.getY() + redState.poseMeters.getY(), 1e-9);
+        assertReflected(blueState.poseMeters.getRotation(), redState.poseMeters.getRotation());
+        assertReflected(blueState.holonomicRotation, redState.holonomicRotation);
+        assertEquals(-blueState.holonomicAngularVelocityRadPerSec, redState.holonomicAngularVelocityRadPerSec, 1e-9);
+      }
+    }
+  }
+
+  // reflected across the field's x axis, compared by direction since either side of ±180° is the same
+  private static void assertReflected(Rotation2d blue, Rotation2d red) {
+    assertEquals(blue.getCos(), red.getCos(), 1e-9);
+    assertEquals(-blue.getSin(), red.getSin(), 1e-9);
+  }
+}
@@ -0,0 +1,71 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import frc.robot.Constants.FieldConstants;
+import org.junit.jupiter.api.Test;
+
+/** Parses the project's copy of the Limelight field map and checks tags against the .fmap values. */
+class AprilTagFieldMapTest {
+  static AprilTagFieldMap loadProjectMap() throws IOException {
+    return AprilTagFieldMap.parse(
+      new ObjectMapper().readTree(new File(AprilTagFieldMap.kPath)),
+      FieldConstants.kFieldLengthMeters,
+      FieldConstants.kFieldWidthMeters);
+  }
+
+  @Test
+  void readsEveryTag() throws IOException {
+    AprilTagFieldMap map = loadProjectMap();
+
+    assertEquals(8, map.getTagCount());
+    for (int id = 1; id <= 8; id++) assertEquals(id, map.getId(map.indexOf(id)));
+    assertEquals(-1, map.indexOf(9));
+  }
+
+  @Test
+  void movesTheOriginToTheBlueAllianceWall() throws IOException {
+    AprilTagFieldMap map = loadProjectMap();
+
+    // red grid, cable protector side, facing the blue alliance
+    int red = map.indexOf(1);
+    assertEquals(7.24310 + FieldConstants.kFieldLengthMeters / 2, map.getX(red), 1e-9);
+    assertEquals(-2.93659 + FieldConstants.kFieldWidthMeters / 2, map.getY(red), 1e-9);
+    assertEquals(0.46272, map.getZ(red), 1e-9);
+    assertEquals(Math.PI, Math.abs(map.getYaw(red)), 1e-9);
+
+    // blue grid, facing the red alliance
+    int blue = map.indexOf(8);
+    assertEquals(-7.24310 + FieldConstants.kFieldLengthMeters / 2, map.getX(blue), 1e-9);
+    assertEquals(0, map.getYaw(blue), 1e-9);
+  }
+
+  @Test
+  void keepsTheRawTransformAndSize() throws IOException {
+    AprilTagFieldMap map = loadProjectMap();
+    int index = map.indexOf(4);
+
+    assertEquals(7.90832, map.getTransform(index, 0, 3), 1e-9);
+    assertEquals(0.695452, map.getTransform(index, 2, 3), 1e-9);
+    assertEquals(1, map.getTransform(index, 3, 3), 1e-9);
+    assertEquals(0.1524, map.getSize(index), 1e-9);
+  }
+
+  @Test
+  void rejectsATransformThatIsNot4x4() {
+    String json = "{\"fiducials\": [{\"id\": 1, \"size\": 152.4, \"transform\": [1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0]}]}";
+
+    assertThrows(IllegalArgumentException.class, () -> AprilTagFieldMap.parse(
+      new ObjectMapper().readTree(json), FieldConstants.kFieldLengthMeters, FieldConstants.kFieldWidthMeters));
+  }
+}
@@ -0,0 +1,124 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import frc.robot.Constants.BalanceConstants;
+import frc.robot.Constants.FieldConstants;
+import frc.robot.utils.BalanceController.Phase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the controller on an estimator fed noiseless readings, with the station's raised end in
+ * front of the robot so uphill is forward.
+ */
+class BalanceControllerTest {
+  private static final double kLoopSeconds = 0.02;
+
+  private ChargeStationEstimator m_estimator;
+  private BalanceController m_controller;
+  private double m_time;
+  private double m_command;
+
+  @BeforeEach
+  void setUp() {
+    m_estimator = new ChargeStationEstimator(
+      BalanceConstants.kPitchStdDevDegrees,
+      BalanceConstants.kTiltAccelerationStdDevDegreesPerSecondSquared,
+      FieldConstants.kChargeStationMaxTiltDegrees);
+    m_controller = new BalanceController();
+    m_time = 0;
+  }
+
+  private void start(double tiltDegrees) {
+    m_estimator.reset(tiltDegrees, m_time);
+    m_controller.reset(m_estimator);
+  }
+
+  // one loop, returning the commanded speed
+  private double step(double tiltDegrees, double offsetMeters, double velocityMetersPerSecond) {
+    m_time += kLoopSeconds;
+    m_estimator.update(tiltDegrees, offsetMeters, velocityMetersPerSecond, m_time);
+    m_command = m_controller.calculate(m_estimator, m_time);
+    return m_command;
+  }
+
+  @Test
+  void climbsUphillAndBrakesBeforeTheHinge() {
+    double max = FieldConstants.kChargeStationMaxTiltDegrees;
+    start(max);
+    assertEquals(Phase.CLIMB, m_controller.getPhase());
+
+    assertEquals(BalanceConstants.kClimbSpeedMetersPerSecond, step(max, -1.0, 0.5), 1e-9);
+    assertEquals(BalanceConstants.kCreepSpeedMetersPerSecond, step(max, -0.05, 0.5), 1e-9);
+    // odometry says nothing, so it climbs on
+    assertEquals(BalanceConstants.kClimbSpeedMetersPerSecond, step(max, Double.NaN, 0.5), 1e-9);
+  }
+
+  @Test
+  void climbsDownhillWhenTheFarEndIsUp() {
+    double max = FieldConstants.kChargeStationMaxTiltDegrees;
+    start(-max);
+
+    assertTrue(step(-max, 1.0, -0.5) < 0);
+  }
+
+  @Test
+  void backsOffOnceTheStationTipsAndThenSettles() {
+    double max = FieldConstants.kChargeStationMaxTiltDegrees;
+    start(max);
+    for (int i = 0; i < 10; i++) step(max, -0.1, BalanceConstants.kCreepSpeedMetersPerSecond);
+
+    // tips back towards level at 30 degrees per second
+    double tilt = max;
+    for (int i = 0; i < 20 && m_controller.getPhase() == Phase.CLIMB; i++) {
+      tilt -= 30 * kLoopSeconds;
+      step(tilt, 0, BalanceConstants.kCreepSpeedMetersPerSecond);
+    }
+    assertEquals(Phase.BACK_OFF, m_controller.getPhase());
+    assertEquals(-BalanceConstants.kBackOffSpeedMetersPerSecond, m_command, 1e-9);
+
+    // backs off the distance driven over the detection lag, then holds
+    for (int i = 0; i < 100 && m_controller.getPhase() == Phase.BACK_OFF; i++) {
+      step(tilt, 0, -BalanceConstants.kBackOffSpeedMetersPerSecond);
+    }
+    assertEquals(Phase.SETTLE, m_controller.getPhase());
+    assertTrue(m_controller.isHolding());
+  }
+
+  @Test
+  void levelStationThatStaysStillIsBalanced() {
+    start(0);
+    assertEquals(Phase.SETTLE, m_controller.getPhase());
+
+    for (int i = 0; i < 20; i++) assertEquals(0, step(0, 0, 0), 1e-9);
+    assertTrue(m_controller.isBalanced());
+  }
+
+  @Test
+  void correctsUphillAfterSettlingOffLevel() {
+    start(0);
+    // the station drops to a tilt off level and stays there
+    double tilt = FieldConstants.kChargeStationLevelDegrees + 2;
+    for (int i = 0; i < 50 && m_controller.getPhase() == Phase.SETTLE; i++) step(tilt, 0, 0);
+
+    assertEquals(Phase.CORRECT, m_controller.getPhase());
+    assertEquals(BalanceConstants.kCorrectSpeedMetersPerSecond, step(tilt, 0, 0), 1e-9);
+  }
+
+  @Test
+  void rebalancesWhenTheStationTiltsAgain() {
+    start(0);
+    for (int i = 0; i < 20; i++) step(0, 0, 0);
+    assertTrue(m_controller.isBalanced());
+
+    step(BalanceConstants.kRebalanceDegrees + 3, 0, 0);
+    step(BalanceConstants.kRebalanceDegrees + 3, 0, 0);
+    assertEquals(Phase.SETTLE, m_controller.getPhase());
+  }
+}
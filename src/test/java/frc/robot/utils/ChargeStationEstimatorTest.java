@@ -0,0 +1,76 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import frc.robot.Constants.BalanceConstants;
+import frc.robot.Constants.FieldConstants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Feeds the estimator noiseless gyro readings at the loop rate. */
+class ChargeStationEstimatorTest {
+  private static final double kLoopSeconds = 0.02;
+
+  private ChargeStationEstimator m_estimator;
+
+  @BeforeEach
+  void setUp() {
+    m_estimator = new ChargeStationEstimator(
+      BalanceConstants.kPitchStdDevDegrees,
+      BalanceConstants.kTiltAccelerationStdDevDegreesPerSecondSquared,
+      FieldConstants.kChargeStationMaxTiltDegrees);
+  }
+
+  @Test
+  void stillStationHasNoRate() {
+    m_estimator.reset(10, 0);
+    for (int i = 1; i <= 50; i++) m_estimator.update(10, Double.NaN, 0, i * kLoopSeconds);
+
+    assertEquals(10, m_estimator.getTiltDegrees(), 1e-6);
+    assertEquals(0, m_estimator.getTiltRateDegreesPerSecond(), 1e-6);
+  }
+
+  @Test
+  void estimatesTheRateOfATippingStation() {
+    double rate = -20;
+    m_estimator.reset(12, 0);
+    for (int i = 1; i <= 25; i++) m_estimator.update(12 + rate * i * kLoopSeconds, Double.NaN, 0, i * kLoopSeconds);
+
+    assertEquals(rate, m_estimator.getTiltRateDegreesPerSecond(), 1.0);
+    assertEquals(12 + rate * 0.5, m_estimator.getTiltDegrees(), 0.5);
+  }
+
+  @Test
+  void predictionIsLimitedToTheStops() {
+    m_estimator.reset(0, 0);
+    for (int i = 1; i <= 10; i++) m_estimator.update(-20 * i * kLoopSeconds, Double.NaN, 0, i * kLoopSeconds);
+
+    assertTrue(m_estimator.getPredictedTiltDegrees(0.1) < m_estimator.getTiltDegrees());
+    assertEquals(-FieldConstants.kChargeStationMaxTiltDegrees, m_estimator.getPredictedTiltDegrees(10), 1e-9);
+  }
+
+  @Test
+  void stopsTurningAtTheStops() {
+    double max = FieldConstants.kChargeStationMaxTiltDegrees;
+    m_estimator.reset(max - 5, 0);
+    for (int i = 1; i <= 25; i++) m_estimator.update(Math.min(max, max - 5 + 30 * i * kLoopSeconds), Double.NaN, 0, i * kLoopSeconds);
+
+    assertTrue(m_estimator.getTiltDegrees() <= max);
+    assertTrue(m_estimator.getTiltRateDegreesPerSecond() <= 0);
+  }
+
+  @Test
+  void keepsTheLatestOffsetAndVelocity() {
+    m_estimator.update(0, 0.3, -0.5, 0);
+    assertEquals(0.3, m_estimator.getOffsetMeters(), 1e-9);
+    assertEquals(-0.5, m_estimator.getVelocityMetersPerSecond(), 1e-9);
+
+    m_estimator.update(0, Double.NaN, 0, kLoopSeconds);
+    assertTrue(Double.isNaN(m_estimator.getOffsetMeters()));
+  }
+}
@@ -0,0 +1,102 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import frc.robot.utils.LimelightClient.Snapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Builds frames of what a camera would see of the blue grid's tags from a known pose, and solves
+ * them starting from odometry that has drifted.
+ */
+class MultiTagPoseSolverTest {
+  private static final Translation2d kCameraPosition = new Translation2d(0.2, 0.1);
+  private static final double kCameraHeightMeters = 0.2;
+  private static final double kCameraPitchRadians = Math.toRadians(5);
+  private static final double kCameraYawRadians = 0;
+
+  // facing the blue grid from behind the charge station
+  private static final Pose2d kRobotPose = new Pose2d(2.6, 2.4, Rotation2d.fromDegrees(175));
+  private static final Pose2d kDriftedGuess = new Pose2d(2.9, 2.2, Rotation2d.fromDegrees(175));
+
+  private AprilTagFieldMap m_map;
+  private MultiTagPoseSolver m_solver;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    m_map = AprilTagFieldMapTest.loadProjectMap();
+    m_solver = new MultiTagPoseSolver(m_map, Math.toRadians(1.0), 0.1, Math.toRadians(2.0), 10);
+  }
+
+  // the tx and ty each tag would show up at, with a range error added to the first tag
+  private Snapshot frameFrom(Pose2d pose, double firstRangeErrorMeters, int... ids) {
+    double[] tx = new double[ids.length];
+    double[] ty = new double[ids.length];
+    Translation2d camera = pose.getTranslation().plus(kCameraPosition.rotateBy(pose.getRotation()));
+    for (int i = 0; i < ids.length; i++) {
+      int index = m_map.indexOf(ids[i]);
+      double dx = m_map.getX(index) - camera.getX();
+      double dy = m_map.getY(index) - camera.getY();
+      double bearing = MathUtil.angleModulus(
+        Math.atan2(dy, dx) - pose.getRotation().getRadians() - kCameraYawRadians);
+      double range = Math.hypot(dx, dy) + (i == 0 ? firstRangeErrorMeters : 0);
+      tx[i] = -Math.toDegrees(bearing);
+      ty[i] = Math.toDegrees(Math.atan2(m_map.getZ(index) - kCameraHeightMeters, range) - kCameraPitchRadians);
+    }
+    return new Snapshot(1, 0, true, 0, 0, 0, null, null, 0, 0, 0, ids, tx, ty);
+  }
+
+  private boolean solve(Snapshot frame) {
+    return m_solver.solve(frame, kCameraPosition, kCameraHeightMeters, kCameraPitchRadians, kCameraYawRadians, kDriftedGuess);
+  }
+
+  @Test
+  void solvesThePoseFromSeveralTags() {
+    assertTrue(solve(frameFrom(kRobotPose, 0, 6, 7, 8)));
+
+    assertEquals(3, m_solver.getTagsUsed());
+    assertEquals(kRobotPose.getX(), m_solver.getPose().getX(), 1e-3);
+    assertEquals(kRobotPose.getY(), m_solver.getPose().getY(), 1e-3);
+    assertEquals(0, m_solver.getPose().getRotation().minus(kRobotPose.getRotation()).getRadians(), 1e-3);
+    assertEquals(0, m_solver.getRmsError(), 1e-3);
+  }
+
+  @Test
+  void solvesThePoseFromOneTagWithTheHeadingPrior() {
+    assertTrue(solve(frameFrom(kRobotPose, 0, 7)));
+
+    assertEquals(kRobotPose.getX(), m_solver.getPose().getX(), 1e-3);
+    assertEquals(kRobotPose.getY(), m_solver.getPose().getY(), 1e-3);
+  }
+
+  @Test
+  void inconsistentRangeShowsInTheRmsError() {
+    solve(frameFrom(kRobotPose, 0, 6, 7, 8));
+    double consistent = m_solver.getRmsError();
+
+    solve(frameFrom(kRobotPose, 1.0, 6, 7, 8));
+    assertTrue(m_solver.getRmsError() > consistent + 0.5);
+  }
+
+  @Test
+  void frameWithoutMappedTagsIsNotSolved() {
+    Snapshot frame = new Snapshot(
+      1, 0, true, 0, 0, 0, null, null, 0, 0, 0, new int[] {9, 12}, new double[] {0, 0}, new double[] {0, 0});
+
+    assertFalse(solve(frame));
+    assertEquals(0, m_solver.getTagsUsed());
+  }
+}
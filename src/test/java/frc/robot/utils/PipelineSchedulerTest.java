@@ -0,0 +1,116 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import frc.robot.utils.LimelightClient.Snapshot;
+import frc.robot.utils.PipelineScheduler.Priority;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A camera that localizes off AprilTags by default and is shared with a command aligning to
+ * retroreflective tape, with a 0.2 s slot every second.
+ */
+class PipelineSchedulerTest {
+  private static final int kAprilTagPipeline = 0;
+  private static final int kRetroreflectivePipeline = 1;
+  private static final double kSharePeriodSeconds = 1.0;
+  private static final double kShareSeconds = 0.2;
+
+  private final Object m_localizer = new Object();
+  private final Object m_aligner = new Object();
+  private PipelineScheduler m_scheduler;
+
+  @BeforeEach
+  void setUp() {
+    m_scheduler = new PipelineScheduler(kAprilTagPipeline, kSharePeriodSeconds, kShareSeconds);
+  }
+
+  private static Snapshot frame(int pipeline, double timestampSeconds) {
+    return new Snapshot(1, pipeline, true, 0, 0, 0, null, null, 0, 0, timestampSeconds, new int[0], new double[0], new double[0]);
+  }
+
+  @Test
+  void runsTheDefaultPipelineWhenNothingIsRequested() {
+    assertTrue(m_scheduler.update(0));
+    assertEquals(kAprilTagPipeline, m_scheduler.getPipeline());
+
+    assertFalse(m_scheduler.update(0.02));
+    assertEquals(1, m_scheduler.getSwitchCount());
+  }
+
+  @Test
+  void higherPriorityOwnsTheCamera() {
+    m_scheduler.request(m_aligner, kRetroreflectivePipeline, Priority.ALIGN, 0);
+    m_scheduler.request(m_localizer, 2, Priority.LOCALIZE, 0.1);
+
+    m_scheduler.update(0.1);
+    assertEquals(kRetroreflectivePipeline, m_scheduler.getPipeline());
+  }
+
+  @Test
+  void newestRequestOfEqualPriorityOwnsTheCamera() {
+    Object otherAligner = new Object();
+    m_scheduler.request(m_aligner, kRetroreflectivePipeline, Priority.ALIGN, 0);
+    m_scheduler.request(otherAligner, 2, Priority.ALIGN, 0.1);
+
+    m_scheduler.update(0.1);
+    assertEquals(2, m_scheduler.getPipeline());
+
+    m_scheduler.release(otherAligner);
+    m_scheduler.update(0.2);
+    assertEquals(kRetroreflectivePipeline, m_scheduler.getPipeline());
+  }
+
+  @Test
+  void ownerSharesASlotAtTheEndOfEachPeriod() {
+    m_scheduler.request(m_localizer, kAprilTagPipeline, Priority.LOCALIZE, 0);
+    m_scheduler.request(m_aligner, kRetroreflectivePipeline, Priority.ALIGN, 0);
+
+    m_scheduler.update(0.5);
+    assertEquals(kRetroreflectivePipeline, m_scheduler.getPipeline());
+    m_scheduler.update(0.9);
+    assertEquals(kAprilTagPipeline, m_scheduler.getPipeline());
+    m_scheduler.update(1.1);
+    assertEquals(kRetroreflectivePipeline, m_scheduler.getPipeline());
+  }
+
+  @Test
+  void requestForTheSamePipelineDoesNotTakeASlot() {
+    m_scheduler.request(m_localizer, kRetroreflectivePipeline, Priority.LOCALIZE, 0);
+    m_scheduler.request(m_aligner, kRetroreflectivePipeline, Priority.ALIGN, 0);
+
+    m_scheduler.update(0);
+    assertFalse(m_scheduler.update(0.9));
+    assertEquals(kRetroreflectivePipeline, m_scheduler.getPipeline());
+  }
+
+  @Test
+  void releasingTheLastRequestReturnsToTheDefault() {
+    m_scheduler.request(m_aligner, kRetroreflectivePipeline, Priority.ALIGN, 0);
+    m_scheduler.update(0);
+
+    m_scheduler.release(m_aligner);
+    assertTrue(m_scheduler.update(0.1));
+    assertEquals(kAprilTagPipeline, m_scheduler.getPipeline());
+  }
+
+  @Test
+  void framesFromBeforeTheSwitchAreNotAccepted() {
+    m_scheduler.update(0);
+    m_scheduler.request(m_aligner, kRetroreflectivePipeline, Priority.ALIGN, 1.0);
+    m_scheduler.update(1.0);
+
+    // still in flight from before the switch
+    assertFalse(m_scheduler.isFrameFrom(frame(kAprilTagPipeline, 0.98), kRetroreflectivePipeline));
+    // reports the new pipeline but was captured before the switch was sent
+    assertFalse(m_scheduler.isFrameFrom(frame(kRetroreflectivePipeline, 0.5), kRetroreflectivePipeline));
+    assertTrue(m_scheduler.isFrameFrom(frame(kRetroreflectivePipeline, 1.05), kRetroreflectivePipeline));
+  }
+}
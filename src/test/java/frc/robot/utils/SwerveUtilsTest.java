@@ -0,0 +1,74 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Drives straight downfield while spinning, the way drive() does it: field-relative speeds are
+ * converted with the current heading and held for one loop, and the robot moves along the arc
+ * those speeds produce. Loop times jitter around 20 ms the way they do on the roboRIO.
+ */
+class SwerveUtilsTest {
+  private static final double kSpeedMetersPerSecond = 3.0;
+  private static final double kSpinRadiansPerSecond = 2 * Math.PI;
+  private static final double kDurationSeconds = 3.0;
+  private static final double kNominalDtSeconds = 0.02;
+  private static final double kJitterSeconds = 0.003;
+
+  @Test
+  void discretizeWithNoElapsedTimeReturnsSpeeds() {
+    ChassisSpeeds speeds = new ChassisSpeeds(1, 2, 3);
+    assertSame(speeds, SwerveUtils.Discretize(speeds, 0));
+  }
+
+  @Test
+  void discretizeWithoutRotationKeepsSpeeds() {
+    ChassisSpeeds speeds = SwerveUtils.Discretize(new ChassisSpeeds(2, -1, 0), kNominalDtSeconds);
+    assertEquals(2, speeds.vxMetersPerSecond, 1e-9);
+    assertEquals(-1, speeds.vyMetersPerSecond, 1e-9);
+    assertEquals(0, speeds.omegaRadiansPerSecond, 1e-9);
+  }
+
+  @Test
+  void discretizingWithPreviousLoopTimeRemovesSpinDrift() {
+    double drift = simulateDrift(false);
+    double discretizedDrift = simulateDrift(true);
+    assertTrue(drift > 0.1, "spinning should drift without discretization, drifted " + drift);
+    assertTrue(discretizedDrift < drift / 10, "drifted " + discretizedDrift + " of " + drift);
+  }
+
+  // largest distance from the straight line, in meters
+  private static double simulateDrift(boolean discretize) {
+    Pose2d pose = new Pose2d();
+    double maxDrift = 0;
+    // like DriveSubsystem.setChassisSpeeds, the loop time is only known once the loop is over
+    double previousDt = kNominalDtSeconds;
+
+    for (int loop = 0; loop * kNominalDtSeconds < kDurationSeconds; loop++) {
+      double dt = kNominalDtSeconds + kJitterSeconds * Math.sin(loop * 1.7);
+
+      ChassisSpeeds speeds = ChassisSpeeds.fromFieldRelativeSpeeds(
+        kSpeedMetersPerSecond, 0, kSpinRadiansPerSecond, pose.getRotation());
+      if (discretize) speeds = SwerveUtils.Discretize(speeds, previousDt);
+
+      pose = pose.exp(new Twist2d(
+        speeds.vxMetersPerSecond * dt,
+        speeds.vyMetersPerSecond * dt,
+        speeds.omegaRadiansPerSecond * dt));
+
+      maxDrift = Math.max(maxDrift, Math.abs(pose.getY()));
+      previousDt = dt;
+    }
+    return maxDrift;
+  }
+}
@@ -0,0 +1,116 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A target 3 m straight ahead of a robot that starts at the origin facing +x, seen by a camera
+ * facing forward.
+ */
+class TargetTrackerTest {
+  private static final double kTargetXMeters = 3.0;
+  private static final double kLoopSeconds = 0.02;
+  private static final double kCoastSeconds = 0.5;
+
+  private TargetTracker m_tracker;
+
+  @BeforeEach
+  void setUp() {
+    m_tracker = new TargetTracker(0.05, Math.toRadians(1.0), 0.01, kCoastSeconds, 9.21);
+  }
+
+  // drives forward at a constant speed, one predict per loop, and returns the time reached
+  private double drive(double speedMetersPerSecond, double fromSeconds, double toSeconds) {
+    double t = fromSeconds;
+    for (; t <= toSeconds + 1e-9; t += kLoopSeconds) {
+      m_tracker.predict(new ChassisSpeeds(speedMetersPerSecond, 0, 0), 0, t);
+    }
+    return t - kLoopSeconds;
+  }
+
+  @Test
+  void observationsFromRestPlaceTheTarget() {
+    m_tracker.predict(new ChassisSpeeds(), 0, 0);
+    assertTrue(m_tracker.addObservation(kTargetXMeters, 0, 0, 0));
+
+    assertTrue(m_tracker.hasTarget());
+    assertEquals(kTargetXMeters, m_tracker.getDistanceMeters(), 1e-9);
+    assertEquals(0, m_tracker.getBearingRadians(0), 1e-9);
+  }
+
+  @Test
+  void predictsFromDriveMotionBetweenObservations() {
+    m_tracker.predict(new ChassisSpeeds(), 0, 0);
+    m_tracker.addObservation(kTargetXMeters, 0, 0, 0);
+
+    drive(1.0, kLoopSeconds, 0.4);
+    assertTrue(m_tracker.hasTarget());
+    assertEquals(kTargetXMeters - 0.4, m_tracker.getDistanceMeters(), 1e-6);
+  }
+
+  @Test
+  void bearingIsInTheCameraFrame() {
+    m_tracker.predict(new ChassisSpeeds(), 0, 0);
+    m_tracker.addObservation(kTargetXMeters, 0, 0, 0);
+
+    // a camera on the robot's left sees the target to its right
+    assertEquals(-Math.PI / 2, m_tracker.getBearingRadians(Math.PI / 2), 1e-9);
+  }
+
+  @Test
+  void latentObservationIsPlacedWhereTheRobotWasWhenCaptured() {
+    double now = drive(1.0, 0, 1.0);
+    // captured at 0.5 s, when the robot was 0.5 m along
+    assertTrue(m_tracker.addObservation(kTargetXMeters - 0.5, 0, 0, 0.5));
+
+    assertEquals(kTargetXMeters - now, m_tracker.getDistanceMeters(), 1e-6);
+  }
+
+  @Test
+  void observationFarFromTheTrackIsRejected() {
+    m_tracker.predict(new ChassisSpeeds(), 0, 0);
+    m_tracker.addObservation(kTargetXMeters, 0, 0, 0);
+    m_tracker.predict(new ChassisSpeeds(), 0, kLoopSeconds);
+
+    assertFalse(m_tracker.addObservation(2 * kTargetXMeters, 0, 0, kLoopSeconds));
+    assertEquals(1, m_tracker.getRejectedCount());
+    assertEquals(kTargetXMeters, m_tracker.getDistanceMeters(), 1e-9);
+  }
+
+  @Test
+  void repeatedObservationsShrinkTheUncertainty() {
+    m_tracker.predict(new ChassisSpeeds(), 0, 0);
+    m_tracker.addObservation(kTargetXMeters, 0, 0, 0);
+    double first = m_tracker.getPositionStdDev();
+
+    for (int i = 1; i <= 10; i++) {
+      m_tracker.predict(new ChassisSpeeds(), 0, i * kLoopSeconds);
+      m_tracker.addObservation(kTargetXMeters, 0, 0, i * kLoopSeconds);
+    }
+    assertTrue(m_tracker.getPositionStdDev() < first);
+  }
+
+  @Test
+  void staleTrackIsDroppedAndReplaced() {
+    m_tracker.predict(new ChassisSpeeds(), 0, 0);
+    m_tracker.addObservation(kTargetXMeters, 0, 0, 0);
+
+    double now = drive(0, kLoopSeconds, 2 * kCoastSeconds);
+    assertFalse(m_tracker.hasTarget());
+
+    // far from the old track, but the old track has gone stale
+    assertTrue(m_tracker.addObservation(2 * kTargetXMeters, 0, 0, now));
+    assertTrue(m_tracker.hasTarget());
+    assertEquals(2 * kTargetXMeters, m_tracker.getDistanceMeters(), 1e-9);
+    assertEquals(0, m_tracker.getRejectedCount());
+  }
+}
@@ -0,0 +1,85 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.math.MathUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Turns a robot that reaches the commanded rate by the next loop, tracking its heading unwrapped
+ * so a turn the long way round shows up.
+ */
+class HeadingControllerTest {
+  private static final double kLoopSeconds = 0.02;
+  private static final double kP = 4.0;
+  private static final double kMaxVelocity = Math.PI;
+  private static final double kMaxAcceleration = 4 * Math.PI;
+
+  private HeadingController m_controller;
+  private double m_heading;
+  private double m_rate;
+  private double m_maxRate;
+
+  @BeforeEach
+  void setUp() {
+    m_controller = new HeadingController(kP, 0.0, kMaxVelocity, kMaxAcceleration);
+  }
+
+  private void start(double headingRadians, double rateRadiansPerSecond) {
+    m_heading = headingRadians;
+    m_rate = rateRadiansPerSecond;
+    m_maxRate = 0;
+    m_controller.reset(MathUtil.angleModulus(m_heading), m_rate);
+  }
+
+  private void turn(double goalRadians, double seconds) {
+    for (double t = 0; t < seconds; t += kLoopSeconds) {
+      m_rate = m_controller.calculate(MathUtil.angleModulus(m_heading), goalRadians, kLoopSeconds);
+      m_maxRate = Math.max(m_maxRate, Math.abs(m_rate));
+      m_heading += m_rate * kLoopSeconds;
+    }
+  }
+
+  @Test
+  void reachesAndHoldsTheGoal() {
+    start(0, 0);
+    turn(Math.PI / 2, 2.0);
+
+    assertEquals(Math.PI / 2, m_heading, 0.01);
+    assertEquals(0, m_rate, 0.01);
+  }
+
+  @Test
+  void turnsNoFasterThanTheProfile() {
+    start(0, 0);
+    turn(3 * Math.PI / 4, 3.0);
+
+    assertEquals(3 * Math.PI / 4, m_heading, 0.01);
+    // feedback adds at most the loop of lag the robot has behind the setpoint
+    assertTrue(m_maxRate <= kMaxVelocity * (1 + kP * kLoopSeconds) + 0.01, "turned at " + m_maxRate);
+  }
+
+  @Test
+  void turnsTheShortWayAcrossTheWrap() {
+    start(Math.toRadians(170), 0);
+    turn(Math.toRadians(-170), 2.0);
+
+    // through 180 degrees, not back through 0
+    assertEquals(Math.toRadians(190), m_heading, 0.01);
+  }
+
+  @Test
+  void takesOverATurnWithoutJerking() {
+    start(0, 2.0);
+    double first = m_controller.calculate(0, 0, kLoopSeconds);
+
+    // the setpoint starts at the robot's rate and slows within the acceleration limit
+    assertEquals(2.0, first, kMaxAcceleration * kLoopSeconds + 0.05);
+  }
+}